@@ -7,11 +7,20 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.util.DefaultUriBuilderFactory;
+import ru.practicum.shareit.booking.dto.ApprovalRuleDto;
+import ru.practicum.shareit.booking.dto.BookingCartInDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingHoldInDto;
 import ru.practicum.shareit.booking.dto.BookingInDto;
+import ru.practicum.shareit.booking.dto.BookingSeriesInDto;
 import ru.practicum.shareit.booking.dto.BookingState;
 import ru.practicum.shareit.common.client.BaseClient;
 
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 public class BookingClient extends BaseClient {
@@ -30,29 +39,57 @@ public class BookingClient extends BaseClient {
     ///////////////////////////// Получение данных ///////////////////////////
 
     public ResponseEntity<Object> getAllBookings(
-            long userId, BookingState state, Integer from, Integer size) {
-        Map<String, Object> parameters = Map.of(
+            long userId, BookingState state, Integer from, Integer size, String cursor) {
+        Map<String, Object> parameters = new HashMap<>(Map.of(
                 "state", state.name(),
                 "from", from,
                 "size", size
-        );
-        return get("?state={state}&from={from}&size={size}", userId, parameters);
+        ));
+        return get("?state={state}&from={from}&size={size}" + cursorQuery(cursor, parameters), userId, parameters);
     }
 
     public ResponseEntity<Object> getAllBookingsForOwner(
-            long ownerId, BookingState state, Integer from, Integer size) {
-        Map<String, Object> parameters = Map.of(
+            long ownerId, BookingState state, Integer from, Integer size, String cursor) {
+        Map<String, Object> parameters = new HashMap<>(Map.of(
                 "state", state.name(),
                 "from", from,
                 "size", size
-        );
-        return get("/owner?state={state}&from={from}&size={size}", ownerId, parameters);
+        ));
+        return get("/owner?state={state}&from={from}&size={size}" + cursorQuery(cursor, parameters),
+                ownerId, parameters);
+    }
+
+    //составная выборка: необязательные условия добавляются в запрос, только если заданы
+    public ResponseEntity<Object> filterBookings(long userId, boolean owner, List<BookingState> states,
+                                                 List<Long> itemIds, List<String> statuses, LocalDateTime after,
+                                                 LocalDateTime before, int from, int size, String cursor) {
+        Map<String, Object> parameters = new HashMap<>(Map.of(
+                "owner", owner,
+                "from", from,
+                "size", size
+        ));
+        String path = "/filter?owner={owner}&from={from}&size={size}"
+                + optionalQuery("state", join(states), parameters)
+                + optionalQuery("itemId", join(itemIds), parameters)
+                + optionalQuery("status", join(statuses), parameters)
+                + optionalQuery("after", after, parameters)
+                + optionalQuery("before", before, parameters)
+                + cursorQuery(cursor, parameters);
+        return get(path, userId, parameters);
     }
 
     public ResponseEntity<Object> getBooking(long ownerId, Long bookingId) {
         return get("/" + bookingId, ownerId);
     }
 
+    public ResponseEntity<Object> getBookingCounts(long bookerId) {
+        return get("/counts", bookerId);
+    }
+
+    public ResponseEntity<Object> getBookingCountsForOwner(long ownerId) {
+        return get("/owner/counts", ownerId);
+    }
+
     /////////////////////////// Создание и обновление ////////////////////////
 
     //создание новой брони
@@ -60,11 +97,94 @@ public class BookingClient extends BaseClient {
         return post("", bookerId, bookingInDto);
     }
 
+    //создание серии повторяющихся броней
+    public ResponseEntity<Object> createBookingSeries(long bookerId, BookingSeriesInDto seriesDto) {
+        return post("/series", bookerId, seriesDto);
+    }
+
+    //бронирование набора вещей на один период
+    public ResponseEntity<Object> createCartBookings(long bookerId, BookingCartInDto cartDto) {
+        return post("/cart", bookerId, cartDto);
+    }
+
+    //правило автоматического согласования владельца
+    public ResponseEntity<Object> getApprovalRule(long ownerId) {
+        return get("/owner/rules", ownerId);
+    }
+
+    public ResponseEntity<Object> putApprovalRule(long ownerId, ApprovalRuleDto ruleDto) {
+        return put("/owner/rules", ownerId, ruleDto);
+    }
+
+    public ResponseEntity<Object> deleteApprovalRule(long ownerId) {
+        return delete("/owner/rules", ownerId);
+    }
+
+    //действующие удержания пользователя
+    public ResponseEntity<Object> getHolds(long userId) {
+        return get("/holds", userId);
+    }
+
+    //временное удержание периода вещи
+    public ResponseEntity<Object> placeHold(long userId, BookingHoldInDto holdDto) {
+        return post("/holds", userId, holdDto);
+    }
+
+    //снятие удержания
+    public ResponseEntity<Object> releaseHold(long userId, long holdId) {
+        return delete("/holds/" + holdId, userId);
+    }
+
     //подтверждение брони
-    public ResponseEntity<Object> confirmBooking(long bookingId, long ownerId, Boolean approved) {
+    public ResponseEntity<Object> confirmBooking(long bookingId, long ownerId, Boolean approved,
+                                                 boolean rejectOverlapping) {
         Map<String, Object> parameters = Map.of(
-                "approved", approved
+                "approved", approved,
+                "rejectOverlapping", rejectOverlapping
         );
-        return patch("/" + bookingId + "?approved={approved}", ownerId, parameters, null);
+        return patch("/" + bookingId + "?approved={approved}&rejectOverlapping={rejectOverlapping}",
+                ownerId, parameters, null);
+    }
+
+    //отмена брони автором или владельцем
+    public ResponseEntity<Object> cancelBooking(long bookingId, long userId) {
+        return patch("/" + bookingId + "/cancel", userId);
+    }
+
+    //записи пользователя в листах ожидания
+    public ResponseEntity<Object> getWaitlist(long userId) {
+        return get("/waitlist", userId);
+    }
+
+    //постановка в лист ожидания
+    public ResponseEntity<Object> joinWaitlist(long userId, BookingInDto periodDto) {
+        return post("/waitlist", userId, periodDto);
+    }
+
+    //выход из листа ожидания
+    public ResponseEntity<Object> leaveWaitlist(long userId, long entryId) {
+        return delete("/waitlist/" + entryId, userId);
+    }
+
+    //пакетное подтверждение броней
+    public ResponseEntity<Object> confirmBookings(long ownerId, List<BookingDecisionDto> decisions) {
+        return patch("/batch", ownerId, decisions);
+    }
+
+    ////////////////////////// Вспомогательные методы ///////////////////////
+
+    private static String optionalQuery(String name, Object value, Map<String, Object> parameters) {
+        if (value == null) {
+            return "";
+        }
+        parameters.put(name, value);
+        return "&" + name + "={" + name + "}";
+    }
+
+    private static String join(List<?> values) {
+        if ((values == null) || values.isEmpty()) {
+            return null;
+        }
+        return values.stream().map(String::valueOf).collect(Collectors.joining(","));
     }
 }
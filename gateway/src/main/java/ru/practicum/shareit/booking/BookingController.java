@@ -2,18 +2,31 @@ package ru.practicum.shareit.booking;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.practicum.shareit.booking.dto.ApprovalRuleDto;
+import ru.practicum.shareit.booking.dto.BookingCartInDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingHoldInDto;
 import ru.practicum.shareit.booking.dto.BookingInDto;
+import ru.practicum.shareit.booking.dto.BookingSeriesInDto;
 import ru.practicum.shareit.booking.dto.BookingState;
 import ru.practicum.shareit.common.exception.BadRequestException;
 import ru.practicum.shareit.common.exception.NotFoundException;
 
 import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.PositiveOrZero;
+import javax.validation.constraints.Size;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @RestController
 @RequestMapping(path = "/bookings")
@@ -22,7 +35,10 @@ import javax.validation.constraints.PositiveOrZero;
 @Validated
 public class BookingController {
     private final BookingClient bookingClient;
+    private final BookingEventRelay bookingEventRelay;
+    private final BookingImportClient bookingImportClient;
     private static final String HEADER_NAME = "X-Sharer-User-Id";
+    private static final int MAX_BATCH_SIZE = 500;
 
     ///////////////////////////// Получение данных ///////////////////////////
 
@@ -31,13 +47,14 @@ public class BookingController {
     public ResponseEntity<Object> getAllBookings(@RequestHeader(HEADER_NAME) long bookerId,
                                                @RequestParam(name = "state", defaultValue = "all") String stateParam,
                                                @PositiveOrZero @RequestParam(name = "from", defaultValue = "0") Integer from,
-                                               @Positive @RequestParam(name = "size", defaultValue = "20") Integer size) {
+                                               @Positive @RequestParam(name = "size", defaultValue = "20") Integer size,
+                                               @RequestParam(required = false) String cursor) {
         validateId(bookerId);
         BookingState state = BookingState.from(stateParam)
                 .orElseThrow(() -> new BadRequestException("Unknown state: UNSUPPORTED_STATUS"));
         log.info("Все бронирования с параметрами: " +
                 "state {}, userId={}, from={}, size={}", stateParam, bookerId, from, size);
-        return bookingClient.getAllBookings(bookerId, state, from, size);
+        return bookingClient.getAllBookings(bookerId, state, from, size, cursor);
     }
 
     //получение всех бронирований всех вещей одного владельца
@@ -45,13 +62,68 @@ public class BookingController {
     public ResponseEntity<Object> getAllOwnerBookings(@RequestHeader(HEADER_NAME) Long ownerId,
                                                       @RequestParam(name = "state", defaultValue = "ALL") String stateParam,
                                                       @PositiveOrZero @RequestParam(defaultValue = "0") int from,
-                                                      @RequestParam(defaultValue = "20") @Positive int size) {
+                                                      @RequestParam(defaultValue = "20") @Positive int size,
+                                                      @RequestParam(required = false) String cursor) {
         validateId(ownerId);
         BookingState state = BookingState.from(stateParam)
                 .orElseThrow(() -> new BadRequestException("Unknown state: UNSUPPORTED_STATUS"));
         log.info("Бронирования всех вещей пользователя {} параметрами: " +
                 "state {}, from={}, size={}", ownerId, stateParam, from, size);
-        return bookingClient.getAllBookingsForOwner(ownerId, state, from, size);
+        return bookingClient.getAllBookingsForOwner(ownerId, state, from, size, cursor);
+    }
+
+    //составная выборка бронирований пользователя (owner=true - бронирований его вещей)
+    @GetMapping(value = "/filter")
+    public ResponseEntity<Object> filterBookings(
+            @RequestHeader(HEADER_NAME) long userId,
+            @RequestParam(defaultValue = "false") boolean owner,
+            @RequestParam(name = "state", required = false) List<String> stateParams,
+            @RequestParam(name = "itemId", required = false) List<@Positive Long> itemIds,
+            @RequestParam(name = "status", required = false) List<String> statuses,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime after,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before,
+            @PositiveOrZero @RequestParam(defaultValue = "0") int from,
+            @Positive @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor) {
+        validateId(userId);
+        List<BookingState> states = new ArrayList<>();
+        if (stateParams != null) {
+            for (String stateParam : stateParams) {
+                states.add(BookingState.from(stateParam)
+                        .orElseThrow(() -> new BadRequestException("Unknown state: UNSUPPORTED_STATUS")));
+            }
+        }
+        if ((after != null) && (before != null) && !before.isAfter(after)) {
+            throw new BadRequestException("Неверные границы окна дат");
+        }
+        log.info("Составная выборка бронирований пользователя {}: owner={}, state={}, itemId={}, status={}, " +
+                "after={}, before={}", userId, owner, states, itemIds, statuses, after, before);
+        return bookingClient.filterBookings(userId, owner, states, itemIds, statuses, after, before, from, size,
+                cursor);
+    }
+
+    //число бронирований пользователя по состояниям
+    @GetMapping("/counts")
+    public ResponseEntity<Object> getBookingCounts(@RequestHeader(HEADER_NAME) long bookerId) {
+        validateId(bookerId);
+        log.info("Запрошены счетчики бронирований пользователя {}", bookerId);
+        return bookingClient.getBookingCounts(bookerId);
+    }
+
+    //число бронирований вещей владельца по состояниям
+    @GetMapping("/owner/counts")
+    public ResponseEntity<Object> getOwnerBookingCounts(@RequestHeader(HEADER_NAME) long ownerId) {
+        validateId(ownerId);
+        log.info("Запрошены счетчики бронирований вещей пользователя {}", ownerId);
+        return bookingClient.getBookingCountsForOwner(ownerId);
+    }
+
+    //правило автоматического согласования броней владельца
+    @GetMapping("/owner/rules")
+    public ResponseEntity<Object> getApprovalRule(@RequestHeader(HEADER_NAME) long ownerId) {
+        validateId(ownerId);
+        log.info("Запрошено правило согласования владельца {}", ownerId);
+        return bookingClient.getApprovalRule(ownerId);
     }
 
     //получение бронирования по его идентификатору
@@ -63,6 +135,30 @@ public class BookingController {
         return bookingClient.getBooking(ownerId, bookingId);
     }
 
+    //действующие удержания пользователя
+    @GetMapping("/holds")
+    public ResponseEntity<Object> getHolds(@RequestHeader(HEADER_NAME) long userId) {
+        validateId(userId);
+        log.info("Запрошены удержания пользователя {}", userId);
+        return bookingClient.getHolds(userId);
+    }
+
+    //записи пользователя в листах ожидания
+    @GetMapping("/waitlist")
+    public ResponseEntity<Object> getWaitlist(@RequestHeader(HEADER_NAME) long userId) {
+        validateId(userId);
+        log.info("Запрошен лист ожидания пользователя {}", userId);
+        return bookingClient.getWaitlist(userId);
+    }
+
+    //подписка на события бронирования (поток SSE)
+    @GetMapping(value = "/events")
+    public SseEmitter subscribeToEvents(@RequestHeader(HEADER_NAME) long userId) {
+        validateId(userId);
+        log.info("Запрошена подписка на события бронирования пользователем {}", userId);
+        return bookingEventRelay.subscribe(userId);
+    }
+
     /////////////////////////// Создание и обновление ////////////////////////
 
     //создание новой брони
@@ -78,14 +174,126 @@ public class BookingController {
         return bookingClient.createBooking(bookerId, bookingInDto);
     }
 
+    //создание серии повторяющихся броней
+    @PostMapping("/series")
+    public ResponseEntity<Object> createBookingSeries(@RequestHeader(HEADER_NAME) long bookerId,
+                                                      @RequestBody @Valid BookingSeriesInDto seriesDto) {
+        validateId(bookerId);
+        if (!seriesDto.getEnd().after(seriesDto.getStart())) {
+            throw new BadRequestException("Неверные границы бронирования");
+        }
+        log.info("Запрошено создание серии броней {} пользователем {}", seriesDto, bookerId);
+        return bookingClient.createBookingSeries(bookerId, seriesDto);
+    }
+
+    //бронирование набора вещей на один период (все или ничего)
+    @PostMapping("/cart")
+    public ResponseEntity<Object> createCartBookings(@RequestHeader(HEADER_NAME) long bookerId,
+                                                     @RequestBody @Valid BookingCartInDto cartDto) {
+        validateId(bookerId);
+        if (!cartDto.getEnd().after(cartDto.getStart())) {
+            throw new BadRequestException("Неверные границы бронирования");
+        }
+        log.info("Запрошено бронирование набора вещей {} пользователем {}", cartDto, bookerId);
+        return bookingClient.createCartBookings(bookerId, cartDto);
+    }
+
+    //задание правила автоматического согласования
+    @PutMapping("/owner/rules")
+    public ResponseEntity<Object> putApprovalRule(@RequestHeader(HEADER_NAME) long ownerId,
+                                                  @RequestBody @Valid ApprovalRuleDto ruleDto) {
+        validateId(ownerId);
+        log.info("Владелец {} задает правило согласования {}", ownerId, ruleDto);
+        return bookingClient.putApprovalRule(ownerId, ruleDto);
+    }
+
+    //удаление правила автоматического согласования
+    @DeleteMapping("/owner/rules")
+    public ResponseEntity<Object> deleteApprovalRule(@RequestHeader(HEADER_NAME) long ownerId) {
+        validateId(ownerId);
+        log.info("Владелец {} удаляет правило согласования", ownerId);
+        return bookingClient.deleteApprovalRule(ownerId);
+    }
+
+    //временное удержание периода вещи
+    @PostMapping("/holds")
+    public ResponseEntity<Object> placeHold(@RequestHeader(HEADER_NAME) long userId,
+                                            @RequestBody @Valid BookingHoldInDto holdDto) {
+        validateId(userId);
+        if (!holdDto.getEnd().after(holdDto.getStart())) {
+            throw new BadRequestException("Неверные границы удержания");
+        }
+        log.info("Запрошено удержание {} пользователем {}", holdDto, userId);
+        return bookingClient.placeHold(userId, holdDto);
+    }
+
+    //снятие удержания держателем
+    @DeleteMapping("/holds/{holdId}")
+    public ResponseEntity<Object> releaseHold(@RequestHeader(HEADER_NAME) long userId,
+                                              @PathVariable long holdId) {
+        validateId(holdId, userId);
+        log.info("Пользователь {} снимает удержание {}", userId, holdId);
+        return bookingClient.releaseHold(userId, holdId);
+    }
+
+    //постановка в лист ожидания занятого периода вещи
+    @PostMapping("/waitlist")
+    public ResponseEntity<Object> joinWaitlist(@RequestHeader(HEADER_NAME) long userId,
+                                               @RequestBody @Valid BookingInDto periodDto) {
+        validateId(userId);
+        if (!periodDto.getEnd().after(periodDto.getStart())) {
+            throw new BadRequestException("Неверные границы периода");
+        }
+        log.info("Пользователь {} встает в лист ожидания периода {}", userId, periodDto);
+        return bookingClient.joinWaitlist(userId, periodDto);
+    }
+
+    //выход из листа ожидания
+    @DeleteMapping("/waitlist/{entryId}")
+    public ResponseEntity<Object> leaveWaitlist(@RequestHeader(HEADER_NAME) long userId,
+                                                @PathVariable long entryId) {
+        validateId(entryId, userId);
+        log.info("Пользователь {} покидает лист ожидания (запись {})", userId, entryId);
+        return bookingClient.leaveWaitlist(userId, entryId);
+    }
+
+    //импорт бронирований своих вещей из потока NDJSON (строки проверяет сервер)
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    public ResponseEntity<Object> importBookings(@RequestHeader(HEADER_NAME) long ownerId,
+                                                 InputStream input) {
+        validateId(ownerId);
+        log.info("Владелец {} импортирует бронирования", ownerId);
+        return bookingImportClient.importBookings(ownerId, input);
+    }
+
     //подтверждение запрошенной ранее брони владельцем
     @PatchMapping(value = "/{id}")
     public ResponseEntity<Object> confirmBooking(@Valid @NotNull @RequestHeader(HEADER_NAME) Long ownerId,
                                                  @PathVariable("id") @Positive long bookingId,
-                                                 @Valid @NotNull @RequestParam Boolean approved) {
+                                                 @Valid @NotNull @RequestParam Boolean approved,
+                                                 @RequestParam(defaultValue = "false") boolean rejectOverlapping) {
         validateId(ownerId);
         log.info("Владелец " + ownerId + " согласовывает бронь с идентификатором " + bookingId);
-        return bookingClient.confirmBooking(bookingId, ownerId, approved);
+        return bookingClient.confirmBooking(bookingId, ownerId, approved, rejectOverlapping);
+    }
+
+    //отмена брони автором или владельцем
+    @PatchMapping(value = "/{id}/cancel")
+    public ResponseEntity<Object> cancelBooking(@RequestHeader(HEADER_NAME) long userId,
+                                                @PathVariable("id") long bookingId) {
+        validateId(bookingId, userId);
+        log.info("Пользователь {} отменяет бронь {}", userId, bookingId);
+        return bookingClient.cancelBooking(bookingId, userId);
+    }
+
+    //пакетное согласование броней владельцем
+    @PatchMapping(value = "/batch")
+    public ResponseEntity<Object> confirmBookings(@RequestHeader(HEADER_NAME) long ownerId,
+                                                  @RequestBody @NotEmpty @Size(max = MAX_BATCH_SIZE)
+                                                  List<@Valid BookingDecisionDto> decisions) {
+        validateId(ownerId);
+        log.info("Владелец {} согласовывает пакет из {} броней", ownerId, decisions.size());
+        return bookingClient.confirmBookings(ownerId, decisions);
     }
 
     ///////////////////////// Валидация идентификаторов ///////////////////////
@@ -0,0 +1,175 @@
+package ru.practicum.shareit.booking;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Flow;
+
+//Трансляция потока событий бронирования (SSE) от сервера клиенту.
+//RestTemplate читает ответ целиком и для бесконечного потока не подходит, поэтому поток
+//читается асинхронным HttpClient: он не выделяет поток на соединение, а строки
+//передаются клиенту по мере поступления.
+@Slf4j
+@Service
+public class BookingEventRelay {
+    private static final String HEADER_NAME = "X-Sharer-User-Id";
+    private final HttpClient httpClient;
+    private final URI eventsUri;
+    private final long timeout;
+
+    @Autowired
+    public BookingEventRelay(@Value("${shareit-server.url}") String serverUrl,
+                             @Value("${shareit.booking.events.timeout-ms:1800000}") long timeout) {
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        this.eventsUri = URI.create(serverUrl + "/bookings/events");
+        this.timeout = timeout;
+    }
+
+    public SseEmitter subscribe(long userId) {
+        SseEmitter emitter = new SseEmitter(timeout);
+        EventForwarder forwarder = new EventForwarder(emitter);
+        //клиент отключился - закрываем и соединение с сервером
+        emitter.onCompletion(forwarder::cancel);
+        emitter.onTimeout(forwarder::cancel);
+        emitter.onError(e -> forwarder.cancel());
+        HttpRequest request = HttpRequest.newBuilder(eventsUri)
+                .header(HEADER_NAME, String.valueOf(userId))
+                .header("Accept", "text/event-stream, application/json")
+                .GET()
+                .build();
+        httpClient.sendAsync(request, forwarder::bodySubscriber)
+                .exceptionally(e -> {
+                    log.warn("Поток событий для пользователя {} прерван: {}", userId, e.getMessage());
+                    emitter.completeWithError(e);
+                    return null;
+                });
+        return emitter;
+    }
+
+    ///////////////////////// Пересылка событий клиенту ///////////////////////
+
+    //Разбирает строки потока сервера на события и отправляет их клиенту.
+    //Следующая строка запрашивается только после отправки предыдущей.
+    private static final class EventForwarder implements Flow.Subscriber<String> {
+        private final SseEmitter emitter;
+        private volatile Flow.Subscription subscription;
+        private volatile boolean cancelled;
+        private String id;
+        private String name;
+        private StringBuilder data;
+
+        EventForwarder(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        //ошибку сервера (например, неизвестный пользователь) передаем клиенту событием error:
+        //статус ответа клиенту к этому моменту уже отправлен
+        BodySubscriber<Void> bodySubscriber(ResponseInfo info) {
+            if (info.statusCode() == 200) {
+                return BodySubscribers.fromLineSubscriber(this);
+            }
+            return BodySubscribers.mapping(BodySubscribers.ofString(StandardCharsets.UTF_8), body -> {
+                send(SseEmitter.event().name("error").data(body));
+                emitter.complete();
+                return null;
+            });
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (cancelled) {
+                subscription.cancel();
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (line.isEmpty()) { //пустая строка завершает событие
+                dispatch();
+            } else if (line.startsWith(":")) { //комментарий (служебное сообщение)
+                send(SseEmitter.event().comment(line.substring(1)));
+            } else {
+                int colon = line.indexOf(':');
+                String field = (colon < 0) ? line : line.substring(0, colon);
+                String value = (colon < 0) ? "" : line.substring(colon + 1);
+                if (value.startsWith(" ")) {
+                    value = value.substring(1);
+                }
+                switch (field) {
+                    case "id":
+                        id = value;
+                        break;
+                    case "event":
+                        name = value;
+                        break;
+                    case "data":
+                        data = (data == null) ? new StringBuilder(value) : data.append('\n').append(value);
+                        break;
+                    default: //прочие поля не используются
+                }
+            }
+            if (!cancelled) {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            emitter.completeWithError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            emitter.complete();
+        }
+
+        void cancel() {
+            cancelled = true;
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        private void dispatch() {
+            if (data != null) {
+                SseEmitter.SseEventBuilder event = SseEmitter.event();
+                if (id != null) {
+                    event.id(id);
+                }
+                if (name != null) {
+                    event.name(name);
+                }
+                send(event.data(data.toString()));
+            }
+            id = null;
+            name = null;
+            data = null;
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) {
+            try {
+                emitter.send(event);
+            } catch (IOException | IllegalStateException e) { //клиент отключился
+                cancel();
+            }
+        }
+    }
+}
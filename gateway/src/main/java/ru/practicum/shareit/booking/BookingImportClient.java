@@ -0,0 +1,57 @@
+package ru.practicum.shareit.booking;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import ru.practicum.shareit.common.exception.BadRequestException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+//Передача потока импорта бронирований (NDJSON) серверу.
+//RestTemplate буферизует тело запроса целиком, поэтому поток передается серверу
+//через HttpClient по мере чтения, не накапливаясь в памяти шлюза.
+@Service
+public class BookingImportClient {
+    private static final String HEADER_NAME = "X-Sharer-User-Id";
+    private final HttpClient httpClient;
+    private final URI importUri;
+
+    @Autowired
+    public BookingImportClient(@Value("${shareit-server.url}") String serverUrl) {
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        this.importUri = URI.create(serverUrl + "/bookings/import");
+    }
+
+    public ResponseEntity<Object> importBookings(long ownerId, InputStream input) {
+        HttpRequest request = HttpRequest.newBuilder(importUri)
+                .header(HEADER_NAME, String.valueOf(ownerId))
+                .header(HttpHeaders.CONTENT_TYPE, "application/x-ndjson")
+                .header(HttpHeaders.ACCEPT, "application/json")
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> input))
+                .build();
+        HttpResponse<String> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new BadRequestException("Ошибка передачи данных импорта: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BadRequestException("Импорт прерван.");
+        }
+        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(response.statusCode());
+        response.headers().firstValue(HttpHeaders.CONTENT_TYPE)
+                .ifPresent(type -> responseBuilder.header(HttpHeaders.CONTENT_TYPE, type));
+        return responseBuilder.body(response.body());
+    }
+}
@@ -0,0 +1,22 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApprovalRuleDto {
+    private Long ownerId;
+    @NotNull
+    private Boolean enabled;
+    //наибольшая длительность брони в минутах (не задана - без ограничения)
+    @Positive
+    private Long maxDurationMinutes;
+    //согласовывать только брони тех, кто уже арендовал вещи владельца
+    private Boolean repeatRentersOnly;
+}
@@ -0,0 +1,28 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.FutureOrPresent;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.Size;
+import java.sql.Timestamp;
+import java.util.List;
+
+//Заказ набора вещей на один период
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingCartInDto {
+    @NotEmpty
+    @Size(max = 50)
+    private List<@NotNull @Positive Long> itemIds;
+    @FutureOrPresent
+    @NotNull
+    private Timestamp start;
+    @NotNull
+    private Timestamp end;
+}
@@ -0,0 +1,26 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.FutureOrPresent;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import java.sql.Timestamp;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingHoldInDto {
+    @NotNull
+    private Long itemId;
+    @FutureOrPresent
+    @NotNull
+    private Timestamp start;
+    @NotNull
+    private Timestamp end;
+    //время удержания в секундах (если не задано - берется из настроек сервера)
+    @Positive
+    private Integer ttlSeconds;
+}
@@ -0,0 +1,32 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.FutureOrPresent;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import java.sql.Timestamp;
+
+//Серия повторяющихся броней: первая бронь (start, end) и еще count - 1 с шагом intervalDays дней
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingSeriesInDto {
+    @NotNull
+    private Long itemId;
+    @FutureOrPresent
+    @NotNull
+    private Timestamp start;
+    @NotNull
+    private Timestamp end;
+    //шаг серии в днях (если не задан - неделя)
+    @Positive
+    private Integer intervalDays;
+    @NotNull
+    @Positive
+    @Max(104)
+    private Integer count;
+}
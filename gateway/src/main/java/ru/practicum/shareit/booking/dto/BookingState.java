@@ -15,7 +15,11 @@ public enum BookingState {
     // Отклоненные
     REJECTED,
     // Ожидающие подтверждения
-    WAITING;
+    WAITING,
+    // Просроченные (не согласованные до начала)
+    EXPIRED,
+    // Отмененные
+    CANCELED;
 
     public static Optional<BookingState> from(String stringState) {
         return Arrays.stream(values())
@@ -82,6 +82,15 @@ public class BaseClient {
         return makeAndSendRequest(HttpMethod.DELETE, path, userId, parameters, null);
     }
 
+    //добавление курсора постраничного вывода к параметрам запроса (если он задан)
+    protected static String cursorQuery(@Nullable String cursor, Map<String, Object> parameters) {
+        if (cursor == null) {
+            return "";
+        }
+        parameters.put("cursor", cursor);
+        return "&cursor={cursor}";
+    }
+
     private <T> ResponseEntity<Object> makeAndSendRequest(
             HttpMethod method, String path, Long userId, @Nullable Map<String, Object> parameters, @Nullable T body) {
         HttpEntity<T> requestEntity = new HttpEntity<>(body, defaultHeaders(userId));
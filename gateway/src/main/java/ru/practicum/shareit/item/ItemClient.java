@@ -8,9 +8,12 @@ import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.util.DefaultUriBuilderFactory;
 import ru.practicum.shareit.common.client.BaseClient;
+import ru.practicum.shareit.item.dto.AvailabilityGranularity;
 import ru.practicum.shareit.item.dto.CommentInDto;
 import ru.practicum.shareit.item.dto.ItemInDto;
 
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.Map;
 
 @Service
@@ -30,12 +33,12 @@ public class ItemClient extends BaseClient {
     ///////////////////////////// Получение данных ///////////////////////////
 
     //получение всех вещей
-    public ResponseEntity<Object> getAllItems(long ownerId, int from, int size) {
-        Map<String, Object> parameters = Map.of(
+    public ResponseEntity<Object> getAllItems(long ownerId, int from, int size, String cursor) {
+        Map<String, Object> parameters = new HashMap<>(Map.of(
                 "from", from,
                 "size", size
-        );
-        return get("?from={from}&size={size}", ownerId, parameters);
+        ));
+        return get("?from={from}&size={size}" + cursorQuery(cursor, parameters), ownerId, parameters);
     }
 
     //получение вещи по идентификатору
@@ -43,6 +46,18 @@ public class ItemClient extends BaseClient {
         return get("/" + itemId, userId);
     }
 
+    //календарь занятости вещи
+    public ResponseEntity<Object> getAvailability(long itemId, long userId, LocalDateTime from, LocalDateTime to,
+                                                  AvailabilityGranularity granularity) {
+        Map<String, Object> parameters = Map.of(
+                "from", from,
+                "to", to,
+                "granularity", granularity.name()
+        );
+        return get("/" + itemId + "/availability?from={from}&to={to}&granularity={granularity}",
+                userId, parameters);
+    }
+
     /////////////////////////// Создание и обновление ////////////////////////
 
     //создание новой вещи
@@ -73,12 +88,13 @@ public class ItemClient extends BaseClient {
 
     ////////////////////////////////// Поиск /////////////////////////////////
 
-    public ResponseEntity<Object> searchItems(String text, int from, int size) {
-        Map<String, Object> parameters = Map.of(
+    public ResponseEntity<Object> searchItems(String text, int from, int size, String cursor) {
+        Map<String, Object> parameters = new HashMap<>(Map.of(
                 "text", text,
                 "from", from,
                 "size", size
-        );
-        return get("/search?text={text}&from={from}&size={size}", null, parameters);
+        ));
+        return get("/search?text={text}&from={from}&size={size}" + cursorQuery(cursor, parameters),
+                null, parameters);
     }
 }
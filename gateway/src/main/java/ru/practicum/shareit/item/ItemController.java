@@ -2,10 +2,14 @@ package ru.practicum.shareit.item;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.common.exception.BadRequestException;
 import ru.practicum.shareit.common.exception.NotFoundException;
+import ru.practicum.shareit.item.dto.AvailabilityGranularity;
 import ru.practicum.shareit.item.dto.CommentInDto;
 import ru.practicum.shareit.item.dto.ItemInDto;
 
@@ -13,6 +17,7 @@ import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.PositiveOrZero;
+import java.time.LocalDateTime;
 
 @RestController
 @RequestMapping(path = "/items")
@@ -29,10 +34,11 @@ public class ItemController {
     @GetMapping
     public ResponseEntity<Object> getAllItems(@RequestHeader(HEADER_NAME) Long ownerId,
                                               @RequestParam(defaultValue = "0") @PositiveOrZero int from,
-                                              @RequestParam(defaultValue = "20") @Positive int size) {
+                                              @RequestParam(defaultValue = "20") @Positive int size,
+                                              @RequestParam(required = false) String cursor) {
         validateId(ownerId);
         log.info("Запрошено получение всех вещей владельца с идентификатором {}", ownerId);
-        return itemClient.getAllItems(ownerId, from, size);
+        return itemClient.getAllItems(ownerId, from, size, cursor);
     }
 
     //получение вещи по идентификатору
@@ -44,6 +50,23 @@ public class ItemController {
         return itemClient.getItem(itemId, userId);
     }
 
+    //календарь занятости вещи
+    @GetMapping(value = "/{id}/availability")
+    public ResponseEntity<Object> getAvailability(@RequestHeader(HEADER_NAME) long userId,
+                                                  @PathVariable("id") long itemId,
+                                                  @RequestParam @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime from,
+                                                  @RequestParam @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime to,
+                                                  @RequestParam(defaultValue = "HOUR") String granularity) {
+        validateId(itemId);
+        AvailabilityGranularity slotSize = AvailabilityGranularity.from(granularity)
+                .orElseThrow(() -> new BadRequestException("Unknown granularity: " + granularity));
+        if (!to.isAfter(from)) {
+            throw new BadRequestException("Неверные границы календаря");
+        }
+        log.info("Запрошен календарь вещи {} с {} по {} пользователем {}", itemId, from, to, userId);
+        return itemClient.getAvailability(itemId, userId, from, to, slotSize);
+    }
+
     /////////////////////////// Создание и обновление ////////////////////////
 
     //создание новой вещи
@@ -94,9 +117,10 @@ public class ItemController {
     @GetMapping(value = "/search")
     public ResponseEntity<Object> searchItems(@RequestParam(defaultValue = "") String text,
                                               @RequestParam(defaultValue = "0") @PositiveOrZero int from,
-                                              @RequestParam(defaultValue = "20") @Positive int size) {
+                                              @RequestParam(defaultValue = "20") @Positive int size,
+                                              @RequestParam(required = false) String cursor) {
         log.info("Запрошен поиск вещи по образцу.");
-        return itemClient.searchItems(text, from, size);
+        return itemClient.searchItems(text, from, size, cursor);
     }
 
     ///////////////////////// Валидация идентификаторов ///////////////////////
@@ -0,0 +1,17 @@
+package ru.practicum.shareit.item.dto;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+public enum AvailabilityGranularity {
+    // Часовые промежутки
+    HOUR,
+    // Суточные промежутки
+    DAY;
+
+    public static Optional<AvailabilityGranularity> from(String stringGranularity) {
+        return Arrays.stream(values())
+                .filter(granularity -> granularity.name().equalsIgnoreCase(stringGranularity))
+                .findFirst();
+    }
+}
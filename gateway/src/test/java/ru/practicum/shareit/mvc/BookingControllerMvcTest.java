@@ -12,9 +12,17 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.practicum.shareit.booking.BookingClient;
 import ru.practicum.shareit.booking.BookingController;
+import ru.practicum.shareit.booking.BookingEventRelay;
+import ru.practicum.shareit.booking.BookingImportClient;
+import ru.practicum.shareit.booking.dto.ApprovalRuleDto;
+import ru.practicum.shareit.booking.dto.BookingCartInDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingHoldInDto;
 import ru.practicum.shareit.booking.dto.BookingInDto;
+import ru.practicum.shareit.booking.dto.BookingSeriesInDto;
 import ru.practicum.shareit.booking.dto.BookingState;
 
 import java.nio.charset.StandardCharsets;
@@ -23,13 +31,16 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = BookingController.class)
@@ -46,6 +57,12 @@ public class BookingControllerMvcTest {
     @MockBean
     BookingClient bookingClient;
 
+    @MockBean
+    BookingEventRelay bookingEventRelay;
+
+    @MockBean
+    BookingImportClient bookingImportClient;
+
     @Autowired
     private MockMvc mvc;
 
@@ -108,7 +125,7 @@ public class BookingControllerMvcTest {
     void normalGetAllBookingsTest() throws Exception {
         HttpHeaders headers = new HttpHeaders();
         headers.add(HEADER_NAME, "1");
-        when(bookingClient.getAllBookings(anyLong(), any(BookingState.class), anyInt(), anyInt()))
+        when(bookingClient.getAllBookings(anyLong(), any(BookingState.class), anyInt(), anyInt(), any()))
                 .thenReturn(makeResponse(List.of(bookingOutDto)));
 
         mvc.perform(get("/bookings?state={state}&from={from}&size={size}", "ALL", 0, 20)
@@ -122,6 +139,52 @@ public class BookingControllerMvcTest {
                 .andExpect(jsonPath("$[0].end", is(convertTime(bookingOutDto.getEnd()))));
     }
 
+    @Test
+    void getExpiredBookingsTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+        when(bookingClient.getAllBookings(anyLong(), eq(BookingState.EXPIRED), anyInt(), anyInt(), any()))
+                .thenReturn(makeResponse(List.of(bookingOutDto)));
+
+        mvc.perform(get("/bookings?state={state}", "expired")
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    void getCanceledBookingsTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "2");
+        when(bookingClient.getAllBookings(anyLong(), eq(BookingState.CANCELED), anyInt(), anyInt(), any()))
+                .thenReturn(makeResponse(List.of(Map.of("id", bookingId))));
+
+        mvc.perform(get("/bookings?state={state}", "canceled")
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    void getAllBookingsWithCursorTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+        when(bookingClient.getAllBookings(anyLong(), any(BookingState.class), anyInt(), anyInt(), eq("current")))
+                .thenReturn(ResponseEntity.ok().header("X-Next-Cursor", "next").body(List.of(bookingOutDto)));
+
+        mvc.perform(get("/bookings?state={state}&size={size}&cursor={cursor}", "ALL", 1, "current")
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "next"))
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
     @Test
     void getAllBookingsWithBadStateTest() throws Exception {
         HttpHeaders headers = new HttpHeaders();
@@ -171,7 +234,7 @@ public class BookingControllerMvcTest {
     void normalGetAllBookingsForOwnerTest() throws Exception {
         HttpHeaders headers = new HttpHeaders();
         headers.add(HEADER_NAME, "1");
-        when(bookingClient.getAllBookingsForOwner(anyLong(), any(BookingState.class), anyInt(), anyInt()))
+        when(bookingClient.getAllBookingsForOwner(anyLong(), any(BookingState.class), anyInt(), anyInt(), any()))
                 .thenReturn(makeResponse(List.of(bookingOutDto)));
 
         mvc.perform(get("/bookings/owner?state={state}&from={from}&size={size}",
@@ -232,6 +295,125 @@ public class BookingControllerMvcTest {
     }
 
 
+    @Test
+    void normalFilterBookingsTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+        when(bookingClient.filterBookings(anyLong(), eq(true), eq(List.of(BookingState.CURRENT, BookingState.FUTURE)),
+                eq(List.of(1L, 2L)), eq(List.of("APPROVED")), any(), any(), anyInt(), anyInt(), any()))
+                .thenReturn(makeResponse(List.of(bookingOutDto)));
+
+        mvc.perform(get("/bookings/filter?owner=true&state=current,future&itemId=1,2&status=APPROVED" +
+                        "&after=2030-01-01T00:00:00&before=2030-02-01T00:00:00")
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(bookingOutDto.getId()), Long.class));
+    }
+
+    @Test
+    void filterBookingsWithUnknownStateTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+
+        mvc.perform(get("/bookings/filter?state=current,unknown")
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+    }
+
+    @Test
+    void filterBookingsWithWrongWindowTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+
+        mvc.perform(get("/bookings/filter?after=2030-02-01T00:00:00&before=2030-01-01T00:00:00")
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+    }
+
+    @Test
+    void filterBookingsWithNonPositiveItemIdTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+
+        mvc.perform(get("/bookings/filter?itemId=1,0")
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+    }
+
+    @Test
+    void normalGetBookingCountsTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+        when(bookingClient.getBookingCounts(1L))
+                .thenReturn(makeResponse(Map.of("all", 3, "waiting", 2)));
+
+        mvc.perform(get("/bookings/counts")
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.all", is(3)))
+                .andExpect(jsonPath("$.waiting", is(2)));
+    }
+
+    @Test
+    void normalGetOwnerBookingCountsTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+        when(bookingClient.getBookingCountsForOwner(1L))
+                .thenReturn(makeResponse(Map.of("all", 5)));
+
+        mvc.perform(get("/bookings/owner/counts")
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.all", is(5)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "-1"})
+    void getBookingCountsWithNonPositiveUserTest(String value) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, value);
+        mvc.perform(get("/bookings/counts")
+                        .headers(headers)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(404));
+    }
+
+    @Test
+    void normalSubscribeToEventsTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+        when(bookingEventRelay.subscribe(1L)).thenReturn(new SseEmitter());
+
+        mvc.perform(get("/bookings/events")
+                        .headers(headers)
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "-1"})
+    void subscribeToEventsWithNonPositiveUserTest(String value) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, value);
+        mvc.perform(get("/bookings/events")
+                        .headers(headers)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(404));
+    }
+
     /////////////////////////// Создание и обновление ////////////////////////
 
     @Test
@@ -319,7 +501,7 @@ public class BookingControllerMvcTest {
         HttpHeaders headers = new HttpHeaders();
         headers.add(HEADER_NAME, "1");
 
-        when(bookingClient.confirmBooking(anyLong(), anyLong(), anyBoolean()))
+        when(bookingClient.confirmBooking(anyLong(), anyLong(), anyBoolean(), anyBoolean()))
                 .thenReturn(makeResponse(bookingOutDto));
 
         mvc.perform(patch("/bookings/{id}?approved={approved}", bookingId, false)
@@ -331,6 +513,22 @@ public class BookingControllerMvcTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void confirmBookingWithOverlapRejectionTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+
+        when(bookingClient.confirmBooking(anyLong(), anyLong(), eq(true), eq(true)))
+                .thenReturn(makeResponse(bookingOutDto));
+
+        mvc.perform(patch("/bookings/{id}?approved=true&rejectOverlapping=true", bookingId)
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(bookingOutDto.getId()), Long.class));
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {"0", "-1"})
     void confirmBookingWithNotPositiveOwnerIdTest(String value) throws Exception {
@@ -368,8 +566,451 @@ public class BookingControllerMvcTest {
                 .andExpect(status().is(400));
     }
 
+    @Test
+    void normalConfirmBookingsTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+        List<BookingDecisionDto> decisions = List.of(new BookingDecisionDto(1L, true),
+                new BookingDecisionDto(2L, false));
+
+        when(bookingClient.confirmBookings(anyLong(), anyList()))
+                .thenReturn(makeResponse(List.of(bookingOutDto)));
+
+        mvc.perform(patch("/bookings/batch")
+                        .content(mapper.writeValueAsString(decisions))
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void confirmBookingsWithEmptyListTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+
+        mvc.perform(patch("/bookings/batch")
+                        .content(mapper.writeValueAsString(List.of()))
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+    }
+
+    @Test
+    void confirmBookingsWithBadDecisionTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+
+        mvc.perform(patch("/bookings/batch")
+                        .content(mapper.writeValueAsString(List.of(new BookingDecisionDto(0L, true))))
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+        mvc.perform(patch("/bookings/batch")
+                        .content(mapper.writeValueAsString(List.of(new BookingDecisionDto(1L, null))))
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+    }
+
+    //////////////////////////// Правила согласования //////////////////////////
+
+    @Test
+    void normalPutApprovalRuleTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+        ApprovalRuleDto rule = new ApprovalRuleDto(null, true, 120L, false);
+        when(bookingClient.putApprovalRule(anyLong(), any(ApprovalRuleDto.class)))
+                .thenReturn(makeResponse(new ApprovalRuleDto(1L, true, 120L, false)));
+
+        mvc.perform(put("/bookings/owner/rules")
+                        .content(mapper.writeValueAsString(rule))
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ownerId", is(1L), Long.class))
+                .andExpect(jsonPath("$.maxDurationMinutes", is(120L), Long.class));
+    }
+
+    @Test
+    void putApprovalRuleWithoutEnabledTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+        ApprovalRuleDto rule = new ApprovalRuleDto(null, null, null, true);
+
+        mvc.perform(put("/bookings/owner/rules")
+                        .content(mapper.writeValueAsString(rule))
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, -1})
+    void putApprovalRuleWithNonPositiveDurationTest(long value) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+        ApprovalRuleDto rule = new ApprovalRuleDto(null, true, value, false);
+
+        mvc.perform(put("/bookings/owner/rules")
+                        .content(mapper.writeValueAsString(rule))
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+    }
+
+    @Test
+    void normalGetApprovalRuleTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+        when(bookingClient.getApprovalRule(anyLong()))
+                .thenReturn(makeResponse(new ApprovalRuleDto(1L, true, null, true)));
+
+        mvc.perform(get("/bookings/owner/rules")
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.repeatRentersOnly", is(true)));
+    }
+
+    @Test
+    void normalDeleteApprovalRuleTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+        when(bookingClient.deleteApprovalRule(anyLong()))
+                .thenReturn(ResponseEntity.ok().build());
+
+        mvc.perform(delete("/bookings/owner/rules")
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8))
+                .andExpect(status().isOk());
+    }
+
+    ////////////////////////////// Серии броней /////////////////////////////
+
+    @Test
+    void normalCreateBookingSeriesTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "2");
+        BookingSeriesInDto series = new BookingSeriesInDto(itemId, bookingInDto.getStart(), bookingInDto.getEnd(),
+                7, 4);
+        when(bookingClient.createBookingSeries(anyLong(), any(BookingSeriesInDto.class)))
+                .thenReturn(makeResponse(Map.of("bookings", List.of(Map.of("id", 1), Map.of("id", 2)),
+                        "conflicts", List.of())));
+
+        mvc.perform(post("/bookings/series")
+                        .content(mapper.writeValueAsString(series))
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bookings", hasSize(2)))
+                .andExpect(jsonPath("$.conflicts", hasSize(0)));
+    }
+
+    @Test
+    void createBookingSeriesWithEndBeforeStartTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "2");
+        BookingSeriesInDto series = new BookingSeriesInDto(itemId, bookingInDto.getEnd(), bookingInDto.getStart(),
+                null, 4);
+
+        mvc.perform(post("/bookings/series")
+                        .content(mapper.writeValueAsString(series))
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, -1, 105})
+    void createBookingSeriesWithBadCountTest(int count) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "2");
+        BookingSeriesInDto series = new BookingSeriesInDto(itemId, bookingInDto.getStart(), bookingInDto.getEnd(),
+                7, count);
+
+        mvc.perform(post("/bookings/series")
+                        .content(mapper.writeValueAsString(series))
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+    }
+
+    ////////////////////////////// Заказ набора вещей /////////////////////////
+
+    @Test
+    void normalCreateCartBookingsTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "2");
+        BookingCartInDto cart = new BookingCartInDto(List.of(1L, 2L), bookingInDto.getStart(), bookingInDto.getEnd());
+        when(bookingClient.createCartBookings(anyLong(), any(BookingCartInDto.class)))
+                .thenReturn(makeResponse(List.of(Map.of("id", 1), Map.of("id", 2))));
+
+        mvc.perform(post("/bookings/cart")
+                        .content(mapper.writeValueAsString(cart))
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    void createCartBookingsWithEmptyCartTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "2");
+        BookingCartInDto cart = new BookingCartInDto(List.of(), bookingInDto.getStart(), bookingInDto.getEnd());
+
+        mvc.perform(post("/bookings/cart")
+                        .content(mapper.writeValueAsString(cart))
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+    }
+
+    @Test
+    void createCartBookingsWithEndBeforeStartTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "2");
+        BookingCartInDto cart = new BookingCartInDto(List.of(1L), bookingInDto.getEnd(), bookingInDto.getStart());
+
+        mvc.perform(post("/bookings/cart")
+                        .content(mapper.writeValueAsString(cart))
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+    }
+
+    ///////////////////////////////// Удержания ///////////////////////////////
+
+    @Test
+    void normalPlaceHoldTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "2");
+        BookingHoldInDto hold = new BookingHoldInDto(itemId, bookingInDto.getStart(), bookingInDto.getEnd(), 600);
+        when(bookingClient.placeHold(anyLong(), any(BookingHoldInDto.class)))
+                .thenReturn(makeResponse(Map.of("id", 1, "itemId", itemId)));
+
+        mvc.perform(post("/bookings/holds")
+                        .content(mapper.writeValueAsString(hold))
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(1)))
+                .andExpect(jsonPath("$.itemId", is(itemId), Long.class));
+    }
+
+    @Test
+    void placeHoldWithEndBeforeStartTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "2");
+        BookingHoldInDto hold = new BookingHoldInDto(itemId, bookingInDto.getEnd(), bookingInDto.getStart(), null);
+
+        mvc.perform(post("/bookings/holds")
+                        .content(mapper.writeValueAsString(hold))
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, -1})
+    void placeHoldWithNonPositiveTtlTest(int ttl) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "2");
+        BookingHoldInDto hold = new BookingHoldInDto(itemId, bookingInDto.getStart(), bookingInDto.getEnd(), ttl);
+
+        mvc.perform(post("/bookings/holds")
+                        .content(mapper.writeValueAsString(hold))
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+    }
+
+    @Test
+    void normalGetHoldsTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "2");
+        when(bookingClient.getHolds(anyLong()))
+                .thenReturn(makeResponse(List.of(Map.of("id", 1))));
+
+        mvc.perform(get("/bookings/holds")
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    void normalReleaseHoldTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "2");
+        when(bookingClient.releaseHold(anyLong(), anyLong()))
+                .thenReturn(ResponseEntity.ok().build());
+
+        mvc.perform(delete("/bookings/holds/{id}", 1)
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8))
+                .andExpect(status().isOk());
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, -1})
+    void releaseHoldWithNonPositiveIdTest(long value) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "2");
+
+        mvc.perform(delete("/bookings/holds/{id}", value)
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8))
+                .andExpect(status().is(404));
+    }
+
+    ///////////////////////////// Лист ожидания и отмена ///////////////////////////
+
+    @Test
+    void normalJoinWaitlistTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "2");
+        when(bookingClient.joinWaitlist(anyLong(), any(BookingInDto.class)))
+                .thenReturn(makeResponse(Map.of("id", 1, "itemId", itemId)));
+
+        mvc.perform(post("/bookings/waitlist")
+                        .content(mapper.writeValueAsString(bookingInDto))
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(1)))
+                .andExpect(jsonPath("$.itemId", is(itemId), Long.class));
+    }
+
+    @Test
+    void joinWaitlistWithEndBeforeStartTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "2");
+        BookingInDto period = new BookingInDto(itemId, bookingInDto.getEnd(), bookingInDto.getStart());
+
+        mvc.perform(post("/bookings/waitlist")
+                        .content(mapper.writeValueAsString(period))
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+    }
+
+    @Test
+    void normalGetWaitlistTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "2");
+        when(bookingClient.getWaitlist(anyLong()))
+                .thenReturn(makeResponse(List.of(Map.of("id", 1))));
+
+        mvc.perform(get("/bookings/waitlist")
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, -1})
+    void leaveWaitlistWithNonPositiveIdTest(long value) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "2");
+
+        mvc.perform(delete("/bookings/waitlist/{id}", value)
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8))
+                .andExpect(status().is(404));
+    }
+
+    @Test
+    void normalCancelBookingTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "2");
+        when(bookingClient.cancelBooking(anyLong(), anyLong()))
+                .thenReturn(makeResponse(Map.of("id", bookingId, "status", "CANCELED")));
+
+        mvc.perform(patch("/bookings/{id}/cancel", bookingId)
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("CANCELED")));
+    }
+
     /////////////////////////// Формирование ответа //////////////////////////
 
+    @Test
+    void normalImportBookingsTest() throws Exception {
+        when(bookingImportClient.importBookings(eq(1L), any()))
+                .thenReturn(makeResponse(Map.of("total", 2, "imported", 2, "failed", 0)));
+
+        mvc.perform(post("/bookings/import")
+                        .header(HEADER_NAME, 1L)
+                        .content("{\"itemId\":1,\"bookerId\":2}\n{\"itemId\":1,\"bookerId\":3}\n")
+                        .contentType("application/x-ndjson")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(2)));
+    }
+
+    @Test
+    void importBookingsWithWrongOwnerTest() throws Exception {
+        mvc.perform(post("/bookings/import")
+                        .header(HEADER_NAME, 0L)
+                        .content("{\"itemId\":1,\"bookerId\":2}\n")
+                        .contentType("application/x-ndjson")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void importBookingsWithWrongContentTypeTest() throws Exception {
+        mvc.perform(post("/bookings/import")
+                        .header(HEADER_NAME, 1L)
+                        .content("[]")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isUnsupportedMediaType());
+    }
+
     private ResponseEntity<Object> makeResponse(Object objectInDto) {
         return ResponseEntity.ok(objectInDto);
     }
@@ -14,11 +14,13 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.test.web.servlet.MockMvc;
 import ru.practicum.shareit.item.ItemClient;
 import ru.practicum.shareit.item.ItemController;
+import ru.practicum.shareit.item.dto.AvailabilityGranularity;
 import ru.practicum.shareit.item.dto.CommentInDto;
 import ru.practicum.shareit.item.dto.ItemInDto;
 
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
@@ -89,7 +91,7 @@ public class ItemControllerMvcTest {
     void normalGetAllItemsTest() throws Exception {
         HttpHeaders headers = new HttpHeaders();
         headers.add(HEADER_NAME, "1");
-        when(itemClient.getAllItems(anyLong(), anyInt(), anyInt()))
+        when(itemClient.getAllItems(anyLong(), anyInt(), anyInt(), any()))
                 .thenReturn(makeResponse(List.of(itemInDto, patchInDto)));
 
         mvc.perform(get("/items")
@@ -156,6 +158,47 @@ public class ItemControllerMvcTest {
                 .andExpect(status().is(400));
     }
 
+    @Test
+    void normalGetAvailabilityTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+        when(itemClient.getAvailability(anyLong(), anyLong(), any(), any(), eq(AvailabilityGranularity.DAY)))
+                .thenReturn(makeResponse(Map.of("itemId", itemId, "slots", List.of(Map.of("free", true)))));
+
+        mvc.perform(get("/items/{id}/availability?from={from}&to={to}&granularity={granularity}",
+                        itemId, "2030-01-01T00:00:00", "2030-01-03T00:00:00", "day")
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.itemId", is(itemId), Long.class))
+                .andExpect(jsonPath("$.slots", hasSize(1)));
+    }
+
+    @Test
+    void getAvailabilityWithBadGranularityTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+        mvc.perform(get("/items/{id}/availability?from={from}&to={to}&granularity={granularity}",
+                        itemId, "2030-01-01T00:00:00", "2030-01-03T00:00:00", "WEEK")
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getAvailabilityWithBadBoundsTest() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_NAME, "1");
+        mvc.perform(get("/items/{id}/availability?from={from}&to={to}",
+                        itemId, "2030-01-03T00:00:00", "2030-01-01T00:00:00")
+                        .headers(headers)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
     /////////////////////////// Создание и обновление ////////////////////////
 
     @Test
@@ -336,7 +379,7 @@ public class ItemControllerMvcTest {
 
     @Test
     void normalSearchItemsTest() throws Exception {
-        when(itemClient.searchItems(anyString(), anyInt(), anyInt()))
+        when(itemClient.searchItems(anyString(), anyInt(), anyInt(), any()))
                 .thenReturn(makeResponse(List.of(itemInDto, patchInDto)));
 
         mvc.perform(get("/items/search?text=abc&from=0&size=20")
@@ -356,7 +399,7 @@ public class ItemControllerMvcTest {
 
     @Test
     void searchItemsWithNegativeFromTest() throws Exception {
-        when(itemClient.searchItems(anyString(), anyInt(), anyInt()))
+        when(itemClient.searchItems(anyString(), anyInt(), anyInt(), any()))
                 .thenReturn(makeResponse(List.of(itemInDto, patchInDto)));
 
         mvc.perform(get("/items/search?text=abc&from=-1&size=20")
@@ -367,7 +410,7 @@ public class ItemControllerMvcTest {
 
     @Test
     void searchItemsWithNonPositiveSizeTest() throws Exception {
-        when(itemClient.searchItems(anyString(), anyInt(), anyInt()))
+        when(itemClient.searchItems(anyString(), anyInt(), anyInt(), any()))
                 .thenReturn(makeResponse(List.of(itemInDto, patchInDto)));
 
         mvc.perform(get("/items/search?text=abc&from=0&size=0")
@@ -3,12 +3,33 @@ package ru.practicum.shareit.booking.controller;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.practicum.shareit.booking.dto.ApprovalRuleDto;
+import ru.practicum.shareit.booking.dto.BookingCartInDto;
+import ru.practicum.shareit.booking.dto.BookingCountsDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionOutDto;
+import ru.practicum.shareit.booking.dto.BookingFilter;
+import ru.practicum.shareit.booking.dto.BookingHoldInDto;
+import ru.practicum.shareit.booking.dto.BookingHoldOutDto;
+import ru.practicum.shareit.booking.dto.BookingImportReportDto;
 import ru.practicum.shareit.booking.dto.BookingInDto;
 import ru.practicum.shareit.booking.dto.BookingOutDto;
+import ru.practicum.shareit.booking.dto.BookingSeriesInDto;
+import ru.practicum.shareit.booking.dto.BookingSeriesOutDto;
+import ru.practicum.shareit.booking.dto.WaitlistEntryDto;
+import ru.practicum.shareit.booking.service.ApprovalRuleService;
+import ru.practicum.shareit.booking.service.BookingImportService;
 import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.booking.service.WaitlistService;
+import ru.practicum.shareit.common.pagination.PageCursor;
 
+import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Slf4j
@@ -18,29 +39,79 @@ import java.util.List;
 public class BookingController {
     private static final String HEADER_NAME = "X-Sharer-User-Id";
     private final BookingService service;
+    private final BookingImportService importService;
+    private final ApprovalRuleService approvalRuleService;
+    private final WaitlistService waitlistService;
 
     ///////////////////////////// Получение данных ///////////////////////////
 
     //получение всех бронирований пользователя
     @GetMapping
-    public List<BookingOutDto> getAllBookings(@RequestHeader(HEADER_NAME) Long bookerId,
-                                              @RequestParam(defaultValue = "ALL") String state,
-                                              @RequestParam(defaultValue = "0") int from,
-                                              @RequestParam(defaultValue = "20") int size) {
+    public ResponseEntity<List<BookingOutDto>> getAllBookings(@RequestHeader(HEADER_NAME) Long bookerId,
+                                                              @RequestParam(defaultValue = "ALL") String state,
+                                                              @RequestParam(defaultValue = "0") int from,
+                                                              @RequestParam(defaultValue = "20") int size,
+                                                              @RequestParam(required = false) String cursor) {
         log.info("Запрошено получение всех бронирований пользователя с идентификатором " + bookerId);
-        PageRequest pageable = PageRequest.of(from / size, size);
-        return service.getAllBookingsForBooker(bookerId, state, pageable);
+        PageCursor page = PageCursor.of(from, size, cursor);
+        return PageCursor.toResponse(service.getAllBookingsForBooker(bookerId, state, page),
+                booking -> PageCursor.ofStart(booking.getStart(), booking.getId()));
     }
 
     //получение всех бронирований всех вещей одного владельца
     @GetMapping(value = "/owner")
-    public List<BookingOutDto> getAllOwnerBookings(@RequestHeader(HEADER_NAME) Long ownerId,
-                                                   @RequestParam(defaultValue = "ALL") String state,
-                                                   @RequestParam(defaultValue = "0") int from,
-                                                   @RequestParam(defaultValue = "20") int size) {
+    public ResponseEntity<List<BookingOutDto>> getAllOwnerBookings(@RequestHeader(HEADER_NAME) Long ownerId,
+                                                                   @RequestParam(defaultValue = "ALL") String state,
+                                                                   @RequestParam(defaultValue = "0") int from,
+                                                                   @RequestParam(defaultValue = "20") int size,
+                                                                   @RequestParam(required = false) String cursor) {
         log.info("Запрошено получение бронирований вещей пользователя с идентификатором " + ownerId);
-        PageRequest pageable = PageRequest.of(from / size, size);
-        return service.getAllBookingsForOwner(ownerId, state, pageable);
+        PageCursor page = PageCursor.of(from, size, cursor);
+        return PageCursor.toResponse(service.getAllBookingsForOwner(ownerId, state, page),
+                booking -> PageCursor.ofStart(booking.getStart(), booking.getId()));
+    }
+
+    //Составная выборка бронирований пользователя (owner=true - бронирований его вещей).
+    //Состояния, вещи и статусы задаются списками через запятую; окно дат (after, before)
+    //отбирает бронирования, налегающие на него.
+    @GetMapping(value = "/filter")
+    public ResponseEntity<List<BookingOutDto>> filterBookings(
+            @RequestHeader(HEADER_NAME) Long userId,
+            @RequestParam(defaultValue = "false") boolean owner,
+            @RequestParam(name = "state", required = false) List<String> states,
+            @RequestParam(name = "itemId", required = false) List<Long> itemIds,
+            @RequestParam(name = "status", required = false) List<String> statuses,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime after,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before,
+            @RequestParam(defaultValue = "0") int from,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor) {
+        log.info("Запрошена составная выборка бронирований пользователя с идентификатором " + userId);
+        BookingFilter filter = BookingFilter.of(owner, states, itemIds, statuses, after, before);
+        PageCursor page = PageCursor.of(from, size, cursor);
+        return PageCursor.toResponse(service.filterBookings(userId, filter, page),
+                booking -> PageCursor.ofStart(booking.getStart(), booking.getId()));
+    }
+
+    //число бронирований пользователя по состояниям
+    @GetMapping(value = "/counts")
+    public BookingCountsDto getBookingCounts(@RequestHeader(HEADER_NAME) Long bookerId) {
+        log.info("Запрошены счетчики бронирований пользователя с идентификатором " + bookerId);
+        return service.getBookingCountsForBooker(bookerId);
+    }
+
+    //число бронирований вещей владельца по состояниям
+    @GetMapping(value = "/owner/counts")
+    public BookingCountsDto getOwnerBookingCounts(@RequestHeader(HEADER_NAME) Long ownerId) {
+        log.info("Запрошены счетчики бронирований вещей пользователя с идентификатором " + ownerId);
+        return service.getBookingCountsForOwner(ownerId);
+    }
+
+    //правило автоматического согласования броней владельца
+    @GetMapping(value = "/owner/rules")
+    public ApprovalRuleDto getApprovalRule(@RequestHeader(HEADER_NAME) Long ownerId) {
+        log.info("Запрошено правило согласования владельца " + ownerId);
+        return approvalRuleService.getRule(ownerId);
     }
 
     //получение бронирования по его идентификатору
@@ -50,6 +121,27 @@ public class BookingController {
         return service.getBookingById(bookingId, ownerId);
     }
 
+    //подписка на события бронирования (владельца вещей и автора броней)
+    @GetMapping(value = "/events")
+    public SseEmitter subscribeToEvents(@RequestHeader(HEADER_NAME) Long userId) {
+        log.info("Запрошена подписка на события бронирования пользователем " + userId);
+        return service.subscribeToEvents(userId);
+    }
+
+    //действующие удержания пользователя
+    @GetMapping(value = "/holds")
+    public List<BookingHoldOutDto> getHolds(@RequestHeader(HEADER_NAME) Long userId) {
+        log.info("Запрошены удержания пользователя с идентификатором " + userId);
+        return service.getHolds(userId);
+    }
+
+    //записи пользователя в листах ожидания
+    @GetMapping(value = "/waitlist")
+    public List<WaitlistEntryDto> getWaitlist(@RequestHeader(HEADER_NAME) Long userId) {
+        log.info("Запрошен лист ожидания пользователя с идентификатором " + userId);
+        return waitlistService.getEntries(userId);
+    }
+
     /////////////////////////// Создание и обновление ////////////////////////
 
     //создание новой брони
@@ -60,12 +152,100 @@ public class BookingController {
         return service.createBooking(bookerId, bookingInDto);
     }
 
+    //создание серии повторяющихся броней (при занятых периодах серия не создается - 409)
+    @PostMapping(value = "/series")
+    public ResponseEntity<BookingSeriesOutDto> createBookingSeries(@RequestHeader(HEADER_NAME) Long bookerId,
+                                                                   @RequestBody BookingSeriesInDto seriesDto) {
+        log.info("Запрошено создание серии броней вещи " + seriesDto.getItemId() + " пользователем " + bookerId);
+        BookingSeriesOutDto result = service.createBookingSeries(bookerId, seriesDto);
+        return ResponseEntity.status(result.getConflicts().isEmpty() ? HttpStatus.OK : HttpStatus.CONFLICT)
+                .body(result);
+    }
+
+    //бронирование набора вещей на один период (все или ничего)
+    @PostMapping(value = "/cart")
+    public List<BookingOutDto> createCartBookings(@RequestHeader(HEADER_NAME) Long bookerId,
+                                                  @RequestBody BookingCartInDto cartDto) {
+        log.info("Запрошено бронирование вещей " + cartDto.getItemIds() + " пользователем " + bookerId);
+        return service.createCartBookings(bookerId, cartDto);
+    }
+
+    //временное удержание периода вещи
+    @PostMapping(value = "/holds")
+    public BookingHoldOutDto placeHold(@RequestHeader(HEADER_NAME) Long userId,
+                                       @RequestBody BookingHoldInDto holdDto) {
+        log.info("Запрошено удержание вещи " + holdDto.getItemId() + " пользователем " + userId);
+        return service.placeHold(userId, holdDto);
+    }
+
+    //снятие удержания держателем
+    @DeleteMapping(value = "/holds/{holdId}")
+    public void releaseHold(@RequestHeader(HEADER_NAME) Long userId, @PathVariable("holdId") long holdId) {
+        log.info("Пользователь " + userId + " снимает удержание с идентификатором " + holdId);
+        service.releaseHold(userId, holdId);
+    }
+
+    //постановка в лист ожидания занятого периода вещи
+    @PostMapping(value = "/waitlist")
+    public WaitlistEntryDto joinWaitlist(@RequestHeader(HEADER_NAME) Long userId,
+                                         @RequestBody BookingInDto periodDto) {
+        log.info("Пользователь " + userId + " встает в лист ожидания вещи " + periodDto.getItemId());
+        return waitlistService.join(userId, periodDto);
+    }
+
+    //выход из листа ожидания
+    @DeleteMapping(value = "/waitlist/{entryId}")
+    public void leaveWaitlist(@RequestHeader(HEADER_NAME) Long userId, @PathVariable("entryId") long entryId) {
+        log.info("Пользователь " + userId + " покидает лист ожидания (запись " + entryId + ")");
+        waitlistService.leave(userId, entryId);
+    }
+
+    //задание правила автоматического согласования
+    @PutMapping(value = "/owner/rules")
+    public ApprovalRuleDto putApprovalRule(@RequestHeader(HEADER_NAME) Long ownerId,
+                                           @RequestBody ApprovalRuleDto ruleDto) {
+        log.info("Владелец " + ownerId + " задает правило согласования");
+        return approvalRuleService.putRule(ownerId, ruleDto);
+    }
+
+    //удаление правила автоматического согласования
+    @DeleteMapping(value = "/owner/rules")
+    public void deleteApprovalRule(@RequestHeader(HEADER_NAME) Long ownerId) {
+        log.info("Владелец " + ownerId + " удаляет правило согласования");
+        approvalRuleService.deleteRule(ownerId);
+    }
+
+    //импорт новых бронирований своих вещей из потока NDJSON
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    public BookingImportReportDto importBookings(@RequestHeader(HEADER_NAME) Long ownerId,
+                                                 InputStream input) {
+        log.info("Владелец " + ownerId + " импортирует бронирования.");
+        return importService.importBookings(ownerId, input);
+    }
+
     //подтверждение запрошенной ранее брони владельцем
     @PatchMapping(value = "/{id}")
     public BookingOutDto confirmBooking(@PathVariable("id") long bookingId,
                                         @RequestHeader(HEADER_NAME) Long ownerId,
-                                        @RequestParam Boolean approved) {
+                                        @RequestParam Boolean approved,
+                                        @RequestParam(defaultValue = "false") boolean rejectOverlapping) {
         log.info("Владелец " + ownerId + " согласовывает бронь с идентификатором " + bookingId);
-        return service.confirmBooking(bookingId, ownerId, approved);
+        return service.confirmBooking(bookingId, ownerId, approved, rejectOverlapping);
+    }
+
+    //отмена брони автором или владельцем
+    @PatchMapping(value = "/{id}/cancel")
+    public BookingOutDto cancelBooking(@PathVariable("id") long bookingId,
+                                       @RequestHeader(HEADER_NAME) Long userId) {
+        log.info("Пользователь " + userId + " отменяет бронь с идентификатором " + bookingId);
+        return service.cancelBooking(bookingId, userId);
+    }
+
+    //пакетное согласование броней владельцем
+    @PatchMapping(value = "/batch")
+    public List<BookingDecisionOutDto> confirmBookings(@RequestHeader(HEADER_NAME) Long ownerId,
+                                                       @RequestBody List<BookingDecisionDto> decisions) {
+        log.info("Владелец " + ownerId + " согласовывает пакет из " + decisions.size() + " броней");
+        return service.confirmBookings(ownerId, decisions);
     }
 }
@@ -0,0 +1,32 @@
+package ru.practicum.shareit.booking.controller;
+
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.storage.BookingIntervalIndex;
+
+import java.util.Map;
+
+//Служебная точка actuator для сверки и перестроения индекса бронирований
+@Component
+@Endpoint(id = "bookingindex")
+@AllArgsConstructor(onConstructor_ = @Autowired)
+public class BookingIndexEndpoint {
+    private final BookingIntervalIndex intervalIndex;
+
+    //сверка индекса с таблицей бронирований
+    @ReadOperation
+    public Map<String, Object> verify() {
+        return intervalIndex.verify();
+    }
+
+    //принудительное перестроение индекса
+    @WriteOperation
+    public Map<String, Object> rebuild() {
+        intervalIndex.rebuild();
+        return intervalIndex.verify();
+    }
+}
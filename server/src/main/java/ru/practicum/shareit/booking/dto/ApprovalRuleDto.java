@@ -0,0 +1,15 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApprovalRuleDto {
+    private Long ownerId;
+    private Boolean enabled;
+    private Long maxDurationMinutes;
+    private Boolean repeatRentersOnly;
+}
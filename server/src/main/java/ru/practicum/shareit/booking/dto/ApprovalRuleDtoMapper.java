@@ -0,0 +1,15 @@
+package ru.practicum.shareit.booking.dto;
+
+import ru.practicum.shareit.booking.model.ApprovalRule;
+
+public class ApprovalRuleDtoMapper {
+    public static ApprovalRuleDto toApprovalRuleDto(ApprovalRule rule) {
+        return new ApprovalRuleDto(rule.getOwnerId(), rule.getEnabled(), rule.getMaxDurationMinutes(),
+                rule.getRepeatRentersOnly());
+    }
+
+    public static ApprovalRule toApprovalRule(Long ownerId, ApprovalRuleDto ruleDto) {
+        return new ApprovalRule(ownerId, ruleDto.getEnabled(), ruleDto.getMaxDurationMinutes(),
+                Boolean.TRUE.equals(ruleDto.getRepeatRentersOnly()));
+    }
+}
@@ -0,0 +1,18 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+//Заказ набора вещей на один период
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingCartInDto {
+    private List<Long> itemIds;
+    private Timestamp start;
+    private Timestamp end;
+}
@@ -0,0 +1,19 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingCountsDto {
+    private Long all;
+    private Long current;
+    private Long future;
+    private Long past;
+    private Long waiting;
+    private Long rejected;
+    private Long expired;
+    private Long canceled;
+}
@@ -0,0 +1,16 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.practicum.shareit.booking.model.Status;
+
+//Результат пакетного согласования для одной брони (error пуст при успехе)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingDecisionOutDto {
+    private Long bookingId;
+    private Status status;
+    private String error;
+}
@@ -16,7 +16,7 @@ public class BookingDtoMapper {
                 booking.getStart().toLocalDateTime(),
                 booking.getEnd().toLocalDateTime(),
                 booking.getStatus(), bookerOutDto, itemOutDto,
-                booking.getBooker().getId(), booking.getItem().getId());
+                booking.getBooker().getId(), booking.getItem().getId(), null);
     }
 
     public static Booking toBooking(BookingInDto bookingDto) {
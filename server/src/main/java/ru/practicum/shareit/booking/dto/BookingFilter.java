@@ -0,0 +1,61 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.common.exception.BadRequestException;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+//Условия составной выборки бронирований. Пустые наборы и null не ограничивают выборку.
+@Data
+@AllArgsConstructor
+public class BookingFilter {
+    private static final Set<String> STATES = Set.of("ALL", "CURRENT", "PAST", "FUTURE", "WAITING", "REJECTED",
+            "EXPIRED", "CANCELED");
+
+    //бронирования вещей владельца (true) или бронирования автора (false)
+    private boolean owner;
+    //состояния, объединяются по "или"
+    private Set<String> states;
+    private Set<Long> itemIds;
+    private Set<Status> statuses;
+    //окно дат: бронирования, налегающие на промежуток (after, before)
+    private Timestamp after;
+    private Timestamp before;
+
+    //разбор и проверка параметров запроса
+    public static BookingFilter of(boolean owner, Collection<String> states, Collection<Long> itemIds,
+                                   Collection<String> statuses, LocalDateTime after, LocalDateTime before) {
+        Set<String> stateSet = new HashSet<>();
+        if (states != null) {
+            for (String state : states) {
+                String name = state.trim().toUpperCase();
+                if (!STATES.contains(name)) {
+                    throw new BadRequestException("Unknown state: UNSUPPORTED_STATUS");
+                }
+                stateSet.add(name);
+            }
+        }
+        Set<Status> statusSet = EnumSet.noneOf(Status.class);
+        if (statuses != null) {
+            for (String status : statuses) {
+                try {
+                    statusSet.add(Status.valueOf(status.trim().toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    throw new BadRequestException("Unknown status: " + status);
+                }
+            }
+        }
+        if ((after != null) && (before != null) && !before.isAfter(after)) {
+            throw new BadRequestException("Неверные границы окна дат.");
+        }
+        return new BookingFilter(owner, stateSet, (itemIds == null) ? Set.of() : new HashSet<>(itemIds), statusSet,
+                (after == null) ? null : Timestamp.valueOf(after), (before == null) ? null : Timestamp.valueOf(before));
+    }
+}
@@ -0,0 +1,18 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingHoldInDto {
+    private Long itemId;
+    private Timestamp start;
+    private Timestamp end;
+    //время удержания в секундах (если не задано - берется из настроек)
+    private Integer ttlSeconds;
+}
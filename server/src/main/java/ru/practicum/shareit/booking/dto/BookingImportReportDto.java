@@ -0,0 +1,19 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingImportReportDto {
+    private Long total;
+    private Long imported;
+    private Long failed;
+    private Long elapsedMs;
+    private Double rowsPerSecond;
+    private List<BookingImportErrorDto> errors; //не более первых MAX_REPORTED_ERRORS ошибок
+}
@@ -1,6 +1,7 @@
 package ru.practicum.shareit.booking.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -24,4 +25,7 @@ public class BookingOutDto {
     private ItemOutDto item;
     private Long bookerId;
     private Long itemId;
+    //число новых броней, отклоненных из-за наложения при подтверждении (только по запросу)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer rejectedOverlapping;
 }
@@ -0,0 +1,22 @@
+package ru.practicum.shareit.booking.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+//Бронь серии, период которой занят
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingSeriesConflictDto {
+    //номер брони в серии (с нуля)
+    private Integer occurrence;
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime start;
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime end;
+    private String reason;
+}
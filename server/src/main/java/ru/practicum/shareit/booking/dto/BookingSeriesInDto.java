@@ -0,0 +1,21 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+//Серия повторяющихся броней: первая бронь (start, end) и еще count - 1 с шагом intervalDays дней
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingSeriesInDto {
+    private Long itemId;
+    private Timestamp start;
+    private Timestamp end;
+    //шаг серии в днях (если не задан - неделя)
+    private Integer intervalDays;
+    //число броней в серии
+    private Integer count;
+}
@@ -0,0 +1,16 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+//Результат создания серии: либо все брони серии, либо занятые периоды (и тогда серия не создается)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingSeriesOutDto {
+    private List<BookingOutDto> bookings;
+    private List<BookingSeriesConflictDto> conflicts;
+}
@@ -0,0 +1,11 @@
+package ru.practicum.shareit.booking.dto;
+
+import ru.practicum.shareit.booking.model.WaitlistEntry;
+
+public class WaitlistEntryDtoMapper {
+    public static WaitlistEntryDto toWaitlistEntryDto(WaitlistEntry entry) {
+        return new WaitlistEntryDto(entry.getId(), entry.getItem().getId(), entry.getUser().getId(),
+                entry.getStart().toLocalDateTime(), entry.getEnd().toLocalDateTime(),
+                entry.getCreated().toLocalDateTime());
+    }
+}
@@ -0,0 +1,41 @@
+package ru.practicum.shareit.booking.event;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+
+import java.time.LocalDateTime;
+
+//Событие изменения брони; публикуется сервисом бронирований внутри процесса
+//и рассылается подписчикам (владельцу вещи и автору брони)
+@Getter
+@ToString
+@AllArgsConstructor
+public class BookingEvent {
+    private final BookingEventType type;
+    private final Long bookingId;
+    private final Long itemId;
+    private final Long ownerId;
+    private final Long bookerId;
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private final LocalDateTime start;
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private final LocalDateTime end;
+    private final Status status;
+    private final Status previousStatus;
+
+    public static BookingEvent of(BookingEventType type, Booking booking, Status previousStatus) {
+        return new BookingEvent(type,
+                booking.getId(),
+                booking.getItem().getId(),
+                booking.getItem().getOwner().getId(),
+                booking.getBooker().getId(),
+                booking.getStart().toLocalDateTime(),
+                booking.getEnd().toLocalDateTime(),
+                booking.getStatus(),
+                previousStatus);
+    }
+}
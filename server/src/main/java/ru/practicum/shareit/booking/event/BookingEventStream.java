@@ -0,0 +1,216 @@
+package ru.practicum.shareit.booking.event;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Рассылка событий бронирования открытым SSE-соединениям пользователей.
+//Соединения обслуживаются асинхронно (servlet async), поэтому простаивающий подписчик
+//не занимает поток. У каждого соединения своя ограниченная очередь сообщений, которую
+//разбирает один из потоков рассылки, так что порядок событий соединения сохраняется,
+//а медленный клиент задерживает только себя. Соединение, чья очередь переполнилась
+//или чья отправка зависла дольше send-timeout, закрывается. Отправка держит монитор эмиттера,
+//поэтому ни complete(), ни completeWithError() из другого потока зависшую запись не прервут:
+//ее прерывает время ожидания записи в сокет (server.tomcat.connection-timeout равно send-timeout),
+//после чего поток рассылки получает ошибку, завершает соединение и берет следующую очередь.
+@Slf4j
+@Component
+public class BookingEventStream {
+    private final long timeout;
+    private final int queueSize;
+    private final long sendTimeoutNanos;
+    //отображение идентификатора пользователя в его открытые соединения
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService sender;
+
+    @Autowired
+    public BookingEventStream(@Value("${shareit.booking.events.timeout-ms:1800000}") long timeout,
+                              @Value("${shareit.booking.events.queue-size:256}") int queueSize,
+                              @Value("${shareit.booking.events.send-timeout-ms:10000}") long sendTimeoutMs,
+                              @Value("${shareit.booking.events.sender-threads:4}") int senderThreads) {
+        this.timeout = timeout;
+        this.queueSize = Math.max(1, queueSize);
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.sender = Executors.newFixedThreadPool(Math.max(1, senderThreads), runnable -> {
+            Thread thread = new Thread(runnable, "booking-events-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    //новое соединение пользователя
+    public SseEmitter subscribe(Long userId) {
+        SseEmitter emitter = new SseEmitter(timeout);
+        Subscriber subscriber = new Subscriber(userId, emitter);
+        subscribers.compute(userId, (id, current) -> {
+            Set<Subscriber> result = (current == null) ? ConcurrentHashMap.newKeySet() : current;
+            result.add(subscriber);
+            return result;
+        });
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+        //первое сообщение сразу отдает клиенту заголовки ответа
+        subscriber.offer(SseEmitter.event().comment("connected"));
+        log.info("Пользователь " + userId + " подписался на события бронирования.");
+        return emitter;
+    }
+
+    //событие уходит владельцу вещи и автору брони
+    @EventListener
+    public void onBookingEvent(BookingEvent event) {
+        publish(event.getOwnerId(), event);
+        publish(event.getBookerId(), event);
+    }
+
+    //Периодическое сообщение не дает закрыть простаивающее соединение и выявляет оборванные.
+    //Соединения, отправка в которые зависла, исключаются из рассылки; саму запись к этому времени
+    //уже прерывает (или вот-вот прервет) время ожидания записи в сокет.
+    @Scheduled(fixedDelayString = "${shareit.booking.events.heartbeat-ms:20000}")
+    public void heartbeat() {
+        long now = System.nanoTime();
+        subscribers.values().forEach(current -> current.forEach(subscriber -> {
+            long sendStarted = subscriber.sendStarted;
+            if ((sendStarted != 0) && (now - sendStarted > sendTimeoutNanos)) {
+                log.warn("Соединение пользователя " + subscriber.userId + " не принимает события и закрыто.");
+                subscriber.close();
+            } else {
+                subscriber.offer(SseEmitter.event().comment("ping"));
+            }
+        }));
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+        subscribers.values().forEach(current -> current.forEach(subscriber -> subscriber.emitter.complete()));
+        subscribers.clear();
+    }
+
+    /////////////////////////// Вспомогательные методы ///////////////////////
+
+    private void publish(Long userId, BookingEvent event) {
+        Set<Subscriber> current = subscribers.get(userId);
+        if (current == null) {
+            return;
+        }
+        for (Subscriber subscriber : current) {
+            subscriber.offer(SseEmitter.event()
+                    .id(String.valueOf(event.getBookingId()))
+                    .name(event.getType().name())
+                    .data(event, MediaType.APPLICATION_JSON));
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.userId, (id, current) -> {
+            current.remove(subscriber);
+            return current.isEmpty() ? null : current;
+        });
+    }
+
+    ///////////////////////////// Вложенные классы ///////////////////////////
+
+    //Соединение с очередью неотправленных сообщений. Очередь разбирается не более чем одним
+    //потоком рассылки; все отправки и завершение соединения выполняются этим потоком,
+    //поэтому зависшая отправка не блокирует ни публикацию событий, ни служебный проход.
+    private final class Subscriber {
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue = new ArrayBlockingQueue<>(queueSize);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile boolean closed;
+        //момент начала текущей отправки (0 - отправки нет)
+        private volatile long sendStarted;
+
+        Subscriber(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        void offer(SseEmitter.SseEventBuilder message) {
+            if (closed) {
+                return;
+            }
+            if (!queue.offer(message)) { //клиент не успевает забирать события
+                log.warn("Очередь событий пользователя " + userId + " переполнена, соединение закрыто.");
+                close();
+                return;
+            }
+            schedule();
+        }
+
+        //соединение исключается из рассылки; завершит его поток, разбирающий очередь
+        void close() {
+            closed = true;
+            unsubscribe(this);
+            queue.clear();
+            schedule();
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this::drain);
+                } catch (RejectedExecutionException e) { //рассылка остановлена
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder message;
+                while (!closed && ((message = queue.poll()) != null)) {
+                    sendStarted = System.nanoTime();
+                    try {
+                        emitter.send(message);
+                    } catch (IOException | IllegalStateException e) { //клиент отключился
+                        closed = true;
+                        unsubscribe(this);
+                        queue.clear();
+                        if (completed.compareAndSet(false, true)) {
+                            emitter.completeWithError(e);
+                        }
+                    } finally {
+                        sendStarted = 0;
+                    }
+                }
+                if (closed && completed.compareAndSet(false, true)) {
+                    emitter.complete();
+                }
+            } finally {
+                draining.set(false);
+            }
+            //сообщение могло прийти после выхода из цикла
+            if (!closed && !queue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package ru.practicum.shareit.booking.event;
+
+public enum BookingEventType {
+    // Создан новый запрос на бронирование
+    CREATED,
+    // Бронь согласована владельцем
+    APPROVED,
+    // Бронь отвергнута владельцем
+    REJECTED,
+    // Бронь не согласована до начала и просрочена
+    EXPIRED,
+    // Бронь отменена автором или владельцем до окончания
+    CANCELED
+}
@@ -0,0 +1,16 @@
+package ru.practicum.shareit.booking.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Set;
+
+//Событие снятия временных удержаний (истечение, снятие держателем или подтверждение его брони):
+//у перечисленных вещей мог освободиться период. Публикуется вне блокировки удержаний.
+@Getter
+@ToString
+@AllArgsConstructor
+public class HoldsReleasedEvent {
+    private final Set<Long> itemIds;
+}
@@ -0,0 +1,32 @@
+package ru.practicum.shareit.booking.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+//Правило автоматического согласования броней для вещей владельца
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "approval_rules")
+public class ApprovalRule {
+    @Id
+    @Column(name = "owner_id")
+    private Long ownerId;
+
+    @Column(nullable = false)
+    private Boolean enabled;
+
+    //наибольшая длительность брони в минутах (null - без ограничения)
+    @Column(name = "max_duration_minutes")
+    private Long maxDurationMinutes;
+
+    //согласовывать только брони тех, кто уже арендовал вещи владельца
+    @Column(name = "repeat_renters_only", nullable = false)
+    private Boolean repeatRentersOnly;
+}
@@ -35,6 +35,10 @@ public class Booking {
     @JoinColumn(name = "booker_id")
     private User booker;
 
+    //владелец вещи (копия items.owner_id для выборок владельца без соединения)
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
     @Enumerated(EnumType.STRING)
     private Status status;
 
@@ -0,0 +1,19 @@
+package ru.practicum.shareit.booking.service;
+
+import ru.practicum.shareit.booking.dto.ApprovalRuleDto;
+
+import java.sql.Timestamp;
+
+public interface ApprovalRuleService {
+    ApprovalRuleDto getRule(Long ownerId);
+
+    ApprovalRuleDto putRule(Long ownerId, ApprovalRuleDto ruleDto);
+
+    void deleteRule(Long ownerId);
+
+    boolean autoApproves(Long ownerId, Long bookerId, Timestamp start, Timestamp end);
+
+    void evict(Long ownerId);
+
+    void clear();
+}
@@ -0,0 +1,123 @@
+package ru.practicum.shareit.booking.service;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.practicum.shareit.booking.dto.ApprovalRuleDto;
+import ru.practicum.shareit.booking.dto.ApprovalRuleDtoMapper;
+import ru.practicum.shareit.booking.model.ApprovalRule;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.storage.ApprovalRuleRepository;
+import ru.practicum.shareit.booking.storage.BookingRepository;
+import ru.practicum.shareit.common.exception.BadRequestException;
+import ru.practicum.shareit.common.exception.NotFoundException;
+import ru.practicum.shareit.user.event.UserDeletedEvent;
+import ru.practicum.shareit.user.storage.UserRepository;
+
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Правила автоматического согласования. Правила владельцев кэшируются в памяти
+//(вместе с отметкой "правила нет"), поэтому создание брони обычно не обращается за ними к базе.
+@Slf4j
+@Service
+@AllArgsConstructor(onConstructor_ = @Autowired)
+public class ApprovalRuleServiceImpl implements ApprovalRuleService {
+    //заглушка для владельцев без правила
+    private static final ApprovalRule NO_RULE = new ApprovalRule(null, false, null, false);
+    private final ApprovalRuleRepository ruleRepository;
+    private final UserRepository userRepository;
+    private final BookingRepository bookingRepository;
+    private final Map<Long, ApprovalRule> rules = new ConcurrentHashMap<>();
+
+    ////////////////////////////////// CRUD //////////////////////////////////
+
+    @Override
+    public ApprovalRuleDto getRule(Long ownerId) {
+        checkOwner(ownerId);
+        ApprovalRule rule = findRule(ownerId);
+        if (rule == NO_RULE) {
+            throw new NotFoundException("Правило согласования владельца " + ownerId + " не задано.");
+        }
+        return ApprovalRuleDtoMapper.toApprovalRuleDto(rule);
+    }
+
+    @Override
+    public ApprovalRuleDto putRule(Long ownerId, ApprovalRuleDto ruleDto) {
+        checkOwner(ownerId);
+        if (ruleDto.getEnabled() == null) {
+            throw new BadRequestException("Не указано, включено ли правило согласования.");
+        }
+        if ((ruleDto.getMaxDurationMinutes() != null) && (ruleDto.getMaxDurationMinutes() <= 0)) {
+            throw new BadRequestException("Недопустимая длительность брони: " + ruleDto.getMaxDurationMinutes());
+        }
+        ApprovalRule rule = ruleRepository.save(ApprovalRuleDtoMapper.toApprovalRule(ownerId, ruleDto));
+        rules.put(ownerId, rule);
+        log.info("Задано правило согласования владельца " + ownerId);
+        return ApprovalRuleDtoMapper.toApprovalRuleDto(rule);
+    }
+
+    @Override
+    public void deleteRule(Long ownerId) {
+        if (ruleRepository.existsById(ownerId)) {
+            ruleRepository.deleteById(ownerId);
+            log.info("Удалено правило согласования владельца " + ownerId);
+        } else {
+            log.warn("Правило согласования владельца " + ownerId + " не найдено.");
+        }
+        rules.put(ownerId, NO_RULE);
+    }
+
+    //////////////////////////// Проверка правила ////////////////////////////
+
+    //согласуется ли бронь автоматически (наложения проверяет вызывающий)
+    @Override
+    public boolean autoApproves(Long ownerId, Long bookerId, Timestamp start, Timestamp end) {
+        ApprovalRule rule = findRule(ownerId);
+        if (!rule.getEnabled()) {
+            return false;
+        }
+        if ((rule.getMaxDurationMinutes() != null)
+                && (end.getTime() - start.getTime() > rule.getMaxDurationMinutes() * 60_000L)) {
+            return false;
+        }
+        //запрос к базе нужен только для правила "постоянные арендаторы"
+        return !rule.getRepeatRentersOnly()
+                || bookingRepository.existsByBooker_IdAndOwnerIdAndStatus(bookerId, ownerId, Status.APPROVED);
+    }
+
+    //владелец удален вместе с правилом
+    @Override
+    public void evict(Long ownerId) {
+        rules.remove(ownerId);
+    }
+
+    @Override
+    public void clear() {
+        rules.clear();
+    }
+
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        if (event.isAllUsers()) {
+            clear();
+        } else {
+            evict(event.getUserId());
+        }
+    }
+
+    /////////////////////////// Вспомогательные методы ///////////////////////
+
+    private ApprovalRule findRule(Long ownerId) {
+        return rules.computeIfAbsent(ownerId, id -> ruleRepository.findById(id).orElse(NO_RULE));
+    }
+
+    private void checkOwner(Long ownerId) {
+        if (!userRepository.existsById(ownerId)) {
+            throw new NotFoundException("Пользователь с идентификатором " + ownerId + " не найден.");
+        }
+    }
+}
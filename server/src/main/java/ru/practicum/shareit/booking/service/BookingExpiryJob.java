@@ -0,0 +1,108 @@
+package ru.practicum.shareit.booking.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.event.BookingEvent;
+import ru.practicum.shareit.booking.event.BookingEventType;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.storage.BookingRepository;
+import ru.practicum.shareit.common.time.TickingClock;
+
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+//Фоновая просрочка новых броней, начало которых уже прошло: WAITING -> EXPIRED.
+//Брони обрабатываются порциями; каждая порция переводится одним запросом update
+//в отдельной короткой транзакции, поэтому блокировки строк держатся недолго и
+//параллельное согласование ждет не дольше одной порции. Бронь, согласованная
+//между выборкой и обновлением, не меняется (условие status = 'WAITING').
+@Slf4j
+@Component
+public class BookingExpiryJob {
+    private final BookingRepository bookingRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TickingClock clock;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final int maxChunks;
+    private final Counter expiredCounter;
+    private final Timer sweepTimer;
+    private final AtomicLong lastSweepCount = new AtomicLong();
+
+    @Autowired
+    public BookingExpiryJob(BookingRepository bookingRepository,
+                            ApplicationEventPublisher eventPublisher,
+                            TickingClock clock,
+                            MeterRegistry meterRegistry,
+                            @Value("${shareit.booking.expiry.enabled:true}") boolean enabled,
+                            @Value("${shareit.booking.expiry.chunk-size:500}") int chunkSize,
+                            @Value("${shareit.booking.expiry.max-chunks:100}") int maxChunks) {
+        this.bookingRepository = bookingRepository;
+        this.eventPublisher = eventPublisher;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxChunks = Math.max(1, maxChunks);
+        this.expiredCounter = Counter.builder("shareit.booking.expired")
+                .description("Число просроченных броней")
+                .register(meterRegistry);
+        this.sweepTimer = Timer.builder("shareit.booking.expiry.sweep")
+                .description("Длительность прохода просрочки броней")
+                .register(meterRegistry);
+        meterRegistry.gauge("shareit.booking.expiry.last", lastSweepCount);
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.booking.expiry.interval-ms:60000}",
+            initialDelayString = "${shareit.booking.expiry.initial-delay-ms:30000}")
+    public void sweep() {
+        if (enabled) {
+            sweepTimer.record(this::expire);
+        }
+    }
+
+    //проход просрочки; возвращает число просроченных броней
+    public long expire() {
+        Timestamp now = clock.now();
+        long total = 0;
+        for (int chunk = 0; chunk < maxChunks; chunk++) {
+            List<Booking> candidates = bookingRepository.findExpiryCandidates(now, PageRequest.of(0, chunkSize));
+            if (candidates.isEmpty()) {
+                break;
+            }
+            Set<Long> ids = candidates.stream().map(Booking::getId).collect(Collectors.toSet());
+            int updated = bookingRepository.expireWaiting(ids);
+            if (updated < ids.size()) { //часть броней успели согласовать - уточняем, какие просрочены
+                ids = new HashSet<>(bookingRepository.findIdsByIdInAndStatus(ids, Status.EXPIRED));
+            }
+            for (Booking booking : candidates) {
+                if (ids.contains(booking.getId())) {
+                    booking.setStatus(Status.EXPIRED);
+                    eventPublisher.publishEvent(BookingEvent.of(BookingEventType.EXPIRED, booking, Status.WAITING));
+                }
+            }
+            total += ids.size();
+            if (candidates.size() < chunkSize) {
+                break;
+            }
+        }
+        expiredCounter.increment(total);
+        lastSweepCount.set(total);
+        if (total > 0) {
+            log.info("Просрочено новых броней: " + total);
+        }
+        return total;
+    }
+}
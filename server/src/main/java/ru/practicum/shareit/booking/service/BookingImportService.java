@@ -0,0 +1,9 @@
+package ru.practicum.shareit.booking.service;
+
+import ru.practicum.shareit.booking.dto.BookingImportReportDto;
+
+import java.io.InputStream;
+
+public interface BookingImportService {
+    BookingImportReportDto importBookings(Long ownerId, InputStream input);
+}
@@ -0,0 +1,304 @@
+package ru.practicum.shareit.booking.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.BookingImportDto;
+import ru.practicum.shareit.booking.dto.BookingImportErrorDto;
+import ru.practicum.shareit.booking.dto.BookingImportReportDto;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.storage.BookingBatchWriter;
+import ru.practicum.shareit.booking.storage.BookingCounters;
+import ru.practicum.shareit.booking.storage.BookingHolds;
+import ru.practicum.shareit.booking.storage.BookingIntervalIndex;
+import ru.practicum.shareit.booking.storage.CommentEligibilityIndex;
+import ru.practicum.shareit.common.exception.BadRequestException;
+import ru.practicum.shareit.common.exception.NotFoundException;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.storage.ItemBookingPointers;
+import ru.practicum.shareit.item.storage.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.storage.UserRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+//Импорт бронирований из потока NDJSON (одна бронь в строке).
+//Владелец переносит брони своих вещей из другой системы, включая подтвержденные и прошедшие.
+//Новые брони проверяются как при создании (чужие удержания, занятые периоды при ранней проверке),
+//подтвержденные не должны налагаться ни на подтвержденные брони вещи, ни друг на друга в порции:
+//наложения ищутся в памяти по вещам под блокировками вещей порции. Поток читается порциями:
+//вещи с владельцами и пользователи порции читаются по одному запросу, идентификаторы выделяются
+//сразу на всю порцию, а сама порция вставляется одним пакетом JDBC в своей транзакции.
+@Slf4j
+@Service
+public class BookingImportServiceImpl implements BookingImportService {
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private final ObjectMapper objectMapper;
+    private final ItemRepository itemRepository;
+    private final UserRepository userRepository;
+    private final BookingBatchWriter bookingBatchWriter;
+    private final BookingIntervalIndex intervalIndex;
+    private final BookingCounters bookingCounters;
+    private final BookingQueryCache queryCache;
+    private final BookingHolds holds;
+    private final CommentEligibilityIndex eligibilityIndex;
+    private final ItemBookingPointers bookingPointers;
+    private final StripedItemLocks itemLocks;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    @Autowired
+    public BookingImportServiceImpl(ObjectMapper objectMapper,
+                                    ItemRepository itemRepository,
+                                    UserRepository userRepository,
+                                    BookingBatchWriter bookingBatchWriter,
+                                    BookingIntervalIndex intervalIndex,
+                                    BookingCounters bookingCounters,
+                                    BookingQueryCache queryCache,
+                                    BookingHolds holds,
+                                    CommentEligibilityIndex eligibilityIndex,
+                                    ItemBookingPointers bookingPointers,
+                                    StripedItemLocks itemLocks,
+                                    TransactionTemplate transactionTemplate,
+                                    @Value("${shareit.booking.import.chunk-size:1000}") int chunkSize) {
+        this.objectMapper = objectMapper;
+        this.itemRepository = itemRepository;
+        this.userRepository = userRepository;
+        this.bookingBatchWriter = bookingBatchWriter;
+        this.intervalIndex = intervalIndex;
+        this.bookingCounters = bookingCounters;
+        this.queryCache = queryCache;
+        this.holds = holds;
+        this.eligibilityIndex = eligibilityIndex;
+        this.bookingPointers = bookingPointers;
+        this.itemLocks = itemLocks;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    @Override
+    public BookingImportReportDto importBookings(Long ownerId, InputStream input) {
+        if (!userRepository.existsById(ownerId)) {
+            throw new NotFoundException("Пользователь " + ownerId + " не найден.");
+        }
+        long started = System.nanoTime();
+        BookingImportReportDto report = new BookingImportReportDto(0L, 0L, 0L, 0L, 0.0, new ArrayList<>());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            List<ImportRow> chunk = new ArrayList<>(chunkSize);
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                chunk.add(new ImportRow(lineNumber, line));
+                if (chunk.size() == chunkSize) {
+                    importChunk(ownerId, chunk, report);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(ownerId, chunk, report);
+            }
+        } catch (IOException e) {
+            throw new BadRequestException("Ошибка чтения данных импорта: " + e.getMessage());
+        }
+        if (report.getImported() > 0) { //счетчики состояний, кэш выборок и указатели броней загрузятся заново
+            bookingCounters.clear();
+            queryCache.clear();
+            bookingPointers.requestRebuild();
+        }
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+        report.setElapsedMs(elapsedMs);
+        report.setRowsPerSecond(report.getTotal() * 1000.0 / Math.max(1, elapsedMs));
+        log.info("Владельцем " + ownerId + " импортировано " + report.getImported() + " броней из "
+                + report.getTotal() + " за " + elapsedMs + " мс.");
+        return report;
+    }
+
+    ////////////////////////////// Обработка порции ///////////////////////////
+
+    private void importChunk(Long ownerId, List<ImportRow> rows, BookingImportReportDto report) {
+        report.setTotal(report.getTotal() + rows.size());
+        //разбор строк и проверка полей
+        List<ImportRow> parsed = new ArrayList<>();
+        for (ImportRow row : rows) {
+            try {
+                row.dto = objectMapper.readValue(row.line, BookingImportDto.class);
+            } catch (JsonProcessingException e) {
+                fail(report, row, "Некорректная строка: " + e.getOriginalMessage());
+                continue;
+            }
+            String error = validate(row.dto);
+            if (error != null) {
+                fail(report, row, error);
+            } else {
+                parsed.add(row);
+            }
+        }
+        //вещи (вместе с владельцами) и авторы читаются одним запросом на порцию
+        Map<Long, Item> items = itemRepository.findAllWithOwnersByIdIn(parsed.stream()
+                        .map(row -> row.dto.getItemId()).collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+        Map<Long, User> users = userRepository.findAllById(parsed.stream()
+                        .map(row -> row.dto.getBookerId()).collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        List<ImportRow> accepted = new ArrayList<>();
+        for (ImportRow row : parsed) {
+            Item item = items.get(row.dto.getItemId());
+            User booker = users.get(row.dto.getBookerId());
+            if (item == null) {
+                fail(report, row, "Вещь с идентификатором " + row.dto.getItemId() + " не найдена.");
+            } else if (!item.getOwner().getId().equals(ownerId)) {
+                fail(report, row, "Вещь с идентификатором " + item.getId() + " принадлежит другому владельцу.");
+            } else if (booker == null) {
+                fail(report, row, "Пользователь с идентификатором " + row.dto.getBookerId() + " не найден.");
+            } else if (item.getOwner().getId().equals(booker.getId())) {
+                fail(report, row, "Нельзя забронировать свою вещь.");
+            } else {
+                Booking booking = new Booking();
+                booking.setStart(Timestamp.valueOf(row.dto.getStart()));
+                booking.setEnd(Timestamp.valueOf(row.dto.getEnd()));
+                booking.setItem(item);
+                booking.setBooker(booker);
+                booking.setOwnerId(item.getOwner().getId());
+                booking.setStatus(row.dto.getStatus() == null ? Status.WAITING : row.dto.getStatus());
+                String error = checkPeriod(booking);
+                if (error != null) {
+                    fail(report, row, error);
+                } else {
+                    row.booking = booking;
+                    accepted.add(row);
+                }
+            }
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+        //наложения подтвержденных броней проверяются под блокировками их вещей
+        Set<Long> itemIds = accepted.stream()
+                .filter(row -> row.booking.getStatus() == Status.APPROVED)
+                .map(row -> row.booking.getItem().getId())
+                .collect(Collectors.toSet());
+        itemLocks.withItemLocks(itemIds, () -> {
+            insertChunk(accepted, report);
+            return null;
+        });
+    }
+
+    //Для новых броней - те же проверки периода, что и при создании брони, для подтвержденных -
+    //чужие удержания (наложения проверяются при вставке). Отклоненные, отмененные и просроченные
+    //брони периода не занимают и не проверяются.
+    private String checkPeriod(Booking booking) {
+        Long itemId = booking.getItem().getId();
+        Status status = booking.getStatus();
+        if ((status != Status.WAITING) && (status != Status.APPROVED)) {
+            return null;
+        }
+        if ((status == Status.WAITING) && intervalIndex.isCheckOnCreate()
+                && intervalIndex.hasOverlap(itemId, booking.getStart(), booking.getEnd())) {
+            return "Вещь с идентификатором " + itemId + " уже забронирована на этот период.";
+        }
+        if (holds.hasOverlap(itemId, booking.getStart(), booking.getEnd(), booking.getBooker().getId())) {
+            return "Период вещи с идентификатором " + itemId + " удерживается другим пользователем.";
+        }
+        return null;
+    }
+
+    //вызывается под блокировками вещей подтвержденных броней порции
+    private void insertChunk(List<ImportRow> accepted, BookingImportReportDto report) {
+        Map<Long, List<Booking>> approvedInChunk = new HashMap<>();
+        List<ImportRow> toInsert = new ArrayList<>();
+        for (ImportRow row : accepted) {
+            Booking booking = row.booking;
+            if (booking.getStatus() == Status.APPROVED) {
+                Long itemId = booking.getItem().getId();
+                List<Booking> sameItem = approvedInChunk.computeIfAbsent(itemId, id -> new ArrayList<>());
+                boolean overlaps = intervalIndex.hasOverlap(itemId, booking.getStart(), booking.getEnd())
+                        || sameItem.stream().anyMatch(other -> other.getEnd().after(booking.getStart())
+                        && other.getStart().before(booking.getEnd()));
+                if (overlaps) {
+                    fail(report, row, "Бронь налагается на подтвержденную бронь вещи " + itemId + ".");
+                    continue;
+                }
+                sameItem.add(booking);
+            }
+            toInsert.add(row);
+        }
+        if (toInsert.isEmpty()) {
+            return;
+        }
+        List<Booking> bookings = toInsert.stream().map(row -> row.booking).collect(Collectors.toList());
+        try {
+            List<Long> ids = bookingBatchWriter.allocateIds(bookings.size());
+            for (int i = 0; i < bookings.size(); i++) {
+                bookings.get(i).setId(ids.get(i));
+            }
+            transactionTemplate.executeWithoutResult(status -> bookingBatchWriter.insertBookings(bookings));
+        } catch (DataAccessException e) { //порция не записана целиком
+            String message = "Порция не записана: " + e.getMostSpecificCause().getMessage();
+            toInsert.forEach(row -> fail(report, row, message));
+            return;
+        }
+        List<Booking> approved = bookings.stream()
+                .filter(booking -> booking.getStatus() == Status.APPROVED)
+                .collect(Collectors.toList());
+        intervalIndex.addAll(approved);
+        eligibilityIndex.addAll(approved);
+        report.setImported(report.getImported() + bookings.size());
+    }
+
+    /////////////////////////// Вспомогательные методы ///////////////////////
+
+    private static String validate(BookingImportDto dto) {
+        if ((dto.getItemId() == null) || (dto.getBookerId() == null)) {
+            return "Не заданы вещь или автор брони.";
+        }
+        if ((dto.getStart() == null) || (dto.getEnd() == null)) {
+            return "Не заданы границы брони.";
+        }
+        if (!dto.getEnd().isAfter(dto.getStart())) {
+            return "Неверные границы бронирования.";
+        }
+        return null;
+    }
+
+    private static void fail(BookingImportReportDto report, ImportRow row, String error) {
+        report.setFailed(report.getFailed() + 1);
+        if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+            report.getErrors().add(new BookingImportErrorDto(row.lineNumber, error));
+        }
+    }
+
+    //строка потока и результаты ее обработки
+    private static final class ImportRow {
+        private final long lineNumber;
+        private final String line;
+        private BookingImportDto dto;
+        private Booking booking;
+
+        ImportRow(long lineNumber, String line) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+    }
+}
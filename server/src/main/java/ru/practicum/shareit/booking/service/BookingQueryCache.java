@@ -0,0 +1,174 @@
+package ru.practicum.shareit.booking.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.dto.BookingOutDto;
+import ru.practicum.shareit.booking.event.BookingEvent;
+import ru.practicum.shareit.common.pagination.PageCursor;
+import ru.practicum.shareit.common.time.TickingClock;
+import ru.practicum.shareit.user.event.UserDeletedEvent;
+
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+//Кэш результатов выборок бронирований (по автору и по владельцу).
+//Ключ - пользователь, состояние, позиция страницы и, для CURRENT/PAST/FUTURE, такт часов.
+//Изменение брони сбрасывает записи только ее автора и владельца вещи.
+@Component
+public class BookingQueryCache {
+    //состояния, зависящие от текущего времени
+    private static final Set<String> TIME_STATES = Set.of("CURRENT", "PAST", "FUTURE");
+
+    private final TickingClock clock;
+    private final int maxUsers;
+    private final int maxEntriesPerUser;
+    private final Map<Long, UserEntries> bookers = new ConcurrentHashMap<>();
+    private final Map<Long, UserEntries> owners = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter invalidations;
+    private final Timer staleness;
+
+    @Autowired
+    public BookingQueryCache(TickingClock clock,
+                             MeterRegistry meterRegistry,
+                             @Value("${shareit.booking.cache.max-users:10000}") int maxUsers,
+                             @Value("${shareit.booking.cache.max-entries-per-user:64}") int maxEntriesPerUser) {
+        this.clock = clock;
+        this.maxUsers = maxUsers;
+        this.maxEntriesPerUser = maxEntriesPerUser;
+        this.hits = meterRegistry.counter("shareit.booking.cache.hits");
+        this.misses = meterRegistry.counter("shareit.booking.cache.misses");
+        this.invalidations = meterRegistry.counter("shareit.booking.cache.invalidations");
+        //возраст отданного из кэша результата
+        this.staleness = Timer.builder("shareit.booking.cache.staleness")
+                .description("Возраст результата, отданного из кэша")
+                .register(meterRegistry);
+        meterRegistry.gauge("shareit.booking.cache.hit-ratio", this, cache -> {
+            double total = cache.hits.count() + cache.misses.count();
+            return (total == 0) ? 0.0 : cache.hits.count() / total;
+        });
+        meterRegistry.gauge("shareit.booking.cache.entries", this, BookingQueryCache::size);
+    }
+
+    public Slice<BookingOutDto> getForBooker(Long bookerId, String state, PageCursor page, Timestamp now,
+                                             Supplier<Slice<BookingOutDto>> loader) {
+        return get(bookers, bookerId, key(state, page, now), loader);
+    }
+
+    public Slice<BookingOutDto> getForOwner(Long ownerId, String state, PageCursor page, Timestamp now,
+                                            Supplier<Slice<BookingOutDto>> loader) {
+        return get(owners, ownerId, key(state, page, now), loader);
+    }
+
+    @EventListener
+    public void onBookingEvent(BookingEvent event) {
+        invalidate(bookers, event.getBookerId());
+        invalidate(owners, event.getOwnerId());
+    }
+
+    public void clear() {
+        bookers.values().forEach(UserEntries::invalidate);
+        bookers.clear();
+        owners.values().forEach(UserEntries::invalidate);
+        owners.clear();
+        invalidations.increment();
+    }
+
+    //выборки других пользователей тоже могли содержать брони удаленного
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        clear();
+    }
+
+    public int size() {
+        return bookers.values().stream().mapToInt(entries -> entries.results.size()).sum()
+                + owners.values().stream().mapToInt(entries -> entries.results.size()).sum();
+    }
+
+    /////////////////////////// Вспомогательные методы ///////////////////////
+
+    private Slice<BookingOutDto> get(Map<Long, UserEntries> users, Long userId, String key,
+                                     Supplier<Slice<BookingOutDto>> loader) {
+        UserEntries entries = users.get(userId);
+        if (entries != null) {
+            CachedResult cached = entries.results.get(key);
+            if (cached != null) {
+                hits.increment();
+                staleness.record(clock.millis() - cached.createdAt, TimeUnit.MILLISECONDS);
+                return cached.result;
+            }
+        } else {
+            if (users.size() >= maxUsers) { //ограничиваем память: вытесняем произвольного пользователя
+                users.keySet().stream().findAny().ifPresent(id -> invalidate(users, id));
+            }
+            entries = users.computeIfAbsent(userId, id -> new UserEntries());
+        }
+        misses.increment();
+        //если за время чтения базы бронь изменилась, записи пользователя уже убраны из кэша,
+        //и прочитанный (возможно, устаревший) результат попадет в отброшенный набор
+        Slice<BookingOutDto> result;
+        try {
+            result = loader.get();
+        } catch (RuntimeException e) { //например, пользователь не найден - пустой набор не храним
+            if (entries.results.isEmpty()) {
+                users.remove(userId, entries);
+            }
+            throw e;
+        }
+        entries.put(key, new CachedResult(result, clock.millis()), maxEntriesPerUser);
+        return result;
+    }
+
+    private void invalidate(Map<Long, UserEntries> users, Long userId) {
+        UserEntries entries = users.remove(userId);
+        if (entries != null) {
+            entries.invalidate();
+            invalidations.increment();
+        }
+    }
+
+    private static String key(String state, PageCursor page, Timestamp now) {
+        return state + ':' + page.getStartBefore().getTime() + ':' + page.getStartBefore().getNanos()
+                + ':' + page.getIdBefore() + ':' + page.getPageable().getOffset()
+                + ':' + page.getPageable().getPageSize()
+                + (TIME_STATES.contains(state) ? ":" + now.getTime() : "");
+    }
+
+    //////////////////////////// Записи пользователя /////////////////////////
+
+    private static final class UserEntries {
+        private final Map<String, CachedResult> results = new ConcurrentHashMap<>();
+
+        void invalidate() {
+            results.clear();
+        }
+
+        void put(String key, CachedResult result, int maxEntries) {
+            if (results.size() >= maxEntries) { //записи прошлых тактов и лишние страницы вытесняются
+                results.clear();
+            }
+            results.put(key, result);
+        }
+    }
+
+    private static final class CachedResult {
+        private final Slice<BookingOutDto> result;
+        private final long createdAt;
+
+        CachedResult(Slice<BookingOutDto> result, long createdAt) {
+            this.result = result;
+            this.createdAt = createdAt;
+        }
+    }
+}
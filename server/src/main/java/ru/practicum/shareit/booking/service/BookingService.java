@@ -1,21 +1,54 @@
 package ru.practicum.shareit.booking.service;
 
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.practicum.shareit.booking.dto.BookingCartInDto;
+import ru.practicum.shareit.booking.dto.BookingCountsDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionOutDto;
+import ru.practicum.shareit.booking.dto.BookingFilter;
+import ru.practicum.shareit.booking.dto.BookingHoldInDto;
+import ru.practicum.shareit.booking.dto.BookingHoldOutDto;
 import ru.practicum.shareit.booking.dto.BookingInDto;
 import ru.practicum.shareit.booking.dto.BookingOutDto;
+import ru.practicum.shareit.booking.dto.BookingSeriesInDto;
+import ru.practicum.shareit.booking.dto.BookingSeriesOutDto;
+import ru.practicum.shareit.common.pagination.PageCursor;
 
 import java.util.List;
 
 public interface BookingService {
     BookingOutDto createBooking(Long userId, BookingInDto bookingInDto);
 
-    BookingOutDto confirmBooking(Long bookingId, Long userId, Boolean confirm);
+    BookingSeriesOutDto createBookingSeries(Long userId, BookingSeriesInDto seriesDto);
+
+    List<BookingOutDto> createCartBookings(Long userId, BookingCartInDto cartDto);
+
+    BookingOutDto confirmBooking(Long bookingId, Long userId, Boolean confirm, boolean rejectOverlapping);
+
+    List<BookingDecisionOutDto> confirmBookings(Long userId, List<BookingDecisionDto> decisions);
+
+    BookingOutDto cancelBooking(Long bookingId, Long userId);
 
     BookingOutDto getBookingById(Long bookingId, Long userId);
 
-    List<BookingOutDto> getAllBookingsForBooker(Long bookerId, String state, Pageable pageable);
+    Slice<BookingOutDto> getAllBookingsForBooker(Long bookerId, String state, PageCursor page);
+
+    Slice<BookingOutDto> getAllBookingsForOwner(Long ownerId, String state, PageCursor page);
+
+    Slice<BookingOutDto> filterBookings(Long userId, BookingFilter filter, PageCursor page);
+
+    BookingCountsDto getBookingCountsForBooker(Long bookerId);
+
+    BookingCountsDto getBookingCountsForOwner(Long ownerId);
+
+    SseEmitter subscribeToEvents(Long userId);
+
+    BookingHoldOutDto placeHold(Long userId, BookingHoldInDto holdDto);
+
+    List<BookingHoldOutDto> getHolds(Long userId);
 
-    List<BookingOutDto> getAllBookingsForOwner(Long bookerId, String state, Pageable pageable);
+    void releaseHold(Long userId, Long holdId);
 
     //нужен для тестов
     //Timestamp updateBounds(Long bookingId, Timestamp start, Timestamp end);
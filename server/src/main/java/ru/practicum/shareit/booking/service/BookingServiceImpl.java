@@ -3,32 +3,81 @@ package ru.practicum.shareit.booking.service;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.practicum.shareit.booking.dto.BookingCountsDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionOutDto;
+import ru.practicum.shareit.booking.dto.BookingCartInDto;
 import ru.practicum.shareit.booking.dto.BookingDtoMapper;
+import ru.practicum.shareit.booking.dto.BookingFilter;
+import ru.practicum.shareit.booking.dto.BookingHoldInDto;
+import ru.practicum.shareit.booking.dto.BookingHoldOutDto;
 import ru.practicum.shareit.booking.dto.BookingInDto;
 import ru.practicum.shareit.booking.dto.BookingOutDto;
+import ru.practicum.shareit.booking.dto.BookingSeriesConflictDto;
+import ru.practicum.shareit.booking.dto.BookingSeriesInDto;
+import ru.practicum.shareit.booking.dto.BookingSeriesOutDto;
+import ru.practicum.shareit.booking.event.BookingEvent;
+import ru.practicum.shareit.booking.event.BookingEventStream;
+import ru.practicum.shareit.booking.event.BookingEventType;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.storage.BookingBatchWriter;
+import ru.practicum.shareit.booking.storage.BookingCounters;
+import ru.practicum.shareit.booking.storage.BookingFilterQuery;
+import ru.practicum.shareit.booking.storage.BookingHolds;
+import ru.practicum.shareit.booking.storage.BookingIntervalIndex;
 import ru.practicum.shareit.booking.storage.BookingRepository;
 import ru.practicum.shareit.common.exception.BadRequestException;
+import ru.practicum.shareit.common.exception.ConflictException;
+import ru.practicum.shareit.common.exception.ForbiddenException;
 import ru.practicum.shareit.common.exception.NotFoundException;
+import ru.practicum.shareit.common.pagination.PageCursor;
+import ru.practicum.shareit.common.time.TickingClock;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.storage.ItemRepository;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.storage.UserRepository;
 
 import java.sql.Timestamp;
-import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @AllArgsConstructor(onConstructor_ = @Autowired)
 public class BookingServiceImpl implements BookingService {
+    private static final int DEFAULT_SERIES_INTERVAL_DAYS = 7;
+    private static final int MAX_SERIES_COUNT = 104; //два года еженедельных броней
+    private static final int MAX_CART_SIZE = 50;
     private final UserRepository userRepository;
     private final ItemRepository itemRepository;
     private final BookingRepository bookingRepository;
+    private final BookingFilterQuery filterQuery;
+    private final BookingIntervalIndex intervalIndex;
+    private final BookingHolds holds;
+    private final ApprovalRuleService approvalRules;
+    private final StripedItemLocks itemLocks;
+    private final BookingBatchWriter bookingBatchWriter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BookingEventStream eventStream;
+    private final BookingCounters bookingCounters;
+    private final BookingQueryCache queryCache;
+    private final TickingClock clock;
+    private final TransactionTemplate transactionTemplate;
 
     @Override
     public BookingOutDto createBooking(Long bookerId, BookingInDto bookingInDto) {
@@ -50,16 +99,165 @@ public class BookingServiceImpl implements BookingService {
         );
         //заполняем запрос
         Booking booking = BookingDtoMapper.toBooking(bookingInDto);
+        //ранняя проверка по тому же индексу, что и при подтверждении: заведомо занятый период
+        //отклоняется сразу, не дожидаясь решения владельца
+        if (intervalIndex.isCheckOnCreate()
+                && intervalIndex.hasOverlap(itemId, booking.getStart(), booking.getEnd())) {
+            throw new ConflictException("Вещь с идентификатором " + itemId + " уже забронирована на этот период.");
+        }
+        //период, удерживаемый другим пользователем, недоступен
+        if (holds.hasOverlap(itemId, booking.getStart(), booking.getEnd(), bookerId)) {
+            throw new ConflictException("Период вещи с идентификатором " + itemId
+                    + " удерживается другим пользователем.");
+        }
         booking.setStatus(Status.WAITING);
         booking.setItem(item);
         booking.setBooker(booker);
-        //создаем запрос в базе
-        log.info("Создан запрос на бронирование с идентификатором " + item.getId());
-        return BookingDtoMapper.toBookingDto(bookingRepository.save(booking));
+        booking.setOwnerId(item.getOwner().getId());
+        //создаем запрос в базе; по правилу владельца бронь сразу создается согласованной
+        if (approvalRules.autoApproves(booking.getOwnerId(), bookerId, booking.getStart(), booking.getEnd())) {
+            Booking created = booking;
+            booking = itemLocks.withItemLock(itemId, () -> saveAutoApproved(created));
+        } else {
+            booking = bookingRepository.save(booking);
+        }
+        eventPublisher.publishEvent(BookingEvent.of(BookingEventType.CREATED, booking, null));
+        log.info("Создан запрос на бронирование с идентификатором " + booking.getId()
+                + (booking.getStatus() == Status.APPROVED ? " (согласован автоматически)" : ""));
+        return BookingDtoMapper.toBookingDto(booking);
+    }
+
+    //Создание серии повторяющихся броней. Брони серии разворачиваются на сервере,
+    //проверяются на наложения за один проход по интервалам вещи и вставляются одним пакетом;
+    //если хотя бы одна бронь налагается на занятый период, серия не создается вовсе.
+    @Override
+    public BookingSeriesOutDto createBookingSeries(Long bookerId, BookingSeriesInDto seriesDto) {
+        Long itemId = seriesDto.getItemId();
+        if ((itemId == null) || (seriesDto.getStart() == null) || (seriesDto.getEnd() == null)) {
+            throw new BadRequestException("Не заданы вещь или границы серии.");
+        }
+        if (!seriesDto.getEnd().after(seriesDto.getStart())) {
+            throw new BadRequestException("Неверные границы бронирования.");
+        }
+        int count = (seriesDto.getCount() == null) ? 1 : seriesDto.getCount();
+        if ((count < 1) || (count > MAX_SERIES_COUNT)) {
+            throw new BadRequestException("Число броней в серии должно быть от 1 до " + MAX_SERIES_COUNT + ".");
+        }
+        int intervalDays = (seriesDto.getIntervalDays() == null)
+                ? DEFAULT_SERIES_INTERVAL_DAYS : seriesDto.getIntervalDays();
+        LocalDateTime firstStart = seriesDto.getStart().toLocalDateTime();
+        LocalDateTime firstEnd = seriesDto.getEnd().toLocalDateTime();
+        //брони серии не должны налегать друг на друга
+        if ((intervalDays < 1) || firstStart.plusDays(intervalDays).isBefore(firstEnd)) {
+            throw new BadRequestException("Шаг серии должен быть не меньше длительности брони.");
+        }
+        Item item = itemRepository.findById(itemId)
+                .orElseThrow(() -> new NotFoundException("Вещь с идентификатором " + itemId + " не найдена."));
+        if (!item.getAvailable()) {
+            throw new BadRequestException("Вещь с идентификатором " + itemId + " недоступна.");
+        }
+        if (item.getOwner().getId().equals(bookerId)) {
+            throw new NotFoundException("Нельзя забронировать свою вещь.");
+        }
+        User booker = userRepository.findById(bookerId).orElseThrow(
+                () -> new NotFoundException("Пользователь с идентификатором " + bookerId + " не найден.")
+        );
+        //разворачиваем серию (шаг отсчитывается в местном времени)
+        List<Booking> series = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Booking booking = new Booking();
+            booking.setStart(Timestamp.valueOf(firstStart.plusDays((long) i * intervalDays)));
+            booking.setEnd(Timestamp.valueOf(firstEnd.plusDays((long) i * intervalDays)));
+            booking.setStatus(Status.WAITING);
+            booking.setItem(item);
+            booking.setBooker(booker);
+            booking.setOwnerId(item.getOwner().getId());
+            series.add(booking);
+        }
+        //проверка и вставка выполняются под блокировкой вещи, как и подтверждение
+        BookingSeriesOutDto result = itemLocks.withItemLock(itemId, () -> saveSeries(series));
+        if (!result.getConflicts().isEmpty()) {
+            log.info("Серия из " + count + " броней вещи " + itemId + " не создана: занято периодов "
+                    + result.getConflicts().size());
+            return result;
+        }
+        for (Booking booking : series) {
+            eventPublisher.publishEvent(BookingEvent.of(BookingEventType.CREATED, booking, null));
+        }
+        log.info("Создана серия из " + count + " броней вещи " + itemId + " пользователем " + bookerId);
+        return result;
+    }
+
+    //Бронирование набора вещей на один период: либо создаются брони всех вещей, либо ни одной.
+    //Вещи с владельцами читаются одним запросом, наложения проверяются сразу для всех вещей,
+    //а брони вставляются одним пакетом в одной транзакции.
+    @Override
+    public List<BookingOutDto> createCartBookings(Long bookerId, BookingCartInDto cartDto) {
+        Timestamp start = cartDto.getStart();
+        Timestamp end = cartDto.getEnd();
+        if ((start == null) || (end == null) || !end.after(start)) {
+            throw new BadRequestException("Неверные границы бронирования.");
+        }
+        if ((cartDto.getItemIds() == null) || cartDto.getItemIds().isEmpty()) {
+            throw new BadRequestException("Не заданы вещи для бронирования.");
+        }
+        Set<Long> itemIds = new LinkedHashSet<>(cartDto.getItemIds()); //повторы вещи не бронируются дважды
+        if (itemIds.contains(null)) {
+            throw new BadRequestException("Не заданы вещи для бронирования.");
+        }
+        if (itemIds.size() > MAX_CART_SIZE) {
+            throw new BadRequestException("В одном заказе можно забронировать не больше " + MAX_CART_SIZE
+                    + " вещей.");
+        }
+        Map<Long, Item> items = itemRepository.findAllWithOwnersByIdIn(itemIds).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+        User booker = userRepository.findById(bookerId).orElseThrow(
+                () -> new NotFoundException("Пользователь с идентификатором " + bookerId + " не найден.")
+        );
+        List<Booking> cart = new ArrayList<>(itemIds.size());
+        for (Long itemId : itemIds) {
+            Item item = items.get(itemId);
+            if (item == null) {
+                throw new NotFoundException("Вещь с идентификатором " + itemId + " не найдена.");
+            }
+            if (!item.getAvailable()) {
+                throw new BadRequestException("Вещь с идентификатором " + itemId + " недоступна.");
+            }
+            if (item.getOwner().getId().equals(bookerId)) {
+                throw new NotFoundException("Нельзя забронировать свою вещь.");
+            }
+            Booking booking = new Booking();
+            booking.setStart(start);
+            booking.setEnd(end);
+            booking.setStatus(Status.WAITING);
+            booking.setItem(item);
+            booking.setBooker(booker);
+            booking.setOwnerId(item.getOwner().getId());
+            cart.add(booking);
+        }
+        itemLocks.withItemLocks(itemIds, () -> {
+            Set<Long> occupied = intervalIndex.findOccupiedItems(itemIds, start, end);
+            if (!occupied.isEmpty()) {
+                throw new ConflictException("Вещи " + occupied + " уже забронированы на этот период.");
+            }
+            List<Long> held = itemIds.stream()
+                    .filter(itemId -> holds.hasOverlap(itemId, start, end, bookerId))
+                    .collect(Collectors.toList());
+            if (!held.isEmpty()) {
+                throw new ConflictException("Период вещей " + held + " удерживается другим пользователем.");
+            }
+            insertBatch(cart);
+            return null;
+        });
+        for (Booking booking : cart) {
+            eventPublisher.publishEvent(BookingEvent.of(BookingEventType.CREATED, booking, null));
+        }
+        log.info("Пользователь " + bookerId + " забронировал " + cart.size() + " вещей одним заказом.");
+        return cart.stream().map(BookingDtoMapper::toBookingDto).collect(Collectors.toList());
     }
 
     @Override
-    public BookingOutDto confirmBooking(Long bookingId, Long userId, Boolean confirm) {
+    public BookingOutDto confirmBooking(Long bookingId, Long userId, Boolean confirm, boolean rejectOverlapping) {
         //читаем бронь и проверяем корректность идентификатора
         Booking booking = bookingRepository.findById(bookingId)
                 .orElseThrow(() -> new BadRequestException("Бронь с идентификатором " + bookingId + " не найдена."));
@@ -75,20 +273,375 @@ public class BookingServiceImpl implements BookingService {
         if (!booking.getStatus().equals(Status.WAITING)) {
             throw new BadRequestException("Согласовывать можно только новую бронь.");
         }
-        //если все проверки прошли - подтверждаем
-        if (confirm) {
-            //проверяем наложения новой брони на старые
-            if (!bookingRepository.findByItem_IdAndEndAfterAndStartBeforeAndStatusIs(
-                    item.getId(), booking.getStart(), booking.getEnd(), Status.APPROVED).isEmpty()) { //есть наложения
-                throw new NotFoundException("В данный момент вещь недоступна.");
+        //если все проверки прошли - подтверждаем или отвергаем
+        if (confirm && rejectOverlapping) {
+            //подтверждение и отклонение налегающих новых броней - в одной транзакции;
+            //индекс и удержания меняются только после ее фиксации
+            List<Booking> rejected = itemLocks.withItemLock(item.getId(), () -> {
+                List<Booking> others = transactionTemplate.execute(status -> approveRejectingOverlaps(booking));
+                applyApproved(booking);
+                return others;
+            });
+            eventPublisher.publishEvent(BookingEvent.of(BookingEventType.APPROVED, booking, Status.WAITING));
+            for (Booking other : rejected) {
+                eventPublisher.publishEvent(BookingEvent.of(BookingEventType.REJECTED, other, Status.WAITING));
             }
-            booking.setStatus(Status.APPROVED);
+            log.info("Бронирование с идентификатором " + bookingId + " согласовано, отклонено налегающих броней: "
+                    + rejected.size());
+            BookingOutDto result = BookingDtoMapper.toBookingDto(booking);
+            result.setRejectedOverlapping(rejected.size());
+            return result;
+        } else if (confirm) {
+            //проверка наложений и смена статуса для одной вещи выполняются последовательно
+            itemLocks.withItemLock(item.getId(), () -> approve(booking));
+            eventPublisher.publishEvent(BookingEvent.of(BookingEventType.APPROVED, booking, Status.WAITING));
             log.info("Бронирование с идентификатором " + bookingId + " согласовано.");
         } else {
-            booking.setStatus(Status.REJECTED);
+            changeStatus(booking, Status.REJECTED);
+            intervalIndex.remove(item.getId(), bookingId);
+            eventPublisher.publishEvent(BookingEvent.of(BookingEventType.REJECTED, booking, Status.WAITING));
             log.info("Бронирование с идентификатором " + bookingId + " отвергнуто.");
         }
-        return BookingDtoMapper.toBookingDto(bookingRepository.save(booking));
+        return BookingDtoMapper.toBookingDto(booking);
+    }
+
+    @Override
+    public List<BookingDecisionOutDto> confirmBookings(Long userId, List<BookingDecisionDto> decisions) {
+        //читаем все брони пакета вместе с вещами и владельцами одним запросом
+        Set<Long> ids = decisions.stream().map(BookingDecisionDto::getBookingId).collect(Collectors.toSet());
+        Map<Long, Booking> bookings = bookingRepository.findAllWithItemsByIdIn(ids).stream()
+                .collect(Collectors.toMap(Booking::getId, Function.identity()));
+        //проверяем права и статусы; результаты идут в порядке решений
+        List<BookingDecisionOutDto> results = new ArrayList<>();
+        Map<Long, BookingDecisionOutDto> pending = new HashMap<>(); //допустимые решения
+        List<Booking> approvals = new ArrayList<>();
+        Map<Long, Status> statuses = new LinkedHashMap<>();
+        for (BookingDecisionDto decision : decisions) {
+            Long bookingId = decision.getBookingId();
+            Booking booking = bookings.get(bookingId);
+            BookingDecisionOutDto result = new BookingDecisionOutDto(bookingId,
+                    (booking == null) ? null : booking.getStatus(), null);
+            results.add(result);
+            if (booking == null) {
+                result.setError("Бронь с идентификатором " + bookingId + " не найдена.");
+            } else if (!booking.getItem().getOwner().getId().equals(userId)) {
+                result.setError("Согласовывать бронь может только владелец.");
+            } else if (!booking.getStatus().equals(Status.WAITING)) {
+                result.setError("Согласовывать можно только новую бронь.");
+            } else if (pending.containsKey(bookingId)) {
+                result.setError("Бронь указана в пакете повторно.");
+            } else {
+                pending.put(bookingId, result);
+                if (decision.getApproved()) {
+                    approvals.add(booking);
+                } else {
+                    statuses.put(bookingId, Status.REJECTED);
+                }
+            }
+        }
+        if (pending.isEmpty()) {
+            return results;
+        }
+        //наложения проверяются в памяти под блокировками всех затронутых вещей;
+        //события публикуются уже после снятия блокировок
+        Set<Long> itemIds = approvals.stream().map(b -> b.getItem().getId()).collect(Collectors.toSet());
+        List<BookingEvent> events = new ArrayList<>();
+        itemLocks.withItemLocks(itemIds, () -> {
+            Map<Long, List<Booking>> approvedInBatch = new HashMap<>();
+            for (Booking booking : approvals) {
+                Long itemId = booking.getItem().getId();
+                List<Booking> sameItem = approvedInBatch.computeIfAbsent(itemId, id -> new ArrayList<>());
+                boolean overlaps = intervalIndex.hasOverlap(itemId, booking.getStart(), booking.getEnd())
+                        || sameItem.stream().anyMatch(other -> other.getEnd().after(booking.getStart())
+                        && other.getStart().before(booking.getEnd()));
+                if (overlaps) {
+                    pending.remove(booking.getId()).setError("В данный момент вещь недоступна.");
+                } else if (holds.hasOverlap(itemId, booking.getStart(), booking.getEnd(),
+                        booking.getBooker().getId())) {
+                    pending.remove(booking.getId()).setError("Период удерживается другим пользователем.");
+                } else {
+                    sameItem.add(booking);
+                    statuses.put(booking.getId(), Status.APPROVED);
+                }
+            }
+            if (statuses.isEmpty()) {
+                return null;
+            }
+            //все изменения статусов уходят в базу одним пакетом
+            int[] counts = bookingBatchWriter.updateStatusesIfWaiting(statuses);
+            int i = 0;
+            for (Map.Entry<Long, Status> entry : statuses.entrySet()) {
+                BookingDecisionOutDto result = pending.get(entry.getKey());
+                if (counts[i++] == 0) { //бронь успели согласовать параллельно
+                    result.setError("Согласовывать можно только новую бронь.");
+                    continue;
+                }
+                Booking booking = bookings.get(entry.getKey());
+                booking.setStatus(entry.getValue());
+                result.setStatus(entry.getValue());
+                if (entry.getValue() == Status.APPROVED) {
+                    intervalIndex.add(booking.getItem().getId(), booking.getId(),
+                            booking.getStart(), booking.getEnd());
+                    holds.releaseFor(booking.getItem().getId(), booking.getBooker().getId(),
+                            booking.getStart(), booking.getEnd());
+                    events.add(BookingEvent.of(BookingEventType.APPROVED, booking, Status.WAITING));
+                } else {
+                    events.add(BookingEvent.of(BookingEventType.REJECTED, booking, Status.WAITING));
+                }
+            }
+            return null;
+        });
+        for (BookingEvent event : events) {
+            eventPublisher.publishEvent(event);
+        }
+        log.info("Владелец " + userId + " согласовал пакет из " + decisions.size() + " броней.");
+        return results;
+    }
+
+    //Отмена новой или подтвержденной брони автором или владельцем до ее окончания.
+    //Освободившийся период достается листу ожидания фоновым переводом (по событию отмены).
+    @Override
+    public BookingOutDto cancelBooking(Long bookingId, Long userId) {
+        Booking booking = bookingRepository.findById(bookingId)
+                .orElseThrow(() -> new NotFoundException("Бронь с идентификатором " + bookingId + " не найдена."));
+        Item item = booking.getItem();
+        if (!booking.getBooker().getId().equals(userId) && !item.getOwner().getId().equals(userId)) {
+            throw new NotFoundException("Пользователю " + userId + " эта информация недоступна.");
+        }
+        Status previous = booking.getStatus();
+        if ((previous != Status.WAITING) && (previous != Status.APPROVED)) {
+            throw new BadRequestException("Отменить можно только новую или подтвержденную бронь.");
+        }
+        if (!booking.getEnd().after(clock.now())) {
+            throw new BadRequestException("Нельзя отменить завершенную бронь.");
+        }
+        //бронь могли параллельно согласовать, отклонить или просрочить
+        if (bookingRepository.updateStatusIf(bookingId, previous, Status.CANCELED) == 0) {
+            throw new ConflictException("Бронь с идентификатором " + bookingId + " уже изменена.");
+        }
+        booking.setStatus(Status.CANCELED);
+        if (previous == Status.APPROVED) {
+            intervalIndex.remove(item.getId(), bookingId);
+        }
+        eventPublisher.publishEvent(BookingEvent.of(BookingEventType.CANCELED, booking, previous));
+        log.info("Бронирование с идентификатором " + bookingId + " отменено пользователем " + userId);
+        return BookingDtoMapper.toBookingDto(booking);
+    }
+
+    ////////////////////////////// Удержания //////////////////////////////
+
+    @Override
+    public BookingHoldOutDto placeHold(Long userId, BookingHoldInDto holdDto) {
+        Long itemId = holdDto.getItemId();
+        Item item = itemRepository.findById(itemId)
+                .orElseThrow(() -> new NotFoundException("Вещь с идентификатором " + itemId + " не найдена."));
+        if (!item.getAvailable()) {
+            throw new BadRequestException("Вещь с идентификатором " + itemId + " недоступна.");
+        }
+        if (item.getOwner().getId().equals(userId)) {
+            throw new NotFoundException("Нельзя удерживать свою вещь.");
+        }
+        if (!userRepository.existsById(userId)) {
+            throw new NotFoundException("Пользователь с идентификатором " + userId + " не найден.");
+        }
+        Timestamp start = holdDto.getStart();
+        Timestamp end = holdDto.getEnd();
+        if ((start == null) || (end == null) || !end.after(start)) {
+            throw new BadRequestException("Неверные границы удержания.");
+        }
+        long ttlMs = (holdDto.getTtlSeconds() == null) ? holds.getDefaultTtlMs() : holdDto.getTtlSeconds() * 1000L;
+        if ((ttlMs <= 0) || (ttlMs > holds.getMaxTtlMs())) {
+            throw new BadRequestException("Недопустимое время удержания: " + holdDto.getTtlSeconds() + " с.");
+        }
+        //удержания одной вещи выставляются последовательно, как и подтверждения
+        BookingHoldOutDto hold = itemLocks.withItemLock(itemId, () -> {
+            if (intervalIndex.hasOverlap(itemId, start, end)) {
+                throw new ConflictException("Вещь с идентификатором " + itemId + " уже забронирована на этот период.");
+            }
+            if (holds.hasOverlap(itemId, start, end, userId)) {
+                throw new ConflictException("Период вещи с идентификатором " + itemId
+                        + " удерживается другим пользователем.");
+            }
+            return holds.place(itemId, userId, start, end, ttlMs);
+        });
+        log.info("Пользователь " + userId + " удерживает вещь " + itemId + " до " + hold.getExpiresAt());
+        return hold;
+    }
+
+    @Override
+    public List<BookingHoldOutDto> getHolds(Long userId) {
+        return holds.findByHolder(userId);
+    }
+
+    @Override
+    public void releaseHold(Long userId, Long holdId) {
+        Long holderId = holds.findHolder(holdId);
+        if (holderId == null) {
+            throw new NotFoundException("Удержание с идентификатором " + holdId + " не найдено.");
+        }
+        if (!holderId.equals(userId)) {
+            throw new ForbiddenException("Снять удержание может только его держатель.");
+        }
+        holds.release(holdId);
+        log.info("Снято удержание с идентификатором " + holdId);
+    }
+
+    //сохранение брони, согласованной по правилу владельца (вызывается под блокировкой вещи);
+    //при наложении на подтвержденные брони или чужие удержания бронь ждет решения владельца
+    private Booking saveAutoApproved(Booking booking) {
+        Long itemId = booking.getItem().getId();
+        Long bookerId = booking.getBooker().getId();
+        if (intervalIndex.hasOverlap(itemId, booking.getStart(), booking.getEnd())
+                || holds.hasOverlap(itemId, booking.getStart(), booking.getEnd(), bookerId)) {
+            return bookingRepository.save(booking);
+        }
+        booking.setStatus(Status.APPROVED);
+        Booking saved = bookingRepository.save(booking);
+        intervalIndex.add(itemId, saved.getId(), saved.getStart(), saved.getEnd());
+        holds.releaseFor(itemId, bookerId, saved.getStart(), saved.getEnd());
+        return saved;
+    }
+
+    //проверка и пакетная вставка серии броней (вызывается под блокировкой вещи)
+    private BookingSeriesOutDto saveSeries(List<Booking> series) {
+        Booking first = series.get(0);
+        Long itemId = first.getItem().getId();
+        Long bookerId = first.getBooker().getId();
+        Timestamp[] starts = new Timestamp[series.size()];
+        Timestamp[] ends = new Timestamp[series.size()];
+        for (int i = 0; i < series.size(); i++) {
+            starts[i] = series.get(i).getStart();
+            ends[i] = series.get(i).getEnd();
+        }
+        //подтвержденные брони вещи проверяются для всей серии за один проход
+        boolean[] overlaps = intervalIndex.findSeriesOverlaps(itemId, starts, ends);
+        List<BookingSeriesConflictDto> conflicts = new ArrayList<>();
+        for (int i = 0; i < series.size(); i++) {
+            String reason = null;
+            if (overlaps[i]) {
+                reason = "Вещь уже забронирована на этот период.";
+            } else if (holds.hasOverlap(itemId, starts[i], ends[i], bookerId)) {
+                reason = "Период удерживается другим пользователем.";
+            }
+            if (reason != null) {
+                conflicts.add(new BookingSeriesConflictDto(i, starts[i].toLocalDateTime(),
+                        ends[i].toLocalDateTime(), reason));
+            }
+        }
+        if (!conflicts.isEmpty()) {
+            return new BookingSeriesOutDto(List.of(), conflicts);
+        }
+        insertBatch(series);
+        return new BookingSeriesOutDto(series.stream().map(BookingDtoMapper::toBookingDto)
+                .collect(Collectors.toList()), List.of());
+    }
+
+    //Пакетная вставка новых броней, проверенных на наложения (вызывается под блокировками их вещей).
+    //Брони, подпадающие под правила владельцев, сразу создаются согласованными.
+    private void insertBatch(List<Booking> bookings) {
+        for (Booking booking : bookings) {
+            if (approvalRules.autoApproves(booking.getOwnerId(), booking.getBooker().getId(),
+                    booking.getStart(), booking.getEnd())) {
+                booking.setStatus(Status.APPROVED);
+            }
+        }
+        //идентификаторы выделяются сразу на весь пакет, а сам пакет вставляется в одной транзакции
+        List<Long> ids = bookingBatchWriter.allocateIds(bookings.size());
+        for (int i = 0; i < bookings.size(); i++) {
+            bookings.get(i).setId(ids.get(i));
+        }
+        transactionTemplate.executeWithoutResult(status -> bookingBatchWriter.insertBookings(bookings));
+        List<Booking> approved = bookings.stream()
+                .filter(booking -> booking.getStatus() == Status.APPROVED)
+                .collect(Collectors.toList());
+        intervalIndex.addAll(approved);
+        for (Booking booking : approved) {
+            holds.releaseFor(booking.getItem().getId(), booking.getBooker().getId(),
+                    booking.getStart(), booking.getEnd());
+        }
+    }
+
+    //подтверждение брони (вызывается под блокировкой вещи)
+    private Booking approve(Booking booking) {
+        checkApprovable(booking);
+        changeStatus(booking, Status.APPROVED);
+        applyApproved(booking);
+        return booking;
+    }
+
+    //проверка наложений новой брони на старые и на чужие удержания (под блокировкой вещи)
+    private void checkApprovable(Booking booking) {
+        Item item = booking.getItem();
+        if (intervalIndex.hasOverlap(item.getId(), booking.getStart(), booking.getEnd())) { //есть наложения
+            throw new NotFoundException("В данный момент вещь недоступна.");
+        }
+        if (holds.hasOverlap(item.getId(), booking.getStart(), booking.getEnd(), booking.getBooker().getId())) {
+            throw new ConflictException("Период вещи с идентификатором " + item.getId()
+                    + " удерживается другим пользователем.");
+        }
+    }
+
+    //подтвержденная бронь (уже записанная в базу) попадает в индекс
+    private void applyApproved(Booking booking) {
+        Long itemId = booking.getItem().getId();
+        intervalIndex.add(itemId, booking.getId(), booking.getStart(), booking.getEnd());
+        //удержания автора на этот период больше не нужны
+        holds.releaseFor(itemId, booking.getBooker().getId(), booking.getStart(), booking.getEnd());
+    }
+
+    //Подтверждение брони и отклонение всех новых броней той же вещи, налегающих на нее (в транзакции).
+    //Отклонение выполняется одним запросом update; возвращаются действительно отклоненные брони.
+    //Индекс и удержания здесь не меняются: при откате транзакции они остались бы неверными.
+    private List<Booking> approveRejectingOverlaps(Booking booking) {
+        checkApprovable(booking);
+        changeStatus(booking, Status.APPROVED);
+        List<Booking> candidates = bookingRepository.findWaitingOverlapping(
+                booking.getItem().getId(), booking.getId(), booking.getStart(), booking.getEnd());
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        Map<Long, Booking> byId = candidates.stream().collect(Collectors.toMap(Booking::getId, Function.identity()));
+        bookingRepository.rejectWaiting(byId.keySet());
+        //бронь могла успеть перейти в другой статус (например, быть просроченной) - ее не трогаем
+        List<Booking> rejected = new ArrayList<>();
+        for (Long id : bookingRepository.findIdsByIdInAndStatus(byId.keySet(), Status.REJECTED)) {
+            Booking other = byId.get(id);
+            other.setStatus(Status.REJECTED);
+            rejected.add(other);
+        }
+        return rejected;
+    }
+
+    //смена статуса новой брони; параллельное согласование той же брони проиграет
+    private void changeStatus(Booking booking, Status status) {
+        if (bookingRepository.updateStatusIfWaiting(booking.getId(), status) == 0) {
+            throw new BadRequestException("Согласовывать можно только новую бронь.");
+        }
+        booking.setStatus(status);
+    }
+
+    @Override
+    public BookingCountsDto getBookingCountsForBooker(Long bookerId) {
+        if (!bookingCounters.containsBooker(bookerId) && !userRepository.existsById(bookerId)) {
+            throw new NotFoundException("Пользователь " + bookerId + " не найден.");
+        }
+        return bookingCounters.getForBooker(bookerId, clock.now());
+    }
+
+    @Override
+    public BookingCountsDto getBookingCountsForOwner(Long ownerId) {
+        if (!bookingCounters.containsOwner(ownerId) && !userRepository.existsById(ownerId)) {
+            throw new NotFoundException("Пользователь " + ownerId + " не найден.");
+        }
+        return bookingCounters.getForOwner(ownerId, clock.now());
+    }
+
+    @Override
+    public SseEmitter subscribeToEvents(Long userId) {
+        if (!userRepository.existsById(userId)) {
+            throw new NotFoundException("Пользователь " + userId + " не найден.");
+        }
+        return eventStream.subscribe(userId);
     }
 
     @Override
@@ -102,101 +655,118 @@ public class BookingServiceImpl implements BookingService {
         return BookingDtoMapper.toBookingDto(booking);
     }
 
+    //составная выборка: все условия фильтра проверяются одним запросом к базе
+    @Override
+    public Slice<BookingOutDto> filterBookings(Long userId, BookingFilter filter, PageCursor page) {
+        if (!userRepository.existsById(userId)) {
+            throw new NotFoundException("Пользователь " + userId + " не найден.");
+        }
+        return filterQuery.find(userId, filter, clock.now(), page).map(BookingDtoMapper::toBookingDto);
+    }
+
     @Override
-    public List<BookingOutDto> getAllBookingsForBooker(Long bookerId, String state, Pageable pageable) {
+    public Slice<BookingOutDto> getAllBookingsForBooker(Long bookerId, String state, PageCursor page) {
+        Timestamp now = clock.now(); //запросы одного такта делят результат
+        return queryCache.getForBooker(bookerId, state, page, now, () -> loadBookingsForBooker(bookerId, state, page, now));
+    }
+
+    private Slice<BookingOutDto> loadBookingsForBooker(Long bookerId, String state, PageCursor page, Timestamp now) {
         if (!userRepository.existsById(bookerId)) {
             throw new NotFoundException("Пользователь " + bookerId + " не найден.");
         }
-        List<BookingOutDto> dtoList;
+        Timestamp startBefore = page.getStartBefore();
+        long idBefore = page.getIdBefore();
+        Pageable pageable = page.getPageable();
+        Slice<Booking> bookings;
         switch (state) {
             case "ALL":
-                dtoList = bookingRepository
-                        .findByBooker_IdOrderByStartDesc(bookerId, pageable)
-                        .map(BookingDtoMapper::toBookingDto)
-                        .getContent();
+                bookings = bookingRepository
+                        .findAllBookingsForBooker(bookerId, startBefore, idBefore, pageable);
                 break;
             case "PAST":
-                dtoList = bookingRepository.findByBooker_IdAndEndIsBeforeOrderByStartDesc(
-                                bookerId, Timestamp.from(Instant.now()), pageable)
-                        .map(BookingDtoMapper::toBookingDto)
-                        .getContent();
+                bookings = bookingRepository.findPastBookingsForBooker(
+                        bookerId, now, startBefore, idBefore, pageable);
                 break;
             case "FUTURE":
-                dtoList = bookingRepository.findByBooker_IdAndStartIsAfterOrderByStartDesc(
-                                bookerId, Timestamp.from(Instant.now()), pageable)
-                        .map(BookingDtoMapper::toBookingDto)
-                        .getContent();
+                bookings = bookingRepository.findFutureBookingsForBooker(
+                        bookerId, now, startBefore, idBefore, pageable);
                 break;
             case "CURRENT":
-                Timestamp timestamp = Timestamp.from(Instant.now());
-                dtoList = bookingRepository.findByBooker_IdAndStartIsBeforeAndEndIsAfterOrderByStartDesc(
-                                bookerId, timestamp, timestamp, pageable)
-                        .map(BookingDtoMapper::toBookingDto)
-                        .getContent();
+                bookings = bookingRepository.findCurrentBookingsForBooker(
+                        bookerId, now, startBefore, idBefore, pageable);
                 break;
             case "WAITING":
-                dtoList = bookingRepository.findByBooker_IdAndStatusIsOrderByStartDesc(
-                                bookerId, Status.WAITING, pageable)
-                        .map(BookingDtoMapper::toBookingDto)
-                        .getContent();
+                bookings = bookingRepository.findStatusBookingsForBooker(
+                        bookerId, Status.WAITING, startBefore, idBefore, pageable);
                 break;
             case "REJECTED":
-                dtoList = bookingRepository.findByBooker_IdAndStatusIsOrderByStartDesc(
-                                bookerId, Status.REJECTED, pageable)
-                        .map(BookingDtoMapper::toBookingDto)
-                        .getContent();
+                bookings = bookingRepository.findStatusBookingsForBooker(
+                        bookerId, Status.REJECTED, startBefore, idBefore, pageable);
+                break;
+            case "EXPIRED":
+                bookings = bookingRepository.findStatusBookingsForBooker(
+                        bookerId, Status.EXPIRED, startBefore, idBefore, pageable);
+                break;
+            case "CANCELED":
+                bookings = bookingRepository.findStatusBookingsForBooker(
+                        bookerId, Status.CANCELED, startBefore, idBefore, pageable);
                 break;
             default:
                 throw new BadRequestException("Unknown state: UNSUPPORTED_STATUS");
         }
-        return dtoList;
+        return bookings.map(BookingDtoMapper::toBookingDto);
     }
 
     @Override
-    public List<BookingOutDto> getAllBookingsForOwner(Long ownerId, String state, Pageable pageable) {
+    public Slice<BookingOutDto> getAllBookingsForOwner(Long ownerId, String state, PageCursor page) {
+        Timestamp now = clock.now(); //запросы одного такта делят результат
+        return queryCache.getForOwner(ownerId, state, page, now, () -> loadBookingsForOwner(ownerId, state, page, now));
+    }
+
+    private Slice<BookingOutDto> loadBookingsForOwner(Long ownerId, String state, PageCursor page, Timestamp now) {
         if (!userRepository.existsById(ownerId)) {
             throw new NotFoundException("Владелец " + ownerId + " не найден.");
         }
-        List<BookingOutDto> dtoList;
+        Timestamp startBefore = page.getStartBefore();
+        long idBefore = page.getIdBefore();
+        Pageable pageable = page.getPageable();
+        Slice<Booking> bookings;
         switch (state) {
             case "ALL":
-                dtoList = bookingRepository.findAllBookingsForOwner(ownerId, pageable)
-                        .map(BookingDtoMapper::toBookingDto)
-                        .getContent();
+                bookings = bookingRepository
+                        .findAllBookingsForOwner(ownerId, startBefore, idBefore, pageable);
                 break;
             case "PAST":
-                dtoList = bookingRepository
-                        .findPastBookingsForOwner(ownerId, Timestamp.from(Instant.now()), pageable)
-                        .map(BookingDtoMapper::toBookingDto)
-                        .getContent();
+                bookings = bookingRepository.findPastBookingsForOwner(
+                        ownerId, now, startBefore, idBefore, pageable);
                 break;
             case "FUTURE":
-                dtoList = bookingRepository
-                        .findFutureBookingsForOwner(ownerId, Timestamp.from(Instant.now()), pageable)
-                        .map(BookingDtoMapper::toBookingDto)
-                        .getContent();
+                bookings = bookingRepository.findFutureBookingsForOwner(
+                        ownerId, now, startBefore, idBefore, pageable);
                 break;
             case "CURRENT":
-                dtoList = bookingRepository
-                        .findCurrentBookingsForOwner(ownerId, Timestamp.from(Instant.now()), pageable)
-                        .map(BookingDtoMapper::toBookingDto)
-                        .getContent();
+                bookings = bookingRepository.findCurrentBookingsForOwner(
+                        ownerId, now, startBefore, idBefore, pageable);
                 break;
             case "WAITING":
-                dtoList = bookingRepository
-                        .findStatusBookingsForOwner(ownerId, Status.WAITING, pageable)
-                        .map(BookingDtoMapper::toBookingDto)
-                        .getContent();
+                bookings = bookingRepository.findStatusBookingsForOwner(
+                        ownerId, Status.WAITING, startBefore, idBefore, pageable);
                 break;
             case "REJECTED":
-                dtoList = bookingRepository
-                        .findStatusBookingsForOwner(ownerId, Status.REJECTED, pageable)
-                        .map(BookingDtoMapper::toBookingDto)
-                        .getContent();
+                bookings = bookingRepository.findStatusBookingsForOwner(
+                        ownerId, Status.REJECTED, startBefore, idBefore, pageable);
+                break;
+            case "EXPIRED":
+                bookings = bookingRepository.findStatusBookingsForOwner(
+                        ownerId, Status.EXPIRED, startBefore, idBefore, pageable);
+                break;
+            case "CANCELED":
+                bookings = bookingRepository.findStatusBookingsForOwner(
+                        ownerId, Status.CANCELED, startBefore, idBefore, pageable);
                 break;
             default:
                 throw new BadRequestException("Unknown state: UNSUPPORTED_STATUS");
         }
-        return dtoList;
+        return bookings.map(BookingDtoMapper::toBookingDto);
     }
 }
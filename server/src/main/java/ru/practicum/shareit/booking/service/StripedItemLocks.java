@@ -0,0 +1,82 @@
+package ru.practicum.shareit.booking.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+//Полосатые блокировки по идентификатору вещи.
+//Операции над одной вещью выполняются последовательно, над разными вещами - параллельно
+//(если только вещи не попали в одну полосу).
+@Component
+public class StripedItemLocks {
+    private final ReentrantLock[] stripes;
+
+    public StripedItemLocks(@Value("${shareit.booking.lock-stripes:64}") int stripeCount) {
+        stripes = new ReentrantLock[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    //выполнение действия под блокировкой одной вещи
+    public <T> T withItemLock(Long itemId, Supplier<T> action) {
+        ReentrantLock lock = stripes[stripeOf(itemId)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //выполнение действия под блокировками нескольких вещей
+    public <T> T withItemLocks(Collection<Long> itemIds, Supplier<T> action) {
+        //полосы захватываются по возрастанию номера, поэтому взаимных блокировок нет
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (Long itemId : itemIds) {
+            indexes.add(stripeOf(itemId));
+        }
+        int locked = 0;
+        try {
+            for (Integer index : indexes) {
+                stripes[index].lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            //снимаем только те блокировки, которые успели захватить
+            for (Integer index : indexes) {
+                if (locked-- == 0) {
+                    break;
+                }
+                stripes[index].unlock();
+            }
+        }
+    }
+
+    //выполнение действия под блокировками всех вещей (полное перестроение индексов)
+    public <T> T withAllItemLocks(Supplier<T> action) {
+        int locked = 0;
+        try {
+            for (ReentrantLock stripe : stripes) {
+                stripe.lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = 0; i < locked; i++) {
+                stripes[i].unlock();
+            }
+        }
+    }
+
+    private int stripeOf(Long itemId) {
+        int hash = Long.hashCode(itemId);
+        hash ^= (hash >>> 16); //перемешиваем старшие биты
+        return Math.floorMod(hash, stripes.length);
+    }
+}
@@ -0,0 +1,203 @@
+package ru.practicum.shareit.booking.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.event.BookingEvent;
+import ru.practicum.shareit.booking.event.BookingEventType;
+import ru.practicum.shareit.booking.event.HoldsReleasedEvent;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.model.WaitlistEntry;
+import ru.practicum.shareit.booking.storage.BookingHolds;
+import ru.practicum.shareit.booking.storage.BookingInterval;
+import ru.practicum.shareit.booking.storage.BookingIntervalIndex;
+import ru.practicum.shareit.booking.storage.BookingRepository;
+import ru.practicum.shareit.booking.storage.WaitlistRepository;
+import ru.practicum.shareit.common.time.TickingClock;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Фоновый перевод листа ожидания в новые брони.
+//Отмена, отклонение или просрочка брони и снятие удержания только отмечают вещь; отмеченные вещи
+//обрабатываются порциями: очереди порции читаются одним запросом, а новые брони
+//и удаление переведенных записей уходят в базу в одной транзакции.
+//Запись очереди переводится, если ее период не занят подтвержденной бронью, чужим
+//удержанием или новой бронью (в том числе переведенной раньше в этом же проходе),
+//поэтому из налегающих записей период получает первая по порядку постановки.
+//Записи, начало которых прошло, периодически удаляются одним запросом.
+@Slf4j
+@Component
+public class WaitlistPromotionJob {
+    private final WaitlistRepository waitlistRepository;
+    private final BookingRepository bookingRepository;
+    private final BookingIntervalIndex intervalIndex;
+    private final BookingHolds holds;
+    private final StripedItemLocks itemLocks;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TickingClock clock;
+    private final int batchSize;
+    private final Counter promotedCounter;
+    private final Counter purgedCounter;
+    //вещи, у которых мог освободиться период
+    private final Set<Long> dirtyItems = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public WaitlistPromotionJob(WaitlistRepository waitlistRepository,
+                                BookingRepository bookingRepository,
+                                BookingIntervalIndex intervalIndex,
+                                BookingHolds holds,
+                                StripedItemLocks itemLocks,
+                                TransactionTemplate transactionTemplate,
+                                ApplicationEventPublisher eventPublisher,
+                                TickingClock clock,
+                                MeterRegistry meterRegistry,
+                                @Value("${shareit.booking.waitlist.batch-size:100}") int batchSize) {
+        this.waitlistRepository = waitlistRepository;
+        this.bookingRepository = bookingRepository;
+        this.intervalIndex = intervalIndex;
+        this.holds = holds;
+        this.itemLocks = itemLocks;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.clock = clock;
+        this.batchSize = Math.max(1, batchSize);
+        this.promotedCounter = Counter.builder("shareit.booking.waitlist.promoted")
+                .description("Число записей листа ожидания, переведенных в брони")
+                .register(meterRegistry);
+        this.purgedCounter = Counter.builder("shareit.booking.waitlist.purged")
+                .description("Число записей листа ожидания, удаленных после начала периода")
+                .register(meterRegistry);
+        meterRegistry.gauge("shareit.booking.waitlist.pending-items", dirtyItems, Set::size);
+    }
+
+    //в потоке запроса только отмечаем вещь - перевод выполнит фоновый проход
+    @EventListener
+    public void onBookingEvent(BookingEvent event) {
+        BookingEventType type = event.getType();
+        if ((type == BookingEventType.CANCELED) || (type == BookingEventType.REJECTED)
+                || (type == BookingEventType.EXPIRED)) {
+            dirtyItems.add(event.getItemId());
+        }
+    }
+
+    @EventListener
+    public void onHoldsReleased(HoldsReleasedEvent event) {
+        dirtyItems.addAll(event.getItemIds());
+    }
+
+    //период вещи мог освободиться вне событий (например, между проверкой и постановкой в очередь)
+    public void markDirty(Long itemId) {
+        dirtyItems.add(itemId);
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.booking.waitlist.promote-ms:1000}")
+    public void sweep() {
+        //вещи, отмеченные во время прохода, ждут следующего прохода
+        int batches = (dirtyItems.size() + batchSize - 1) / batchSize;
+        for (int i = 0; i < batches; i++) {
+            promoteBatch();
+        }
+    }
+
+    //удаление записей, начало которых прошло: перевести их уже нельзя, а вещь без отмен
+    //и снятых удержаний фоновый проход не посещает
+    @Scheduled(fixedDelayString = "${shareit.booking.waitlist.purge-ms:60000}")
+    public void purgeStarted() {
+        int purged = waitlistRepository.deleteStartedBefore(clock.now());
+        purgedCounter.increment(purged);
+        if (purged > 0) {
+            log.info("Из листа ожидания удалено записей с прошедшим началом: " + purged);
+        }
+    }
+
+    //перевод одной порции отмеченных вещей; возвращает число созданных броней
+    public int promoteBatch() {
+        List<Long> itemIds = new ArrayList<>();
+        Iterator<Long> iterator = dirtyItems.iterator();
+        while (iterator.hasNext() && (itemIds.size() < batchSize)) {
+            itemIds.add(iterator.next());
+            iterator.remove();
+        }
+        if (itemIds.isEmpty()) {
+            return 0;
+        }
+        Timestamp now = clock.now();
+        //проверка наложений и запись выполняются под блокировками вещей, как и подтверждение
+        List<Booking> promoted;
+        try {
+            promoted = itemLocks.withItemLocks(itemIds,
+                    () -> transactionTemplate.execute(status -> promote(itemIds, now)));
+        } catch (RuntimeException e) {
+            dirtyItems.addAll(itemIds); //порция повторится в следующем проходе
+            throw e;
+        }
+        for (Booking booking : promoted) {
+            eventPublisher.publishEvent(BookingEvent.of(BookingEventType.CREATED, booking, null));
+        }
+        promotedCounter.increment(promoted.size());
+        if (!promoted.isEmpty()) {
+            log.info("Из листа ожидания создано броней: " + promoted.size());
+        }
+        return promoted.size();
+    }
+
+    /////////////////////////// Вспомогательные методы ///////////////////////
+
+    private List<Booking> promote(List<Long> itemIds, Timestamp now) {
+        List<WaitlistEntry> entries = waitlistRepository.findQueues(itemIds);
+        if (entries.isEmpty()) {
+            return List.of();
+        }
+        //промежутки новых броней по вещам
+        Map<Long, List<long[]>> taken = new HashMap<>();
+        for (BookingInterval interval : bookingRepository.findWaitingIntervals(itemIds, now)) {
+            taken.computeIfAbsent(interval.getItemId(), id -> new ArrayList<>()).add(new long[]{
+                    BookingIntervalIndex.toKey(interval.getStart()), BookingIntervalIndex.toKey(interval.getEnd())});
+        }
+        List<Booking> bookings = new ArrayList<>();
+        List<Long> removed = new ArrayList<>();
+        for (WaitlistEntry entry : entries) {
+            Long itemId = entry.getItem().getId();
+            if (!entry.getStart().after(now)) { //начало прошло - ждать больше нечего
+                removed.add(entry.getId());
+                continue;
+            }
+            if (!entry.getItem().getAvailable()
+                    || intervalIndex.hasOverlap(itemId, entry.getStart(), entry.getEnd())
+                    || holds.hasOverlap(itemId, entry.getStart(), entry.getEnd(), entry.getUser().getId())) {
+                continue;
+            }
+            long start = BookingIntervalIndex.toKey(entry.getStart());
+            long end = BookingIntervalIndex.toKey(entry.getEnd());
+            List<long[]> itemTaken = taken.computeIfAbsent(itemId, id -> new ArrayList<>());
+            if (itemTaken.stream().anyMatch(period -> (period[0] < end) && (period[1] > start))) {
+                continue;
+            }
+            itemTaken.add(new long[]{start, end});
+            bookings.add(new Booking(null, entry.getStart(), entry.getEnd(), entry.getItem(), entry.getUser(),
+                    entry.getItem().getOwner().getId(), Status.WAITING));
+            removed.add(entry.getId());
+        }
+        bookingRepository.saveAll(bookings);
+        if (!removed.isEmpty()) {
+            waitlistRepository.deleteByIds(removed);
+        }
+        return bookings;
+    }
+}
@@ -0,0 +1,14 @@
+package ru.practicum.shareit.booking.service;
+
+import ru.practicum.shareit.booking.dto.BookingInDto;
+import ru.practicum.shareit.booking.dto.WaitlistEntryDto;
+
+import java.util.List;
+
+public interface WaitlistService {
+    WaitlistEntryDto join(Long userId, BookingInDto periodDto);
+
+    List<WaitlistEntryDto> getEntries(Long userId);
+
+    void leave(Long userId, Long entryId);
+}
@@ -0,0 +1,100 @@
+package ru.practicum.shareit.booking.service;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.practicum.shareit.booking.dto.BookingInDto;
+import ru.practicum.shareit.booking.dto.WaitlistEntryDto;
+import ru.practicum.shareit.booking.dto.WaitlistEntryDtoMapper;
+import ru.practicum.shareit.booking.model.WaitlistEntry;
+import ru.practicum.shareit.booking.storage.BookingHolds;
+import ru.practicum.shareit.booking.storage.BookingIntervalIndex;
+import ru.practicum.shareit.booking.storage.WaitlistRepository;
+import ru.practicum.shareit.common.exception.BadRequestException;
+import ru.practicum.shareit.common.exception.ConflictException;
+import ru.practicum.shareit.common.exception.ForbiddenException;
+import ru.practicum.shareit.common.exception.NotFoundException;
+import ru.practicum.shareit.common.time.TickingClock;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.storage.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.storage.UserRepository;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.stream.Collectors;
+
+//Лист ожидания занятых периодов. Вместо повторных попыток создать бронь пользователь
+//встает в очередь вещи; перевод очереди в брони выполняет WaitlistPromotionJob.
+@Slf4j
+@Service
+@AllArgsConstructor(onConstructor_ = @Autowired)
+public class WaitlistServiceImpl implements WaitlistService {
+    private final WaitlistRepository waitlistRepository;
+    private final ItemRepository itemRepository;
+    private final UserRepository userRepository;
+    private final BookingIntervalIndex intervalIndex;
+    private final BookingHolds holds;
+    private final TickingClock clock;
+    private final WaitlistPromotionJob promotionJob;
+
+    @Override
+    public WaitlistEntryDto join(Long userId, BookingInDto periodDto) {
+        Long itemId = periodDto.getItemId();
+        Item item = itemRepository.findById(itemId)
+                .orElseThrow(() -> new NotFoundException("Вещь с идентификатором " + itemId + " не найдена."));
+        if (!item.getAvailable()) {
+            throw new BadRequestException("Вещь с идентификатором " + itemId + " недоступна.");
+        }
+        if (item.getOwner().getId().equals(userId)) {
+            throw new NotFoundException("Нельзя ждать свою вещь.");
+        }
+        User user = userRepository.findById(userId).orElseThrow(
+                () -> new NotFoundException("Пользователь с идентификатором " + userId + " не найден.")
+        );
+        Timestamp start = periodDto.getStart();
+        Timestamp end = periodDto.getEnd();
+        if ((start == null) || (end == null) || !end.after(start)) {
+            throw new BadRequestException("Неверные границы периода.");
+        }
+        //свободный период бронируется сразу, без очереди
+        if (!intervalIndex.hasOverlap(itemId, start, end) && !holds.hasOverlap(itemId, start, end, userId)) {
+            throw new BadRequestException("Период вещи с идентификатором " + itemId + " свободен.");
+        }
+        if (waitlistRepository.existsByItem_IdAndUser_IdAndStartBeforeAndEndAfter(itemId, userId, end, start)) {
+            throw new ConflictException("Пользователь " + userId + " уже ждет этот период вещи " + itemId + ".");
+        }
+        WaitlistEntry entry = waitlistRepository.save(new WaitlistEntry(null, item, user, start, end, clock.now()));
+        //период мог освободиться до сохранения записи (удержание истекло, бронь отменена) -
+        //тогда событие освобождения уже прошло, и вещь отмечается для перевода очереди здесь
+        if (!intervalIndex.hasOverlap(itemId, start, end) && !holds.hasOverlap(itemId, start, end, userId)) {
+            promotionJob.markDirty(itemId);
+        }
+        log.info("Пользователь " + userId + " поставлен в лист ожидания вещи " + itemId
+                + " (запись " + entry.getId() + ")");
+        return WaitlistEntryDtoMapper.toWaitlistEntryDto(entry);
+    }
+
+    @Override
+    public List<WaitlistEntryDto> getEntries(Long userId) {
+        if (!userRepository.existsById(userId)) {
+            throw new NotFoundException("Пользователь с идентификатором " + userId + " не найден.");
+        }
+        return waitlistRepository.findByUser_IdOrderById(userId).stream()
+                .map(WaitlistEntryDtoMapper::toWaitlistEntryDto)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void leave(Long userId, Long entryId) {
+        WaitlistEntry entry = waitlistRepository.findById(entryId).orElseThrow(
+                () -> new NotFoundException("Запись листа ожидания с идентификатором " + entryId + " не найдена.")
+        );
+        if (!entry.getUser().getId().equals(userId)) {
+            throw new ForbiddenException("Покинуть лист ожидания может только сам пользователь.");
+        }
+        waitlistRepository.deleteById(entryId);
+        log.info("Пользователь " + userId + " покинул лист ожидания (запись " + entryId + ")");
+    }
+}
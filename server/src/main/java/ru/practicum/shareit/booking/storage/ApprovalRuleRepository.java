@@ -0,0 +1,7 @@
+package ru.practicum.shareit.booking.storage;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.practicum.shareit.booking.model.ApprovalRule;
+
+public interface ApprovalRuleRepository extends JpaRepository<ApprovalRule, Long> {
+}
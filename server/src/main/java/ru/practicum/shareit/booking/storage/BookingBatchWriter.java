@@ -0,0 +1,50 @@
+package ru.practicum.shareit.booking.storage;
+
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+//Пакетная запись бронирований через JDBC (одним обращением к базе)
+@Component
+@AllArgsConstructor(onConstructor_ = @Autowired)
+public class BookingBatchWriter {
+    private final JdbcTemplate jdbcTemplate;
+
+    //смена статусов новых броней; возвращает число измененных строк для каждой брони
+    public int[] updateStatusesIfWaiting(Map<Long, Status> statuses) {
+        List<Object[]> args = new ArrayList<>();
+        for (Map.Entry<Long, Status> entry : statuses.entrySet()) {
+            args.add(new Object[]{entry.getValue().name(), entry.getKey()});
+        }
+        return jdbcTemplate.batchUpdate(
+                "update bookings set status = ? where id = ? and status = 'WAITING'", args);
+    }
+
+    //Выделение идентификаторов сразу для порции броней из последовательности столбца id.
+    //Идентификаторы известны до вставки, поэтому вставка идет пакетом без возврата ключей.
+    //Сама бронь остается на IDENTITY: порция получает все идентификаторы одним запросом,
+    //так что пул идентификаторов в генераторе Hibernate обращений к базе не сократил бы.
+    public List<Long> allocateIds(int count) {
+        return jdbcTemplate.queryForList(
+                "select nextval(pg_get_serial_sequence('bookings', 'id')) from generate_series(1, ?)",
+                Long.class, count);
+    }
+
+    //пакетная вставка броней с заранее выделенными идентификаторами
+    public void insertBookings(List<Booking> bookings) {
+        List<Object[]> args = new ArrayList<>();
+        for (Booking booking : bookings) {
+            args.add(new Object[]{booking.getId(), booking.getStart(), booking.getEnd(), booking.getItem().getId(),
+                    booking.getBooker().getId(), booking.getOwnerId(), booking.getStatus().name()});
+        }
+        jdbcTemplate.batchUpdate("insert into bookings (id, start_date, end_date, item_id, booker_id, owner_id, status) " +
+                "values (?, ?, ?, ?, ?, ?, ?)", args);
+    }
+}
@@ -0,0 +1,229 @@
+package ru.practicum.shareit.booking.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.dto.BookingCountsDto;
+import ru.practicum.shareit.booking.event.BookingEvent;
+import ru.practicum.shareit.booking.event.BookingEventType;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.user.event.UserDeletedEvent;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+//Счетчики бронирований пользователя по состояниям (для авторов и для владельцев).
+//Счетчики пользователя загружаются при первом запросе, затем обновляются по событиям
+//бронирования и периодически сверяются с базой одним запросом с группировкой.
+//Состояния CURRENT, FUTURE и PAST зависят от времени, поэтому для них хранятся
+//упорядоченные массивы начал и концов: число броней считается двоичным поиском.
+@Slf4j
+@Component
+public class BookingCounters {
+    private final BookingRepository bookingRepository;
+    private final int maxUsers;
+    private final Map<Long, UserCounts> bookers = new ConcurrentHashMap<>();
+    private final Map<Long, UserCounts> owners = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BookingCounters(BookingRepository bookingRepository,
+                           @Value("${shareit.booking.counters.max-users:10000}") int maxUsers) {
+        this.bookingRepository = bookingRepository;
+        this.maxUsers = maxUsers;
+    }
+
+    public boolean containsBooker(Long bookerId) {
+        return bookers.containsKey(bookerId);
+    }
+
+    public boolean containsOwner(Long ownerId) {
+        return owners.containsKey(ownerId);
+    }
+
+    public BookingCountsDto getForBooker(Long bookerId, Timestamp now) {
+        return get(bookers, bookerId, bookingRepository::findTimesByBooker).toDto(BookingIntervalIndex.toKey(now));
+    }
+
+    public BookingCountsDto getForOwner(Long ownerId, Timestamp now) {
+        return get(owners, ownerId, bookingRepository::findTimesByOwner).toDto(BookingIntervalIndex.toKey(now));
+    }
+
+    //пользователи или вещи удалены вместе с бронированиями - счетчики загрузятся заново
+    public void clear() {
+        bookers.clear();
+        owners.clear();
+    }
+
+    //Брони удаленного пользователя входили и в счетчики владельцев и арендаторов
+    //их вещей, а кто это - в событии не сказано, поэтому счетчики сбрасываются целиком
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        clear();
+    }
+
+    ////////////////////////////// Обновление по событиям ///////////////////////
+
+    @EventListener
+    public void onBookingEvent(BookingEvent event) {
+        if (event.getType() == BookingEventType.CREATED) {
+            long start = BookingIntervalIndex.toKey(Timestamp.valueOf(event.getStart()));
+            long end = BookingIntervalIndex.toKey(Timestamp.valueOf(event.getEnd()));
+            Function<UserCounts, UserCounts> update = old -> old.withCreated(
+                    event.getBookingId(), start, end, event.getStatus());
+            bookers.computeIfPresent(event.getBookerId(), (id, old) -> update.apply(old));
+            owners.computeIfPresent(event.getOwnerId(), (id, old) -> update.apply(old));
+        } else {
+            Function<UserCounts, UserCounts> update = old -> old.withStatusChange(
+                    event.getPreviousStatus(), event.getStatus());
+            bookers.computeIfPresent(event.getBookerId(), (id, old) -> update.apply(old));
+            owners.computeIfPresent(event.getOwnerId(), (id, old) -> update.apply(old));
+        }
+    }
+
+    ////////////////////////////// Сверка с базой /////////////////////////////
+
+    //счетчики, расходящиеся с базой, сбрасываются и при следующем запросе загружаются заново
+    @Scheduled(fixedDelayString = "${shareit.booking.counters.reconcile-ms:60000}")
+    public void reconcile() {
+        if (bookers.isEmpty() && owners.isEmpty()) {
+            return;
+        }
+        Map<Long, long[]> bookerCounts = new HashMap<>();
+        Map<Long, long[]> ownerCounts = new HashMap<>();
+        for (BookingStatusCount row : bookingRepository.countByBookerAndOwnerAndStatus()) {
+            int status = row.getStatus().ordinal();
+            bookerCounts.computeIfAbsent(row.getBookerId(), id -> new long[Status.values().length])[status]
+                    += row.getCount();
+            ownerCounts.computeIfAbsent(row.getOwnerId(), id -> new long[Status.values().length])[status]
+                    += row.getCount();
+        }
+        int dropped = drop(bookers, bookerCounts) + drop(owners, ownerCounts);
+        if (dropped > 0) {
+            log.warn("Сброшены счетчики бронирований, расходящиеся с базой: " + dropped);
+        }
+    }
+
+    /////////////////////////// Вспомогательные методы ///////////////////////
+
+    private UserCounts get(Map<Long, UserCounts> counters, Long userId,
+                           Function<Long, List<BookingTimes>> loader) {
+        UserCounts counts = counters.get(userId);
+        if (counts != null) {
+            return counts;
+        }
+        if (counters.size() >= maxUsers) { //ограничиваем память: вытесняем произвольного пользователя
+            counters.keySet().stream().findAny().ifPresent(counters::remove);
+        }
+        //загрузка под блокировкой ключа: параллельное событие дождется ее окончания
+        return counters.computeIfAbsent(userId, id -> UserCounts.of(loader.apply(id)));
+    }
+
+    private static int drop(Map<Long, UserCounts> counters, Map<Long, long[]> actual) {
+        int dropped = 0;
+        for (Map.Entry<Long, UserCounts> entry : counters.entrySet()) {
+            long[] expected = actual.getOrDefault(entry.getKey(), new long[Status.values().length]);
+            if (!Arrays.equals(expected, entry.getValue().statuses)
+                    && counters.remove(entry.getKey(), entry.getValue())) {
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    ////////////////////////// Счетчики одного пользователя //////////////////
+
+    //Неизменяемый снимок: число броней по статусам и упорядоченные начала и концы.
+    //maxId - наибольший идентификатор при загрузке: события создания броней с меньшими
+    //идентификаторами уже учтены в снимке и пропускаются.
+    private static final class UserCounts {
+        private final long maxId;
+        private final long[] starts;
+        private final long[] ends;
+        private final long[] statuses;
+
+        private UserCounts(long maxId, long[] starts, long[] ends, long[] statuses) {
+            this.maxId = maxId;
+            this.starts = starts;
+            this.ends = ends;
+            this.statuses = statuses;
+        }
+
+        static UserCounts of(List<BookingTimes> list) {
+            long maxId = 0;
+            long[] starts = new long[list.size()];
+            long[] ends = new long[list.size()];
+            long[] statuses = new long[Status.values().length];
+            for (int i = 0; i < list.size(); i++) {
+                BookingTimes times = list.get(i);
+                maxId = Math.max(maxId, times.getId());
+                starts[i] = BookingIntervalIndex.toKey(times.getStart());
+                ends[i] = BookingIntervalIndex.toKey(times.getEnd());
+                statuses[times.getStatus().ordinal()]++;
+            }
+            Arrays.sort(starts);
+            Arrays.sort(ends);
+            return new UserCounts(maxId, starts, ends, statuses);
+        }
+
+        UserCounts withCreated(long id, long start, long end, Status status) {
+            if (id <= maxId) {
+                return this;
+            }
+            long[] newStatuses = statuses.clone();
+            newStatuses[status.ordinal()]++;
+            return new UserCounts(maxId, insert(starts, start), insert(ends, end), newStatuses);
+        }
+
+        UserCounts withStatusChange(Status from, Status to) {
+            long[] newStatuses = statuses.clone();
+            newStatuses[from.ordinal()]--;
+            newStatuses[to.ordinal()]++;
+            return new UserCounts(maxId, starts, ends, newStatuses);
+        }
+
+        //состояния определяются так же, как в выборках BookingRepository:
+        //PAST - конец раньше now, FUTURE - начало позже now, CURRENT - остальные, кроме границ
+        BookingCountsDto toDto(long now) {
+            long all = starts.length;
+            long future = all - countBefore(starts, now + 1);
+            long past = countBefore(ends, now);
+            //бронь с началом >= now и концом <= now невозможна (начало раньше конца)
+            long current = all - (all - countBefore(starts, now)) - countBefore(ends, now + 1);
+            return new BookingCountsDto(all, current, future, past,
+                    statuses[Status.WAITING.ordinal()], statuses[Status.REJECTED.ordinal()],
+                    statuses[Status.EXPIRED.ordinal()], statuses[Status.CANCELED.ordinal()]);
+        }
+
+        //число элементов массива, строго меньших заданного
+        private static int countBefore(long[] array, long moment) {
+            int low = 0;
+            int high = array.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (array[mid] < moment) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private static long[] insert(long[] array, long value) {
+            int pos = countBefore(array, value);
+            long[] result = new long[array.length + 1];
+            System.arraycopy(array, 0, result, 0, pos);
+            result[pos] = value;
+            System.arraycopy(array, pos, result, pos + 1, array.length - pos);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package ru.practicum.shareit.booking.storage;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.dto.BookingFilter;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.common.exception.BadRequestException;
+import ru.practicum.shareit.common.pagination.PageCursor;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.*;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+//Составная выборка бронирований: все условия фильтра собираются в один запрос (Criteria API).
+//Порядок и курсор те же, что у выборок BookingRepository: по убыванию (start, id).
+//Под условия подходят составные индексы по (booker_id | owner_id | item_id, start_date, id).
+@Component
+public class BookingFilterQuery {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public Slice<Booking> find(Long userId, BookingFilter filter, Timestamp now, PageCursor page) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Booking> query = builder.createQuery(Booking.class);
+        Root<Booking> booking = query.from(Booking.class);
+        //вещи, их владельцы и авторы нужны для ответа - читаем их тем же запросом
+        booking.fetch("item").fetch("owner");
+        booking.fetch("booker");
+        Path<Timestamp> start = booking.get("start");
+        Path<Timestamp> end = booking.get("end");
+        Path<Long> id = booking.get("id");
+
+        List<Predicate> where = new ArrayList<>();
+        if (filter.isOwner()) {
+            where.add(builder.equal(booking.get("ownerId"), userId));
+        } else {
+            where.add(builder.equal(booking.get("booker").get("id"), userId));
+        }
+        if (!filter.getStates().isEmpty() && !filter.getStates().contains("ALL")) {
+            List<Predicate> states = new ArrayList<>();
+            for (String state : filter.getStates()) {
+                states.add(statePredicate(builder, booking, state, now));
+            }
+            where.add(builder.or(states.toArray(new Predicate[0])));
+        }
+        if (!filter.getItemIds().isEmpty()) {
+            where.add(booking.get("item").get("id").in(filter.getItemIds()));
+        }
+        if (!filter.getStatuses().isEmpty()) {
+            where.add(booking.get("status").in(filter.getStatuses()));
+        }
+        if (filter.getAfter() != null) {
+            where.add(builder.greaterThan(end, filter.getAfter()));
+        }
+        if (filter.getBefore() != null) {
+            where.add(builder.lessThan(start, filter.getBefore()));
+        }
+        //ключ курсора: записи строго после (startBefore, idBefore)
+        where.add(builder.or(builder.lessThan(start, page.getStartBefore()),
+                builder.and(builder.equal(start, page.getStartBefore()), builder.lessThan(id, page.getIdBefore()))));
+        query.select(booking)
+                .where(where.toArray(new Predicate[0]))
+                .orderBy(builder.desc(start), builder.desc(id));
+
+        //на одну запись больше страницы - чтобы узнать, есть ли следующая, без count(*)
+        Pageable pageable = page.getPageable();
+        List<Booking> result = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+        boolean hasNext = result.size() > pageable.getPageSize();
+        if (hasNext) {
+            result = result.subList(0, pageable.getPageSize());
+        }
+        return new SliceImpl<>(result, pageable, hasNext);
+    }
+
+    private static Predicate statePredicate(CriteriaBuilder builder, Root<Booking> booking, String state,
+                                            Timestamp now) {
+        Path<Timestamp> start = booking.get("start");
+        Path<Timestamp> end = booking.get("end");
+        switch (state) {
+            case "PAST":
+                return builder.lessThan(end, now);
+            case "FUTURE":
+                return builder.greaterThan(start, now);
+            case "CURRENT":
+                return builder.and(builder.lessThan(start, now), builder.greaterThan(end, now));
+            case "WAITING":
+                return builder.equal(booking.get("status"), Status.WAITING);
+            case "REJECTED":
+                return builder.equal(booking.get("status"), Status.REJECTED);
+            case "EXPIRED":
+                return builder.equal(booking.get("status"), Status.EXPIRED);
+            case "CANCELED":
+                return builder.equal(booking.get("status"), Status.CANCELED);
+            default:
+                throw new BadRequestException("Unknown state: UNSUPPORTED_STATUS");
+        }
+    }
+}
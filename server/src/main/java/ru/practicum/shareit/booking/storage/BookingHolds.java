@@ -0,0 +1,350 @@
+package ru.practicum.shareit.booking.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.dto.BookingHoldOutDto;
+import ru.practicum.shareit.booking.event.HoldsReleasedEvent;
+import ru.practicum.shareit.user.event.UserDeletedEvent;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//Временные удержания периодов вещей (хранятся только в памяти).
+//Удержание блокирует период для всех, кроме держателя, пока не истечет или не будет снято.
+//Истечение идет по хешированному колесу времени: удержание кладется в ячейку такта своего
+//окончания, и один периодический проход снимает истекшие удержания из текущих ячеек -
+//без таймера на каждое удержание и без опроса базы.
+//Удержание связано в двусвязные списки ячейки колеса и своей вещи прямо через свои поля,
+//а снятые удержания переиспользуются, поэтому поток удержаний почти не создает мусора.
+//Проверки наложений смотрят на момент окончания, поэтому истекшее, но еще не снятое
+//колесом удержание уже ничего не блокирует.
+//О снятых удержаниях (кроме удаления вещей и пользователей) сообщает HoldsReleasedEvent.
+@Component
+public class BookingHolds {
+    private final long tickMs;
+    private final long defaultTtlMs;
+    private final long maxTtlMs;
+    private final int poolSize;
+    //ячейки колеса: головы списков удержаний, истекающих в такты с одинаковым остатком
+    private final Hold[] wheel;
+    private final int mask;
+    private final Map<Long, Hold> holds = new HashMap<>();
+    //головы списков удержаний по вещам
+    private final Map<Long, Hold> items = new HashMap<>();
+    private final Counter expired;
+    private final ApplicationEventPublisher eventPublisher;
+    private long lastTick;
+    private long nextId = 1;
+    //стек снятых удержаний для повторного использования
+    private Hold free;
+    private int freeCount;
+    //число действующих удержаний (чтение без блокировки для быстрого пути)
+    private volatile int active;
+
+    @Autowired
+    public BookingHolds(MeterRegistry meterRegistry,
+                        ApplicationEventPublisher eventPublisher,
+                        @Value("${shareit.booking.holds.tick-ms:1000}") long tickMs,
+                        @Value("${shareit.booking.holds.wheel-size:512}") int wheelSize,
+                        @Value("${shareit.booking.holds.default-ttl-ms:600000}") long defaultTtlMs,
+                        @Value("${shareit.booking.holds.max-ttl-ms:3600000}") long maxTtlMs,
+                        @Value("${shareit.booking.holds.pool-size:10000}") int poolSize) {
+        this.tickMs = Math.max(1, tickMs);
+        this.defaultTtlMs = defaultTtlMs;
+        this.maxTtlMs = maxTtlMs;
+        this.poolSize = poolSize;
+        //размер колеса - степень двойки, чтобы номер ячейки брался маской
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        this.wheel = new Hold[size];
+        this.mask = size - 1;
+        this.lastTick = System.currentTimeMillis() / this.tickMs;
+        this.expired = meterRegistry.counter("shareit.booking.holds.expired");
+        this.eventPublisher = eventPublisher;
+        meterRegistry.gauge("shareit.booking.holds.active", this, BookingHolds::size);
+    }
+
+    public long getDefaultTtlMs() {
+        return defaultTtlMs;
+    }
+
+    public long getMaxTtlMs() {
+        return maxTtlMs;
+    }
+
+    public int size() {
+        return active;
+    }
+
+    ////////////////////////////// Проверка наложений ////////////////////////
+
+    //есть ли у вещи действующие удержания других пользователей, налегающие на промежуток (start, end)
+    public boolean hasOverlap(Long itemId, Timestamp start, Timestamp end, Long exceptHolderId) {
+        if (active == 0) { //удержаний нет - обходимся без блокировки
+            return false;
+        }
+        long startKey = BookingIntervalIndex.toKey(start);
+        long endKey = BookingIntervalIndex.toKey(end);
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (Hold hold = items.get(itemId); hold != null; hold = hold.itemNext) {
+                if ((hold.expiresAt > now) && (hold.holderId != exceptHolderId)
+                        && (hold.startKey < endKey) && (hold.endKey > startKey)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    ////////////////////////////// Изменение удержаний ///////////////////////
+
+    //новое удержание (наложения проверяются заранее под блокировкой вещи)
+    public synchronized BookingHoldOutDto place(Long itemId, Long holderId, Timestamp start, Timestamp end,
+                                                long ttlMs) {
+        long now = System.currentTimeMillis();
+        Hold hold = allocate();
+        hold.id = nextId++;
+        hold.itemId = itemId;
+        hold.holderId = holderId;
+        hold.start = start;
+        hold.end = end;
+        hold.startKey = BookingIntervalIndex.toKey(start);
+        hold.endKey = BookingIntervalIndex.toKey(end);
+        hold.expiresAt = now + ttlMs;
+        //такт, на котором колесо снимет удержание, всегда впереди последнего пройденного
+        hold.deadlineTick = Math.max((hold.expiresAt + tickMs - 1) / tickMs, lastTick + 1);
+        link(hold);
+        return toDto(hold);
+    }
+
+    //держатель удержания (null, если удержания нет или оно истекло)
+    public synchronized Long findHolder(Long holdId) {
+        Hold hold = holds.get(holdId);
+        return ((hold == null) || (hold.expiresAt <= System.currentTimeMillis())) ? null : hold.holderId;
+    }
+
+    //снятие удержания
+    public boolean release(Long holdId) {
+        long itemId;
+        synchronized (this) {
+            Hold hold = holds.get(holdId);
+            if (hold == null) {
+                return false;
+            }
+            itemId = hold.itemId;
+            unlink(hold);
+        }
+        eventPublisher.publishEvent(new HoldsReleasedEvent(Set.of(itemId)));
+        return true;
+    }
+
+    //снятие удержаний держателя, налегающих на промежуток (бронь держателя подтверждена)
+    public void releaseFor(Long itemId, Long holderId, Timestamp start, Timestamp end) {
+        if (active == 0) {
+            return;
+        }
+        long startKey = BookingIntervalIndex.toKey(start);
+        long endKey = BookingIntervalIndex.toKey(end);
+        boolean released = false;
+        synchronized (this) {
+            Hold hold = items.get(itemId);
+            while (hold != null) {
+                Hold next = hold.itemNext;
+                if ((hold.holderId == holderId) && (hold.startKey < endKey) && (hold.endKey > startKey)) {
+                    unlink(hold);
+                    released = true;
+                }
+                hold = next;
+            }
+        }
+        if (released) {
+            eventPublisher.publishEvent(new HoldsReleasedEvent(Set.of(itemId)));
+        }
+    }
+
+    //вещь удалена
+    public synchronized void removeItem(Long itemId) {
+        Hold hold = items.get(itemId);
+        while (hold != null) {
+            Hold next = hold.itemNext;
+            unlink(hold);
+            hold = next;
+        }
+    }
+
+    //пользователь удален
+    public void removeHolder(Long holderId) {
+        Set<Long> itemIds = new HashSet<>();
+        synchronized (this) {
+            for (Hold hold : new ArrayList<>(holds.values())) {
+                if (hold.holderId == holderId) {
+                    itemIds.add(hold.itemId);
+                    unlink(hold);
+                }
+            }
+        }
+        if (!itemIds.isEmpty()) {
+            eventPublisher.publishEvent(new HoldsReleasedEvent(itemIds));
+        }
+    }
+
+    //все пользователи или вещи удалены
+    public synchronized void clear() {
+        for (Hold hold : new ArrayList<>(holds.values())) {
+            unlink(hold);
+        }
+    }
+
+    //удержания удаленного пользователя и удержания его вещей
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        if (event.isAllUsers()) {
+            clear();
+            return;
+        }
+        removeHolder(event.getUserId());
+        event.getItemIds().forEach(this::removeItem);
+    }
+
+    //действующие удержания пользователя
+    public synchronized List<BookingHoldOutDto> findByHolder(Long holderId) {
+        long now = System.currentTimeMillis();
+        List<BookingHoldOutDto> result = new ArrayList<>();
+        for (Hold hold : holds.values()) {
+            if ((hold.holderId == holderId) && (hold.expiresAt > now)) {
+                result.add(toDto(hold));
+            }
+        }
+        result.sort((first, second) -> Long.compare(first.getId(), second.getId()));
+        return result;
+    }
+
+    ////////////////////////////// Колесо времени ////////////////////////////
+
+    //проход по ячейкам тактов, прошедших с предыдущего прохода
+    @Scheduled(fixedRateString = "${shareit.booking.holds.tick-ms:1000}")
+    public void advance() {
+        Set<Long> itemIds = new HashSet<>();
+        synchronized (this) {
+            long nowTick = System.currentTimeMillis() / tickMs;
+            if (nowTick <= lastTick) {
+                return;
+            }
+            //после долгой паузы каждую ячейку достаточно пройти один раз
+            long from = Math.max(lastTick + 1, nowTick - wheel.length + 1);
+            for (long tick = from; tick <= nowTick; tick++) {
+                Hold hold = wheel[(int) (tick & mask)];
+                while (hold != null) {
+                    Hold next = hold.wheelNext;
+                    if (hold.deadlineTick <= tick) { //остальные удержания ячейки ждут следующих оборотов
+                        itemIds.add(hold.itemId);
+                        unlink(hold);
+                        expired.increment();
+                    }
+                    hold = next;
+                }
+            }
+            lastTick = nowTick;
+        }
+        if (!itemIds.isEmpty()) {
+            eventPublisher.publishEvent(new HoldsReleasedEvent(itemIds));
+        }
+    }
+
+    /////////////////////////// Вспомогательные методы ///////////////////////
+
+    private Hold allocate() {
+        if (free == null) {
+            return new Hold();
+        }
+        Hold hold = free;
+        free = hold.wheelNext;
+        hold.wheelNext = null;
+        freeCount--;
+        return hold;
+    }
+
+    private void link(Hold hold) {
+        holds.put(hold.id, hold);
+        int slot = (int) (hold.deadlineTick & mask);
+        hold.wheelNext = wheel[slot];
+        if (wheel[slot] != null) {
+            wheel[slot].wheelPrev = hold;
+        }
+        wheel[slot] = hold;
+        Hold head = items.put(hold.itemId, hold);
+        hold.itemNext = head;
+        if (head != null) {
+            head.itemPrev = hold;
+        }
+        active++;
+    }
+
+    private void unlink(Hold hold) {
+        holds.remove(hold.id);
+        if (hold.wheelPrev != null) {
+            hold.wheelPrev.wheelNext = hold.wheelNext;
+        } else {
+            wheel[(int) (hold.deadlineTick & mask)] = hold.wheelNext;
+        }
+        if (hold.wheelNext != null) {
+            hold.wheelNext.wheelPrev = hold.wheelPrev;
+        }
+        if (hold.itemPrev != null) {
+            hold.itemPrev.itemNext = hold.itemNext;
+        } else if (hold.itemNext != null) {
+            items.put(hold.itemId, hold.itemNext);
+        } else {
+            items.remove(hold.itemId);
+        }
+        if (hold.itemNext != null) {
+            hold.itemNext.itemPrev = hold.itemPrev;
+        }
+        active--;
+        //возвращаем удержание в стек для повторного использования
+        hold.start = null;
+        hold.end = null;
+        hold.itemPrev = null;
+        hold.itemNext = null;
+        hold.wheelPrev = null;
+        hold.wheelNext = null;
+        if (freeCount < poolSize) {
+            hold.wheelNext = free;
+            free = hold;
+            freeCount++;
+        }
+    }
+
+    private static BookingHoldOutDto toDto(Hold hold) {
+        return new BookingHoldOutDto(hold.id, hold.itemId, hold.holderId, hold.start.toLocalDateTime(),
+                hold.end.toLocalDateTime(), new Timestamp(hold.expiresAt).toLocalDateTime());
+    }
+
+    //Удержание вместе со ссылками списков ячейки колеса и вещи
+    private static final class Hold {
+        long id;
+        long itemId;
+        long holderId;
+        long startKey;
+        long endKey;
+        long expiresAt;
+        long deadlineTick;
+        Timestamp start;
+        Timestamp end;
+        Hold wheelPrev;
+        Hold wheelNext;
+        Hold itemPrev;
+        Hold itemNext;
+    }
+}
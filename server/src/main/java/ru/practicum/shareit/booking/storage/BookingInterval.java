@@ -0,0 +1,14 @@
+package ru.practicum.shareit.booking.storage;
+
+import java.sql.Timestamp;
+
+//Проекция бронирования, достаточная для проверки наложений
+public interface BookingInterval {
+    Long getId();
+
+    Long getItemId();
+
+    Timestamp getStart();
+
+    Timestamp getEnd();
+}
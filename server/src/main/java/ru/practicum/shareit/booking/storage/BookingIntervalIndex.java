@@ -0,0 +1,427 @@
+package ru.practicum.shareit.booking.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.service.StripedItemLocks;
+import ru.practicum.shareit.user.event.UserDeletedEvent;
+
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Индекс подтвержденных бронирований в памяти (по вещам).
+//Для каждой вещи хранится неизменяемый массив интервалов, упорядоченный по началу,
+//так что проверка наложения выполняется двоичным поиском и не обращается к базе.
+//Изменения вещи выполняются под ее полосатой блокировкой, полное перестроение - под всеми
+//блокировками сразу: новое отображение строится целиком и подменяет старое одной записью ссылки.
+@Slf4j
+@Component
+public class BookingIntervalIndex {
+    private final BookingRepository bookingRepository;
+    private final boolean enabled;
+    private final boolean checkOnCreate;
+    private final StripedItemLocks itemLocks;
+    //отображение идентификатора вещи в ее интервалы (заменяется целиком при перестроении)
+    private volatile Map<Long, ItemIntervals> items = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BookingIntervalIndex(BookingRepository bookingRepository,
+                                StripedItemLocks itemLocks,
+                                @Value("${shareit.booking.index.enabled:true}") boolean enabled,
+                                @Value("${shareit.booking.index.check-on-create:false}") boolean checkOnCreate) {
+        this.bookingRepository = bookingRepository;
+        this.itemLocks = itemLocks;
+        this.enabled = enabled;
+        this.checkOnCreate = checkOnCreate;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //проверять ли наложения уже при создании брони, а не только при подтверждении
+    public boolean isCheckOnCreate() {
+        return checkOnCreate;
+    }
+
+    ////////////////////////////// Проверка наложений ////////////////////////
+
+    //есть ли у вещи подтвержденные бронирования, налегающие на промежуток (start, end)
+    public boolean hasOverlap(Long itemId, Timestamp start, Timestamp end) {
+        if (!enabled) { //индекс выключен - работаем по-старому, через базу
+            return !bookingRepository.findByItem_IdAndEndAfterAndStartBeforeAndStatusIs(
+                    itemId, start, end, Status.APPROVED).isEmpty();
+        }
+        ItemIntervals intervals = items.get(itemId);
+        return (intervals != null) && intervals.overlaps(toKey(start), toKey(end));
+    }
+
+    //подтвержденные интервалы вещи, налегающие на промежуток (start, end), в виде пар {начало, конец}
+    //(моменты в микросекундах, см. toKey)
+    public List<long[]> findOverlapping(Long itemId, Timestamp start, Timestamp end) {
+        List<long[]> result = new ArrayList<>();
+        if (!enabled) {
+            for (Booking booking : bookingRepository.findByItem_IdAndEndAfterAndStartBeforeAndStatusIs(
+                    itemId, start, end, Status.APPROVED)) {
+                result.add(new long[]{toKey(booking.getStart()), toKey(booking.getEnd())});
+            }
+            return result;
+        }
+        ItemIntervals intervals = items.get(itemId);
+        if (intervals != null) {
+            intervals.collectOverlapping(toKey(start), toKey(end), result);
+        }
+        return result;
+    }
+
+    //Проверка серии промежутков вещи за один проход. Промежутки упорядочены по началу
+    //и не пересекаются; для каждого возвращается признак наложения на подтвержденные брони.
+    public boolean[] findSeriesOverlaps(Long itemId, Timestamp[] starts, Timestamp[] ends) {
+        boolean[] result = new boolean[starts.length];
+        if (starts.length == 0) {
+            return result;
+        }
+        ItemIntervals intervals;
+        if (!enabled) { //интервалы всего охвата серии читаются одним запросом
+            intervals = ItemIntervals.EMPTY.withAll(bookingRepository.findByItem_IdAndEndAfterAndStartBeforeAndStatusIs(
+                    itemId, starts[0], ends[ends.length - 1], Status.APPROVED));
+        } else {
+            intervals = items.getOrDefault(itemId, ItemIntervals.EMPTY);
+        }
+        long[] startKeys = new long[starts.length];
+        long[] endKeys = new long[ends.length];
+        for (int i = 0; i < starts.length; i++) {
+            startKeys[i] = toKey(starts[i]);
+            endKeys[i] = toKey(ends[i]);
+        }
+        intervals.markOverlaps(startKeys, endKeys, result);
+        return result;
+    }
+
+    //вещи набора, у которых есть подтвержденные бронирования, налегающие на промежуток (start, end)
+    public Set<Long> findOccupiedItems(Collection<Long> itemIds, Timestamp start, Timestamp end) {
+        if (!enabled) { //все вещи проверяются одним запросом
+            return new LinkedHashSet<>(bookingRepository.findItemIdsWithApprovedOverlap(itemIds, start, end));
+        }
+        long startKey = toKey(start);
+        long endKey = toKey(end);
+        Set<Long> result = new LinkedHashSet<>();
+        for (Long itemId : itemIds) {
+            ItemIntervals intervals = items.get(itemId);
+            if ((intervals != null) && intervals.overlaps(startKey, endKey)) {
+                result.add(itemId);
+            }
+        }
+        return result;
+    }
+
+    //есть ли у вещи интервалы в индексе (такая вещь заведомо существует)
+    public boolean containsItem(Long itemId) {
+        return enabled && items.containsKey(itemId);
+    }
+
+    ////////////////////////////// Обновление индекса ////////////////////////
+
+    //бронирование подтверждено
+    public void add(Long itemId, Long bookingId, Timestamp start, Timestamp end) {
+        if (enabled) {
+            itemLocks.withItemLock(itemId, () -> items.compute(itemId, (id, old) ->
+                    (old == null ? ItemIntervals.EMPTY : old).with(bookingId, toKey(start), toKey(end))));
+        }
+    }
+
+    //пакет подтвержденных бронирований (один пересчет интервалов на вещь)
+    public void addAll(Collection<Booking> bookings) {
+        if (!enabled) {
+            return;
+        }
+        Map<Long, List<Booking>> byItem = new HashMap<>();
+        for (Booking booking : bookings) {
+            byItem.computeIfAbsent(booking.getItem().getId(), id -> new ArrayList<>()).add(booking);
+        }
+        itemLocks.withItemLocks(byItem.keySet(), () -> {
+            byItem.forEach((itemId, added) -> items.compute(itemId, (id, old) ->
+                    (old == null ? ItemIntervals.EMPTY : old).withAll(added)));
+            return null;
+        });
+    }
+
+    //бронирование отвергнуто или удалено
+    public void remove(Long itemId, Long bookingId) {
+        if (enabled) {
+            itemLocks.withItemLock(itemId, () -> items.computeIfPresent(itemId, (id, old) -> old.without(bookingId)));
+        }
+    }
+
+    //вещь удалена вместе со своими бронированиями
+    public void removeItem(Long itemId) {
+        itemLocks.withItemLock(itemId, () -> items.remove(itemId));
+    }
+
+    public void clear() {
+        itemLocks.withAllItemLocks(() -> {
+            items = new ConcurrentHashMap<>();
+            return null;
+        });
+    }
+
+    //Удален пользователь: его вещи ушли вместе со своими бронированиями, а его брони
+    //чужих вещей удалены каскадно - убираем только их, без перестроения индекса
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        if (event.isAllUsers()) {
+            clear();
+            return;
+        }
+        event.getItemIds().forEach(this::removeItem);
+        event.getBookedItems().forEach((bookingId, itemId) -> remove(itemId, bookingId));
+    }
+
+    //полное построение индекса по таблице бронирований
+    @PostConstruct
+    public void rebuild() {
+        if (!enabled) {
+            log.info("Индекс подтвержденных бронирований отключен.");
+            return;
+        }
+        //подтверждения и отмены ждут, пока новое отображение не заменит старое,
+        //поэтому ни одно изменение не потеряется и проверки не увидят пустой индекс
+        int count = itemLocks.withAllItemLocks(() -> {
+            Map<Long, ItemIntervals> fresh = new ConcurrentHashMap<>(load());
+            items = fresh;
+            return fresh.size();
+        });
+        log.info("Построен индекс подтвержденных бронирований для " + count + " вещей.");
+    }
+
+    ///////////////////////////// Самопроверка индекса ///////////////////////
+
+    //сверка индекса с таблицей бронирований
+    public Map<String, Object> verify() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("enabled", enabled);
+        report.put("checkOnCreate", checkOnCreate);
+        if (!enabled) {
+            return report;
+        }
+        Map<Long, ItemIntervals> actual = load();
+        Map<Long, ItemIntervals> current = items;
+        Set<Long> itemIds = new HashSet<>(actual.keySet());
+        itemIds.addAll(current.keySet());
+        int intervals = 0;
+        List<Long> mismatched = new ArrayList<>();
+        for (Long itemId : itemIds) {
+            ItemIntervals expected = actual.getOrDefault(itemId, ItemIntervals.EMPTY);
+            ItemIntervals indexed = current.getOrDefault(itemId, ItemIntervals.EMPTY);
+            intervals += indexed.size();
+            if (!expected.sameAs(indexed)) {
+                mismatched.add(itemId);
+            }
+        }
+        if (!mismatched.isEmpty()) {
+            log.warn("Индекс бронирований расходится с базой для вещей " + mismatched);
+        }
+        report.put("items", current.size());
+        report.put("intervals", intervals);
+        report.put("consistent", mismatched.isEmpty());
+        report.put("mismatchedItems", mismatched);
+        return report;
+    }
+
+    /////////////////////////// Вспомогательные методы ///////////////////////
+
+    private Map<Long, ItemIntervals> load() {
+        Map<Long, List<BookingInterval>> grouped = new HashMap<>();
+        for (BookingInterval interval : bookingRepository.findIntervalsByStatus(Status.APPROVED)) {
+            grouped.computeIfAbsent(interval.getItemId(), id -> new ArrayList<>()).add(interval);
+        }
+        Map<Long, ItemIntervals> result = new HashMap<>();
+        for (Map.Entry<Long, List<BookingInterval>> entry : grouped.entrySet()) {
+            result.put(entry.getKey(), ItemIntervals.of(entry.getValue()));
+        }
+        return result;
+    }
+
+    //момент времени в микросекундах (точность timestamp в базе)
+    public static long toKey(Timestamp timestamp) {
+        return Math.floorDiv(timestamp.getTime(), 1000L) * 1_000_000L + timestamp.getNanos() / 1000;
+    }
+
+    ////////////////////////// Интервалы одной вещи //////////////////////////
+
+    //Неизменяемый набор интервалов, упорядоченный по началу.
+    //maxEnds[i] - максимум концов среди первых i + 1 интервалов: он позволяет
+    //не полагаться на то, что подтвержденные интервалы не пересекаются.
+    private static final class ItemIntervals {
+        static final ItemIntervals EMPTY = new ItemIntervals(new long[0], new long[0], new long[0]);
+
+        private final long[] ids;
+        private final long[] starts;
+        private final long[] ends;
+        private final long[] maxEnds;
+
+        private ItemIntervals(long[] ids, long[] starts, long[] ends) {
+            this.ids = ids;
+            this.starts = starts;
+            this.ends = ends;
+            this.maxEnds = new long[ends.length];
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < ends.length; i++) {
+                max = Math.max(max, ends[i]);
+                maxEnds[i] = max;
+            }
+        }
+
+        static ItemIntervals of(List<BookingInterval> list) {
+            list.sort(Comparator.comparing(BookingInterval::getStart).thenComparing(BookingInterval::getId));
+            long[] ids = new long[list.size()];
+            long[] starts = new long[list.size()];
+            long[] ends = new long[list.size()];
+            for (int i = 0; i < list.size(); i++) {
+                BookingInterval interval = list.get(i);
+                ids[i] = interval.getId();
+                starts[i] = toKey(interval.getStart());
+                ends[i] = toKey(interval.getEnd());
+            }
+            return new ItemIntervals(ids, starts, ends);
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        //есть ли интервал с началом раньше end и концом позже start
+        boolean overlaps(long start, long end) {
+            int count = countStartsBefore(end);
+            return (count > 0) && (maxEnds[count - 1] > start);
+        }
+
+        //интервалы с началом раньше end и концом позже start
+        void collectOverlapping(long start, long end, List<long[]> result) {
+            int count = countStartsBefore(end);
+            //maxEnds не убывает, поэтому первый подходящий интервал ищется двоичным поиском
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (maxEnds[mid] > start) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            for (int i = low; i < count; i++) {
+                if (ends[i] > start) {
+                    result.add(new long[]{starts[i], ends[i]});
+                }
+            }
+        }
+
+        //Наложения серии промежутков: концы серии возрастают, поэтому число интервалов,
+        //начинающихся раньше конца очередного промежутка, только растет (слияние за O(n + m))
+        void markOverlaps(long[] seriesStarts, long[] seriesEnds, boolean[] result) {
+            int count = 0;
+            for (int i = 0; i < seriesStarts.length; i++) {
+                while ((count < starts.length) && (starts[count] < seriesEnds[i])) {
+                    count++;
+                }
+                result[i] = (count > 0) && (maxEnds[count - 1] > seriesStarts[i]);
+            }
+        }
+
+        ItemIntervals with(long id, long start, long end) {
+            ItemIntervals base = without(id); //повторное добавление заменяет интервал
+            int pos = base.countStartsBefore(start);
+            while ((pos < base.size()) && (base.starts[pos] == start) && (base.ids[pos] < id)) {
+                pos++;
+            }
+            return new ItemIntervals(insert(base.ids, pos, id),
+                    insert(base.starts, pos, start), insert(base.ends, pos, end));
+        }
+
+        ItemIntervals withAll(List<Booking> added) {
+            Set<Long> addedIds = new HashSet<>();
+            List<long[]> all = new ArrayList<>(ids.length + added.size());
+            for (Booking booking : added) {
+                if (addedIds.add(booking.getId())) {
+                    all.add(new long[]{booking.getId(), toKey(booking.getStart()), toKey(booking.getEnd())});
+                }
+            }
+            for (int i = 0; i < ids.length; i++) {
+                if (!addedIds.contains(ids[i])) { //повторное добавление заменяет интервал
+                    all.add(new long[]{ids[i], starts[i], ends[i]});
+                }
+            }
+            all.sort(Comparator.<long[]>comparingLong(interval -> interval[1]).thenComparingLong(interval -> interval[0]));
+            long[] newIds = new long[all.size()];
+            long[] newStarts = new long[all.size()];
+            long[] newEnds = new long[all.size()];
+            for (int i = 0; i < all.size(); i++) {
+                newIds[i] = all.get(i)[0];
+                newStarts[i] = all.get(i)[1];
+                newEnds[i] = all.get(i)[2];
+            }
+            return new ItemIntervals(newIds, newStarts, newEnds);
+        }
+
+        ItemIntervals without(long id) {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == id) {
+                    return new ItemIntervals(delete(ids, i), delete(starts, i), delete(ends, i));
+                }
+            }
+            return this;
+        }
+
+        boolean sameAs(ItemIntervals other) {
+            return Arrays.equals(ids, other.ids) && Arrays.equals(starts, other.starts)
+                    && Arrays.equals(ends, other.ends);
+        }
+
+        //число интервалов, начинающихся строго раньше заданного момента
+        private int countStartsBefore(long moment) {
+            int low = 0;
+            int high = starts.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid] < moment) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private static long[] insert(long[] array, int pos, long value) {
+            long[] result = new long[array.length + 1];
+            System.arraycopy(array, 0, result, 0, pos);
+            result[pos] = value;
+            System.arraycopy(array, pos, result, pos + 1, array.length - pos);
+            return result;
+        }
+
+        private static long[] delete(long[] array, int pos) {
+            long[] result = new long[array.length - 1];
+            System.arraycopy(array, 0, result, 0, pos);
+            System.arraycopy(array, pos + 1, result, pos, array.length - pos - 1);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package ru.practicum.shareit.booking.storage;
+
+import java.sql.Timestamp;
+
+//Проекция для индекса права на отзыв: пара (автор, вещь) и самый ранний конец ее бронирований
+public interface BookingPairEnd {
+    Long getBookerId();
+
+    Long getItemId();
+
+    Timestamp getFirstEnd();
+}
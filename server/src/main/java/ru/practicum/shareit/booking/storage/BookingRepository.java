@@ -1,73 +1,203 @@
 package ru.practicum.shareit.booking.storage;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.Status;
 
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 
 public interface BookingRepository extends JpaRepository<Booking, Long> {
 
+    //Все выборки упорядочены по убыванию (start, id) и начинаются строго после ключа курсора
+    //(startBefore, idBefore). Без курсора ключ равен "бесконечности", а страница задается смещением.
+    //Slice не требует отдельного запроса count(*).
+
     ///////////////////////// Бронирования по автору ////////////////////////
 
     //ALL по автору
-    Page<Booking> findByBooker_IdOrderByStartDesc(Long bookerId, Pageable pageable);
+    @Query("select b from Booking b " +
+            "where b.booker.id = ?1 and (b.start < ?2 or (b.start = ?2 and b.id < ?3)) " +
+            "order by b.start desc, b.id desc ")
+    Slice<Booking> findAllBookingsForBooker(Long bookerId, Timestamp startBefore, long idBefore,
+                                            Pageable pageable);
 
     //PAST по автору
-    Page<Booking> findByBooker_IdAndEndIsBeforeOrderByStartDesc(Long bookerId, Timestamp end, Pageable pageable);
+    @Query("select b from Booking b " +
+            "where b.booker.id = ?1 and b.end < ?2 and (b.start < ?3 or (b.start = ?3 and b.id < ?4)) " +
+            "order by b.start desc, b.id desc ")
+    Slice<Booking> findPastBookingsForBooker(Long bookerId, Timestamp end, Timestamp startBefore, long idBefore,
+                                             Pageable pageable);
 
     //FUTURE по автору
-    Page<Booking> findByBooker_IdAndStartIsAfterOrderByStartDesc(Long bookerId, Timestamp start, Pageable pageable);
+    @Query("select b from Booking b " +
+            "where b.booker.id = ?1 and b.start > ?2 and (b.start < ?3 or (b.start = ?3 and b.id < ?4)) " +
+            "order by b.start desc, b.id desc ")
+    Slice<Booking> findFutureBookingsForBooker(Long bookerId, Timestamp start, Timestamp startBefore, long idBefore,
+                                               Pageable pageable);
 
     //CURRENT по автору
-    Page<Booking> findByBooker_IdAndStartIsBeforeAndEndIsAfterOrderByStartDesc(
-            Long bookerId, Timestamp start, Timestamp end, Pageable pageable);
+    @Query("select b from Booking b " +
+            "where b.booker.id = ?1 and b.start < ?2 and b.end > ?2 " +
+            "and (b.start < ?3 or (b.start = ?3 and b.id < ?4)) " +
+            "order by b.start desc, b.id desc ")
+    Slice<Booking> findCurrentBookingsForBooker(Long bookerId, Timestamp middle, Timestamp startBefore,
+                                                long idBefore, Pageable pageable);
 
     //WAITING, REJECTED по автору
-    Page<Booking> findByBooker_IdAndStatusIsOrderByStartDesc(Long itemId, Status status, Pageable pageable);
+    @Query("select b from Booking b " +
+            "where b.booker.id = ?1 and b.status = ?2 and (b.start < ?3 or (b.start = ?3 and b.id < ?4)) " +
+            "order by b.start desc, b.id desc ")
+    Slice<Booking> findStatusBookingsForBooker(Long bookerId, Status status, Timestamp startBefore, long idBefore,
+                                               Pageable pageable);
 
     ////////////////////// Бронирования вещей владельца /////////////////////
 
+    //Фильтр идет по bookings.owner_id, поэтому соединение с items не нужно, а порядок
+    //совпадает с индексами (owner_id, start_date desc, id desc) и (owner_id, status, ...).
+
     //получение бронирований всех вещей
-    @Query("select b from Booking b inner join b.item i " +
-            "where i.owner.id = ?1 " +
-            "order by b.start desc ")
-    Page<Booking> findAllBookingsForOwner(Long ownerId, Pageable pageable);
+    @Query("select b from Booking b " +
+            "where b.ownerId = ?1 and (b.start < ?2 or (b.start = ?2 and b.id < ?3)) " +
+            "order by b.start desc, b.id desc ")
+    Slice<Booking> findAllBookingsForOwner(Long ownerId, Timestamp startBefore, long idBefore, Pageable pageable);
 
     //получение PAST-бронирований всех вещей
-    @Query("select b from Booking b inner join b.item i " +
-            "where i.owner.id = ?1 and b.end < ?2 " +
-            "order by b.start desc ")
-    Page<Booking> findPastBookingsForOwner(Long ownerId, Timestamp end, Pageable pageable);
+    @Query("select b from Booking b " +
+            "where b.ownerId = ?1 and b.end < ?2 and (b.start < ?3 or (b.start = ?3 and b.id < ?4)) " +
+            "order by b.start desc, b.id desc ")
+    Slice<Booking> findPastBookingsForOwner(Long ownerId, Timestamp end, Timestamp startBefore, long idBefore,
+                                            Pageable pageable);
 
     //получение FUTURE-бронирований всех вещей
-    @Query("select b from Booking b inner join b.item i " +
-            "where i.owner.id = ?1 and b.start > ?2 " +
-            "order by b.start desc ")
-    Page<Booking> findFutureBookingsForOwner(Long ownerId, Timestamp start, Pageable pageable);
+    @Query("select b from Booking b " +
+            "where b.ownerId = ?1 and b.start > ?2 and (b.start < ?3 or (b.start = ?3 and b.id < ?4)) " +
+            "order by b.start desc, b.id desc ")
+    Slice<Booking> findFutureBookingsForOwner(Long ownerId, Timestamp start, Timestamp startBefore, long idBefore,
+                                              Pageable pageable);
 
     //получение CURRENT-бронирований всех вещей
-    @Query("select b from Booking b inner join b.item i " +
-            "where i.owner.id = ?1 and b.start < ?2 and b.end > ?2 " +
-            "order by b.start desc ")
-    Page<Booking> findCurrentBookingsForOwner(Long ownerId, Timestamp middle, Pageable pageable);
+    @Query("select b from Booking b " +
+            "where b.ownerId = ?1 and b.start < ?2 and b.end > ?2 " +
+            "and (b.start < ?3 or (b.start = ?3 and b.id < ?4)) " +
+            "order by b.start desc, b.id desc ")
+    Slice<Booking> findCurrentBookingsForOwner(Long ownerId, Timestamp middle, Timestamp startBefore, long idBefore,
+                                               Pageable pageable);
 
     //получение WAITING- и REJECTED-бронирований всех вещей
-    @Query("select b from Booking b inner join b.item i " +
-            "where i.owner.id = ?1 and b.status = ?2 " +
-            "order by b.start desc ")
-    Page<Booking> findStatusBookingsForOwner(Long ownerId, Status status, Pageable pageable);
+    @Query("select b from Booking b " +
+            "where b.ownerId = ?1 and b.status = ?2 and (b.start < ?3 or (b.start = ?3 and b.id < ?4)) " +
+            "order by b.start desc, b.id desc ")
+    Slice<Booking> findStatusBookingsForOwner(Long ownerId, Status status, Timestamp startBefore, long idBefore,
+                                              Pageable pageable);
 
     /////////////////////// Поддержка поиска наложений //////////////////////
 
-    //поиск истекших бронирований
-    List<Booking> findByBooker_IdAndEndBeforeAndStatusIs(Long bookerId, Timestamp now, Status status);
-
     //поиск для вещи бронирований с заданным статусом, налегающих на заданный промежуток
     List<Booking> findByItem_IdAndEndAfterAndStartBeforeAndStatusIs(
             Long itemId, Timestamp down, Timestamp up, Status status);
+
+    //интервалы всех бронирований с заданным статусом (для индекса наложений)
+    @Query("select b.id as id, b.item.id as itemId, b.start as start, b.end as end " +
+            "from Booking b where b.status = ?1 ")
+    List<BookingInterval> findIntervalsByStatus(Status status);
+
+    //интервалы всех бронирований пользователя (перед его удалением)
+    @Query("select b.id as id, b.item.id as itemId, b.start as start, b.end as end " +
+            "from Booking b where b.booker.id = ?1 ")
+    List<BookingInterval> findIntervalsByBooker(Long bookerId);
+
+    //были ли у автора брони вещей владельца с заданным статусом (постоянный арендатор)
+    boolean existsByBooker_IdAndOwnerIdAndStatus(Long bookerId, Long ownerId, Status status);
+
+    ////////////////////////// Право на отзыв ////////////////////////////////
+
+    //есть ли у автора завершенное бронирование вещи с заданным статусом
+    boolean existsByBooker_IdAndItem_IdAndEndBeforeAndStatusIs(Long bookerId, Long itemId, Timestamp now,
+                                                               Status status);
+
+    //самый ранний конец бронирований с заданным статусом для каждой пары (автор, вещь)
+    @Query("select b.booker.id as bookerId, b.item.id as itemId, min(b.end) as firstEnd " +
+            "from Booking b where b.status = ?1 group by b.booker.id, b.item.id ")
+    List<BookingPairEnd> findFirstEndsByStatus(Status status);
+
+    ////////////////////////// Счетчики состояний ////////////////////////////
+
+    //моменты и статусы всех бронирований автора
+    @Query("select b.id as id, b.start as start, b.end as end, b.status as status " +
+            "from Booking b where b.booker.id = ?1 ")
+    List<BookingTimes> findTimesByBooker(Long bookerId);
+
+    //моменты и статусы всех бронирований вещей владельца
+    @Query("select b.id as id, b.start as start, b.end as end, b.status as status " +
+            "from Booking b where b.ownerId = ?1 ")
+    List<BookingTimes> findTimesByOwner(Long ownerId);
+
+    //число бронирований по статусам для всех пар (автор, владелец) - одним запросом
+    @Query("select b.booker.id as bookerId, b.ownerId as ownerId, b.status as status, count(b) as count " +
+            "from Booking b group by b.booker.id, b.ownerId, b.status ")
+    List<BookingStatusCount> countByBookerAndOwnerAndStatus();
+
+    ////////////////////////////// Пакетная обработка ///////////////////////////
+
+    //бронирования вместе с вещами и владельцами (одним запросом)
+    @Query("select b from Booking b join fetch b.item i join fetch i.owner join fetch b.booker " +
+            "where b.id in ?1 ")
+    List<Booking> findAllWithItemsByIdIn(Collection<Long> ids);
+
+    //вещи, у которых есть подтвержденные брони, налегающие на промежуток (start, end)
+    @Query("select distinct b.item.id from Booking b " +
+            "where b.item.id in ?1 and b.status = 'APPROVED' and b.start < ?3 and b.end > ?2 ")
+    List<Long> findItemIdsWithApprovedOverlap(Collection<Long> itemIds, Timestamp start, Timestamp end);
+
+    ////////////////////////////// Смена статуса /////////////////////////////
+
+    //порция новых броней, начало которых уже прошло (вместе с вещами и авторами)
+    @Query("select b from Booking b join fetch b.item i join fetch i.owner join fetch b.booker " +
+            "where b.status = 'WAITING' and b.start < ?1 order by b.id ")
+    List<Booking> findExpiryCandidates(Timestamp now, Pageable pageable);
+
+    //перевод порции новых броней в EXPIRED одним запросом
+    @Modifying
+    @Transactional
+    @Query("update Booking b set b.status = 'EXPIRED' where b.id in ?1 and b.status = 'WAITING' ")
+    int expireWaiting(Collection<Long> ids);
+
+    //какие из броней имеют заданный статус
+    @Query("select b.id from Booking b where b.id in ?1 and b.status = ?2 ")
+    List<Long> findIdsByIdInAndStatus(Collection<Long> ids, Status status);
+
+    //новые брони вещи, налегающие на промежуток (start, end), кроме заданной (вместе с авторами)
+    @Query("select b from Booking b join fetch b.booker " +
+            "where b.item.id = ?1 and b.id <> ?2 and b.status = 'WAITING' and b.start < ?4 and b.end > ?3 ")
+    List<Booking> findWaitingOverlapping(Long itemId, Long excludedId, Timestamp start, Timestamp end);
+
+    //отклонение порции новых броней одним запросом
+    @Modifying
+    @Transactional
+    @Query("update Booking b set b.status = 'REJECTED' where b.id in ?1 and b.status = 'WAITING' ")
+    int rejectWaiting(Collection<Long> ids);
+
+    //смена статуса только для новой брони (сравнение с обменом)
+    @Modifying
+    @Transactional
+    @Query("update Booking b set b.status = ?2 where b.id = ?1 and b.status = 'WAITING' ")
+    int updateStatusIfWaiting(Long bookingId, Status status);
+
+    //смена статуса брони, если он все еще равен ожидаемому (сравнение с обменом)
+    @Modifying
+    @Transactional
+    @Query("update Booking b set b.status = ?3 where b.id = ?1 and b.status = ?2 ")
+    int updateStatusIf(Long bookingId, Status expected, Status status);
+
+    //новые брони вещей, не закончившиеся к заданному моменту (для перевода листа ожидания в брони)
+    @Query("select b.id as id, b.item.id as itemId, b.start as start, b.end as end " +
+            "from Booking b where b.item.id in ?1 and b.status = 'WAITING' and b.end > ?2 ")
+    List<BookingInterval> findWaitingIntervals(Collection<Long> itemIds, Timestamp after);
 }
@@ -0,0 +1,14 @@
+package ru.practicum.shareit.booking.storage;
+
+import ru.practicum.shareit.booking.model.Status;
+
+//Число бронирований с заданным статусом для пары (автор, владелец)
+public interface BookingStatusCount {
+    Long getBookerId();
+
+    Long getOwnerId();
+
+    Status getStatus();
+
+    Long getCount();
+}
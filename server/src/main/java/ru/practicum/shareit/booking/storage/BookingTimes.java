@@ -0,0 +1,16 @@
+package ru.practicum.shareit.booking.storage;
+
+import ru.practicum.shareit.booking.model.Status;
+
+import java.sql.Timestamp;
+
+//Проекция бронирования для счетчиков состояний пользователя
+public interface BookingTimes {
+    Long getId();
+
+    Timestamp getStart();
+
+    Timestamp getEnd();
+
+    Status getStatus();
+}
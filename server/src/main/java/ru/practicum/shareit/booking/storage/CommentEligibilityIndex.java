@@ -0,0 +1,247 @@
+package ru.practicum.shareit.booking.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.event.BookingEvent;
+import ru.practicum.shareit.booking.event.BookingEventType;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.user.event.UserDeletedEvent;
+
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//Индекс права на отзыв: пары (автор, вещь), у которых есть завершенное подтвержденное бронирование.
+//Впереди стоит фильтр Блума по всем парам с подтвержденными бронированиями: отрицательный ответ
+//фильтра точен, поэтому большинство отказов обходится без базы. Пары, чьи брони еще не закончились,
+//лежат в очереди по времени конца и переходят в набор допущенных по мере завершения.
+//Ложное срабатывание фильтра или пропуск в наборе проверяются одним запросом по вещи.
+@Slf4j
+@Component
+public class CommentEligibilityIndex {
+    private final BookingRepository bookingRepository;
+    private final int expectedPairs;
+    private final double falsePositiveRate;
+    //фильтр Блума по парам с подтвержденными бронированиями (заменяется целиком при перестроении)
+    private volatile PairBloomFilter filter;
+    //допущенные пары: автор -> вещи
+    private final Map<Long, Set<Long>> eligible = new ConcurrentHashMap<>();
+    //подтвержденные, но еще не завершенные пары в виде {конец, автор, вещь}, упорядоченные по концу
+    private final PriorityQueue<long[]> pending = new PriorityQueue<>(Comparator.comparingLong(pair -> pair[0]));
+    //конец первой пары очереди (Long.MAX_VALUE - очередь пуста); читается без блокировки,
+    //чтобы проверки права не захватывали блокировку очереди, когда переводить нечего
+    private volatile long firstPendingEnd = Long.MAX_VALUE;
+
+    @Autowired
+    public CommentEligibilityIndex(BookingRepository bookingRepository,
+                                   @Value("${shareit.comment.eligibility.expected-pairs:100000}") int expectedPairs,
+                                   @Value("${shareit.comment.eligibility.false-positive-rate:0.01}")
+                                   double falsePositiveRate) {
+        this.bookingRepository = bookingRepository;
+        this.expectedPairs = Math.max(1, expectedPairs);
+        this.falsePositiveRate = falsePositiveRate;
+        this.filter = new PairBloomFilter(this.expectedPairs, falsePositiveRate);
+    }
+
+    ////////////////////////////// Проверка права ////////////////////////////
+
+    //есть ли у автора подтвержденное бронирование вещи, закончившееся до момента now
+    public boolean hasEndedBooking(Long bookerId, Long itemId, Timestamp now) {
+        if (!filter.mightContain(bookerId, itemId)) { //подтвержденных броней у пары точно нет
+            return false;
+        }
+        long nowKey = BookingIntervalIndex.toKey(now);
+        if (firstPendingEnd < nowKey) { //в очереди есть завершившиеся пары
+            promoteEnded(nowKey);
+        }
+        Set<Long> items = eligible.get(bookerId);
+        if ((items != null) && items.contains(itemId)) {
+            return true;
+        }
+        boolean ended = bookingRepository.existsByBooker_IdAndItem_IdAndEndBeforeAndStatusIs(
+                bookerId, itemId, now, Status.APPROVED);
+        if (ended) {
+            markEligible(bookerId, itemId);
+        }
+        return ended;
+    }
+
+    ////////////////////////////// Обновление индекса ////////////////////////
+
+    @EventListener
+    public void onBookingEvent(BookingEvent event) {
+        //бронь согласована владельцем или создана уже согласованной по его правилу
+        if (event.getStatus() == Status.APPROVED) {
+            addApproved(event.getBookerId(), event.getItemId(), Timestamp.valueOf(event.getEnd()));
+        } else if ((event.getType() == BookingEventType.CANCELED) && (event.getPreviousStatus() == Status.APPROVED)) {
+            //отмена возможна только до окончания, поэтому пара еще ждет в очереди;
+            //бит фильтра остается - лишнее срабатывание проверит запрос к базе
+            removePending(event.getBookerId(), event.getItemId(), Timestamp.valueOf(event.getEnd()));
+        }
+    }
+
+    //пакет подтвержденных бронирований (импорт)
+    public void addAll(Collection<Booking> bookings) {
+        for (Booking booking : bookings) {
+            addApproved(booking.getBooker().getId(), booking.getItem().getId(), booking.getEnd());
+        }
+    }
+
+    //перевод завершившихся пар из очереди в набор допущенных
+    @Scheduled(fixedDelayString = "${shareit.comment.eligibility.promote-ms:60000}")
+    public void promoteEnded() {
+        promoteEnded(BookingIntervalIndex.toKey(Timestamp.from(Instant.now())));
+    }
+
+    //все пользователи или вещи удалены
+    public synchronized void clear() {
+        filter = new PairBloomFilter(expectedPairs, falsePositiveRate);
+        eligible.clear();
+        pending.clear();
+        firstPendingEnd = Long.MAX_VALUE;
+    }
+
+    //Удален пользователь: уходят его пары и пары его вещей. Биты фильтра остаются -
+    //лишние срабатывания проверит запрос к базе.
+    @EventListener
+    public synchronized void onUserDeleted(UserDeletedEvent event) {
+        if (event.isAllUsers()) {
+            clear();
+            return;
+        }
+        Long userId = event.getUserId();
+        Set<Long> itemIds = event.getItemIds();
+        eligible.remove(userId);
+        if (!itemIds.isEmpty()) {
+            eligible.values().forEach(items -> items.removeAll(itemIds));
+        }
+        pending.removeIf(pair -> (pair[1] == userId) || itemIds.contains(pair[2]));
+        updateFirstPendingEnd();
+    }
+
+    //полное построение индекса по таблице бронирований
+    @PostConstruct
+    public synchronized void rebuild() {
+        List<BookingPairEnd> pairs = bookingRepository.findFirstEndsByStatus(Status.APPROVED);
+        //размер фильтра берем с запасом, чтобы доля ложных срабатываний не росла с новыми парами
+        filter = new PairBloomFilter(Math.max(expectedPairs, 2 * pairs.size()), falsePositiveRate);
+        eligible.clear();
+        pending.clear();
+        long now = BookingIntervalIndex.toKey(Timestamp.from(Instant.now()));
+        for (BookingPairEnd pair : pairs) {
+            add(pair.getBookerId(), pair.getItemId(), BookingIntervalIndex.toKey(pair.getFirstEnd()), now);
+        }
+        updateFirstPendingEnd();
+        log.info("Построен индекс права на отзыв: пар " + pairs.size() + ", допущено " + eligibleCount() + ".");
+    }
+
+    /////////////////////////// Вспомогательные методы ///////////////////////
+
+    //добавление выполняется под той же блокировкой, что и перестроение, поэтому
+    //событие не потеряется между загрузкой пар из базы и заменой фильтра
+    private synchronized void addApproved(Long bookerId, Long itemId, Timestamp end) {
+        long now = BookingIntervalIndex.toKey(Timestamp.from(Instant.now()));
+        add(bookerId, itemId, BookingIntervalIndex.toKey(end), now);
+        updateFirstPendingEnd();
+    }
+
+    private void add(long bookerId, long itemId, long end, long now) {
+        filter.add(bookerId, itemId);
+        if (end < now) {
+            markEligible(bookerId, itemId);
+        } else {
+            pending.add(new long[]{end, bookerId, itemId});
+        }
+    }
+
+    private synchronized void removePending(long bookerId, long itemId, Timestamp end) {
+        long endKey = BookingIntervalIndex.toKey(end);
+        pending.removeIf(pair -> (pair[0] == endKey) && (pair[1] == bookerId) && (pair[2] == itemId));
+        updateFirstPendingEnd();
+    }
+
+    private synchronized void promoteEnded(long now) {
+        while (!pending.isEmpty() && (pending.peek()[0] < now)) {
+            long[] pair = pending.poll();
+            markEligible(pair[1], pair[2]);
+        }
+        updateFirstPendingEnd();
+    }
+
+    //вызывается под блокировкой очереди после каждого ее изменения
+    private void updateFirstPendingEnd() {
+        firstPendingEnd = pending.isEmpty() ? Long.MAX_VALUE : pending.peek()[0];
+    }
+
+    private void markEligible(long bookerId, long itemId) {
+        eligible.computeIfAbsent(bookerId, id -> ConcurrentHashMap.newKeySet()).add(itemId);
+    }
+
+    private long eligibleCount() {
+        return eligible.values().stream().mapToLong(Set::size).sum();
+    }
+
+    ////////////////////////// Фильтр Блума по парам /////////////////////////
+
+    //Битовый массив размера m и k хеш-функций вида h1 + i * h2 (двойное хеширование).
+    //m и k выбираются по ожидаемому числу пар n и доле ложных срабатываний p:
+    //m = -n * ln(p) / ln(2)^2, k = m / n * ln(2).
+    private static final class PairBloomFilter {
+        private final AtomicLongArray words;
+        private final long bitCount;
+        private final int hashCount;
+
+        PairBloomFilter(int expected, double rate) {
+            long bits = (long) Math.ceil(-expected * Math.log(rate) / (Math.log(2) * Math.log(2)));
+            bitCount = Math.max(64, bits);
+            hashCount = Math.max(1, (int) Math.round((double) bitCount / expected * Math.log(2)));
+            words = new AtomicLongArray((int) ((bitCount + 63) / 64));
+        }
+
+        void add(long first, long second) {
+            long h1 = mix(first * 0x9E3779B97F4A7C15L + second);
+            long h2 = mix(h1 ^ second) | 1; //нечетный шаг обходит весь массив
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long word = words.get(index);
+                while (((word & mask) == 0) && !words.compareAndSet(index, word, word | mask)) {
+                    word = words.get(index);
+                }
+            }
+        }
+
+        boolean mightContain(long first, long second) {
+            long h1 = mix(first * 0x9E3779B97F4A7C15L + second);
+            long h2 = mix(h1 ^ second) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        //перемешивание битов (финализатор splitmix64)
+        private static long mix(long value) {
+            value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+            value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+            return value ^ (value >>> 31);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ru.practicum.shareit.booking.storage;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.model.WaitlistEntry;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+public interface WaitlistRepository extends JpaRepository<WaitlistEntry, Long> {
+
+    //записи пользователя в порядке постановки
+    List<WaitlistEntry> findByUser_IdOrderById(Long userId);
+
+    //очереди нескольких вещей (вместе с вещами, владельцами и пользователями) в порядке постановки
+    @Query("select w from WaitlistEntry w join fetch w.item i join fetch i.owner join fetch w.user " +
+            "where i.id in ?1 order by w.id ")
+    List<WaitlistEntry> findQueues(Collection<Long> itemIds);
+
+    //ждет ли пользователь период вещи, налегающий на промежуток (start, end): начало раньше end, конец позже start
+    boolean existsByItem_IdAndUser_IdAndStartBeforeAndEndAfter(Long itemId, Long userId, Timestamp end,
+                                                                Timestamp start);
+
+    //удаление порции записей одним запросом
+    @Modifying
+    @Transactional
+    @Query("delete from WaitlistEntry w where w.id in ?1 ")
+    int deleteByIds(Collection<Long> ids);
+
+    //удаление записей, начало которых не позже момента now
+    @Modifying
+    @Transactional
+    @Query("delete from WaitlistEntry w where w.start <= ?1 ")
+    int deleteStartedBefore(Timestamp now);
+}
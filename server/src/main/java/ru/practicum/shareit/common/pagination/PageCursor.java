@@ -0,0 +1,111 @@
+package ru.practicum.shareit.common.pagination;
+
+import lombok.Getter;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.ResponseEntity;
+import ru.practicum.shareit.common.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+//Параметры постраничного вывода: либо смещение (from/size), либо курсор.
+//Курсор - непрозрачная строка с ключом последней выданной записи: для бронирований это (start, id),
+//для вещей - id, для ранжированных выдач - смещение следующей страницы.
+//Запросы с курсором ключа ищут записи строго после ключа и не используют смещение.
+@Getter
+public class PageCursor {
+    public static final String HEADER_NAME = "X-Next-Cursor";
+    //значения ключа "до начала выборки"
+    private static final Timestamp MAX_TIME = Timestamp.valueOf("9999-12-31 23:59:59");
+
+    private final Pageable pageable;
+    //ключ для выборок по убыванию (start, id)
+    private final Timestamp startBefore;
+    private final long idBefore;
+    //ключ для выборок по возрастанию id
+    private final long idAfter;
+
+    private PageCursor(Pageable pageable, Timestamp startBefore, long idBefore, long idAfter) {
+        this.pageable = pageable;
+        this.startBefore = startBefore;
+        this.idBefore = idBefore;
+        this.idAfter = idAfter;
+    }
+
+    //разбор параметров запроса: курсор, если он задан, отменяет смещение
+    public static PageCursor of(int from, int size, String cursor) {
+        if ((cursor == null) || cursor.isBlank()) {
+            return new PageCursor(PageRequest.of(from / size, size), MAX_TIME, Long.MAX_VALUE, 0);
+        }
+        String[] parts = decode(cursor).split(":");
+        try {
+            if ((parts.length == 3) && parts[0].equals("t")) { //курсор (start, id)
+                long micros = Long.parseLong(parts[1]);
+                Timestamp start = new Timestamp(Math.floorDiv(micros, 1_000_000L) * 1000L);
+                start.setNanos((int) Math.floorMod(micros, 1_000_000L) * 1000);
+                long id = Long.parseLong(parts[2]);
+                return new PageCursor(PageRequest.of(0, size), start, id, 0);
+            }
+            if ((parts.length == 2) && parts[0].equals("i")) { //курсор id
+                long id = Long.parseLong(parts[1]);
+                return new PageCursor(PageRequest.of(0, size), MAX_TIME, Long.MAX_VALUE, id);
+            }
+            if ((parts.length == 2) && parts[0].equals("o")) { //курсор смещения (ранжированные выдачи)
+                long offset = Long.parseLong(parts[1]);
+                if ((offset >= 0) && (offset % size == 0)) {
+                    return new PageCursor(PageRequest.of((int) (offset / size), size), MAX_TIME, Long.MAX_VALUE, 0);
+                }
+            }
+        } catch (NumberFormatException e) {
+            //сообщаем об ошибке ниже
+        }
+        throw new BadRequestException("Некорректный курсор: " + cursor);
+    }
+
+    ///////////////////////////// Построение курсоров ////////////////////////
+
+    public static String ofStart(LocalDateTime start, Long id) {
+        Timestamp timestamp = Timestamp.valueOf(start);
+        long micros = Math.floorDiv(timestamp.getTime(), 1000L) * 1_000_000L + timestamp.getNanos() / 1000;
+        return encode("t:" + micros + ":" + id);
+    }
+
+    public static String ofId(Long id) {
+        return encode("i:" + id);
+    }
+
+    public static String ofOffset(long offset) {
+        return encode("o:" + offset);
+    }
+
+    //ответ со страницей данных и курсором следующей страницы (если она есть)
+    public static <T> ResponseEntity<List<T>> toResponse(Slice<T> slice, Function<T, String> cursorOf) {
+        List<T> content = slice.getContent();
+        if (slice.hasNext() && !content.isEmpty()) {
+            return ResponseEntity.ok()
+                    .header(HEADER_NAME, cursorOf.apply(content.get(content.size() - 1)))
+                    .body(content);
+        }
+        return ResponseEntity.ok(content);
+    }
+
+    /////////////////////////// Вспомогательные методы ///////////////////////
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Некорректный курсор: " + cursor);
+        }
+    }
+}
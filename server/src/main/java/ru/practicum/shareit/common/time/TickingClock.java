@@ -0,0 +1,37 @@
+package ru.practicum.shareit.common.time;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+
+//Часы с дискретным ходом: текущее время округляется вниз до целого такта.
+//Запросы внутри одного такта видят одно и то же "сейчас" и могут делить результаты.
+@Component
+public class TickingClock {
+    private final Clock clock;
+    private final long tickMs;
+
+    @Autowired
+    public TickingClock(@Value("${shareit.clock.tick-ms:1000}") long tickMs) {
+        this(Clock.systemDefaultZone(), tickMs);
+    }
+
+    public TickingClock(Clock clock, long tickMs) {
+        this.clock = clock;
+        this.tickMs = Math.max(1, tickMs);
+    }
+
+    //начало текущего такта
+    public Timestamp now() {
+        long millis = clock.millis();
+        return new Timestamp(millis - Math.floorMod(millis, tickMs));
+    }
+
+    //точное текущее время
+    public long millis() {
+        return clock.millis();
+    }
+}
@@ -3,12 +3,17 @@ package ru.practicum.shareit.item.controller;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.common.pagination.PageCursor;
 import ru.practicum.shareit.item.dto.*;
 import ru.practicum.shareit.item.service.CommentService;
 import ru.practicum.shareit.item.service.ItemService;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Slf4j
@@ -24,12 +29,13 @@ public class ItemController {
 
     //получение всех вещей
     @GetMapping
-    public List<ItemOutBookedDto> getAllItems(@RequestHeader(HEADER_NAME) Long ownerId,
-                                              @RequestParam(defaultValue = "0") int from,
-                                              @RequestParam(defaultValue = "20") int size) {
+    public ResponseEntity<List<ItemOutBookedDto>> getAllItems(@RequestHeader(HEADER_NAME) Long ownerId,
+                                                              @RequestParam(defaultValue = "0") int from,
+                                                              @RequestParam(defaultValue = "20") int size,
+                                                              @RequestParam(required = false) String cursor) {
         log.info("Запрошено получение всех вещей владельца с идентификатором " + ownerId);
-        PageRequest pageable = PageRequest.of(from / size, size);
-        return itemService.getAllItems(ownerId, pageable);
+        PageCursor page = PageCursor.of(from, size, cursor);
+        return PageCursor.toResponse(itemService.getAllItems(ownerId, page), item -> PageCursor.ofId(item.getId()));
     }
 
     //получение вещи по идентификатору
@@ -39,6 +45,16 @@ public class ItemController {
         return itemService.getItem(itemId, userId);
     }
 
+    //календарь занятости вещи
+    @GetMapping(value = "/{id}/availability")
+    public ItemAvailabilityDto getAvailability(@PathVariable("id") long itemId,
+                                               @RequestParam @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime from,
+                                               @RequestParam @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime to,
+                                               @RequestParam(defaultValue = "HOUR") String granularity) {
+        log.info("Запрошен календарь вещи " + itemId + " с " + from + " по " + to);
+        return itemService.getAvailability(itemId, from, to, granularity);
+    }
+
     /////////////////////////// Создание и обновление ////////////////////////
 
     @PostMapping
@@ -82,11 +98,18 @@ public class ItemController {
     ////////////////////////////////// Поиск /////////////////////////////////
 
     @GetMapping(value = "/search")
-    public List<ItemOutDto> searchItems(@RequestParam(defaultValue = "") String text,
-                                        @RequestParam(defaultValue = "0") int from,
-                                        @RequestParam(defaultValue = "20") int size) {
+    public ResponseEntity<List<ItemOutDto>> searchItems(@RequestParam(defaultValue = "") String text,
+                                                        @RequestParam(defaultValue = "0") int from,
+                                                        @RequestParam(defaultValue = "20") int size,
+                                                        @RequestParam(required = false) String cursor) {
         log.info("Запрошен поиск вещи по образцу.");
-        PageRequest pageable = PageRequest.of(from / size, size);
-        return itemService.searchItems(text, pageable);
+        PageCursor page = PageCursor.of(from, size, cursor);
+        Slice<ItemOutDto> items = itemService.searchItems(text, page);
+        if (itemService.isSearchRanked()) { //следующая страница ранжированной выдачи - по смещению
+            //смещение кратно размеру страницы: вещи, удаленные после поиска, страницу укорачивают
+            long next = page.getPageable().getOffset() + page.getPageable().getPageSize();
+            return PageCursor.toResponse(items, item -> PageCursor.ofOffset(next));
+        }
+        return PageCursor.toResponse(items, item -> PageCursor.ofId(item.getId()));
     }
 }
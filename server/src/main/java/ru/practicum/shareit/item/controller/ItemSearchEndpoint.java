@@ -0,0 +1,43 @@
+package ru.practicum.shareit.item.controller;
+
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.service.ItemSearchCache;
+import ru.practicum.shareit.item.storage.ItemNgramIndex;
+import ru.practicum.shareit.item.storage.ItemSearchIndex;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//Служебная точка actuator: сведения о поисковых индексах вещей (включая оценку памяти)
+//и кэше результатов поиска, перестроение индексов
+@Component
+@Endpoint(id = "itemsearch")
+@AllArgsConstructor(onConstructor_ = @Autowired)
+public class ItemSearchEndpoint {
+    private final ItemSearchIndex searchIndex;
+    private final ItemNgramIndex ngramIndex;
+    private final ItemSearchCache searchCache;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put(ItemSearchIndex.MODE, searchIndex.stats());
+        report.put(ItemNgramIndex.MODE, ngramIndex.stats());
+        report.put("cache", searchCache.stats());
+        return report;
+    }
+
+    //принудительное перестроение включенных индексов
+    @WriteOperation
+    public Map<String, Object> rebuild() {
+        searchIndex.rebuild();
+        ngramIndex.rebuild();
+        searchCache.clear();
+        return stats();
+    }
+}
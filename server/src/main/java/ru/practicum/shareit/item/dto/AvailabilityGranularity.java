@@ -0,0 +1,34 @@
+package ru.practicum.shareit.item.dto;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Optional;
+
+public enum AvailabilityGranularity {
+    // Часовые промежутки
+    HOUR(ChronoUnit.HOURS),
+    // Суточные промежутки
+    DAY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+
+    AvailabilityGranularity(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    //начало промежутка, содержащего заданный момент
+    public LocalDateTime floor(LocalDateTime moment) {
+        return moment.truncatedTo(unit);
+    }
+
+    public LocalDateTime next(LocalDateTime slotStart) {
+        return slotStart.plus(1, unit);
+    }
+
+    public static Optional<AvailabilityGranularity> from(String stringGranularity) {
+        return Arrays.stream(values())
+                .filter(granularity -> granularity.name().equalsIgnoreCase(stringGranularity))
+                .findFirst();
+    }
+}
@@ -4,9 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import ru.practicum.shareit.booking.model.Booking;
-import ru.practicum.shareit.booking.model.Status;
-import ru.practicum.shareit.booking.storage.BookingRepository;
+import ru.practicum.shareit.booking.storage.CommentEligibilityIndex;
 import ru.practicum.shareit.common.exception.BadRequestException;
 import ru.practicum.shareit.common.exception.NotFoundException;
 import ru.practicum.shareit.item.dto.CommentDtoMapper;
@@ -21,7 +19,6 @@ import ru.practicum.shareit.user.storage.UserRepository;
 
 import java.sql.Timestamp;
 import java.time.Instant;
-import java.util.List;
 
 @Slf4j
 @Service
@@ -29,7 +26,7 @@ import java.util.List;
 public class CommentServiceImpl implements CommentService {
     private UserRepository userRepository;
     private final ItemRepository itemRepository;
-    private final BookingRepository bookingRepository;
+    private final CommentEligibilityIndex eligibilityIndex;
     private CommentRepository commentRepository;
 
     @Override
@@ -40,9 +37,8 @@ public class CommentServiceImpl implements CommentService {
         Item item = itemRepository.findById(itemId).orElseThrow(
                 () -> new NotFoundException("Недопустимая вещь с идентификатором " + itemId)
         );
-        List<Booking> bookings = bookingRepository.findByBooker_IdAndEndBeforeAndStatusIs(
-                authorId, Timestamp.from(Instant.now()), Status.APPROVED);
-        if (bookings.isEmpty()) {
+        //проверяется только комментируемая вещь; отказ чаще всего дает фильтр без обращения к базе
+        if (!eligibilityIndex.hasEndedBooking(authorId, itemId, Timestamp.from(Instant.now()))) {
             throw new BadRequestException("Автор " + authorId + "не арендовал вещь или срок аренды не истек.");
         }
         //если все проверки прошли - добавляем комментарий
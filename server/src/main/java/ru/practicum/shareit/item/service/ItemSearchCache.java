@@ -0,0 +1,189 @@
+package ru.practicum.shareit.item.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.common.pagination.PageCursor;
+import ru.practicum.shareit.item.dto.ItemOutDto;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.storage.ItemNgramIndex;
+import ru.practicum.shareit.item.storage.ItemSearchIndex;
+import ru.practicum.shareit.user.event.UserDeletedEvent;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+//Кэш результатов поиска вещей. Ключ - нормализованный образец и позиция страницы;
+//записи одного образца хранятся вместе, а число образцов ограничено (вытесняется
+//давно не запрошенный). Созданная, измененная или удаленная вещь сбрасывает только образцы,
+//выдачу которых она может изменить: при поиске по подстроке - образцы, входящие в название
+//или описание вещи (до или после изменения), при поиске по словам - образцы с общими словами.
+@Component
+public class ItemSearchCache {
+    private final boolean ranked;
+    private final int maxTexts;
+    private final int maxPagesPerText;
+    //образцы в порядке обращения (для вытеснения давно не запрошенных)
+    private final LinkedHashMap<String, TextEntries> texts = new LinkedHashMap<>(16, 0.75f, true);
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter invalidations;
+
+    @Autowired
+    public ItemSearchCache(MeterRegistry meterRegistry,
+                           @Value("${shareit.item.search.mode:like}") String mode,
+                           @Value("${shareit.item.search.cache.max-texts:1000}") int maxTexts,
+                           @Value("${shareit.item.search.cache.max-pages-per-text:16}") int maxPagesPerText) {
+        this.ranked = ItemSearchIndex.MODE.equalsIgnoreCase(mode);
+        this.maxTexts = Math.max(1, maxTexts);
+        this.maxPagesPerText = Math.max(1, maxPagesPerText);
+        this.hits = meterRegistry.counter("shareit.item.search.cache.hits");
+        this.misses = meterRegistry.counter("shareit.item.search.cache.misses");
+        this.evictions = meterRegistry.counter("shareit.item.search.cache.evictions");
+        this.invalidations = meterRegistry.counter("shareit.item.search.cache.invalidations");
+        meterRegistry.gauge("shareit.item.search.cache.hit-ratio", this, cache -> {
+            double total = cache.hits.count() + cache.misses.count();
+            return (total == 0) ? 0.0 : cache.hits.count() / total;
+        });
+        meterRegistry.gauge("shareit.item.search.cache.entries", this, ItemSearchCache::size);
+    }
+
+    public Slice<ItemOutDto> get(String text, PageCursor page, Supplier<Slice<ItemOutDto>> loader) {
+        if (!ranked && !ItemNgramIndex.supports(text)) { //шаблон LIKE нельзя точно сверить с вещью
+            return loader.get();
+        }
+        String key = normalize(text);
+        String pageKey = page.getIdAfter() + ":" + page.getPageable().getOffset()
+                + ":" + page.getPageable().getPageSize();
+        TextEntries entries;
+        synchronized (this) {
+            entries = texts.get(key);
+            if (entries == null) {
+                if (texts.size() >= maxTexts) { //вытесняем давно не запрошенный образец
+                    Iterator<TextEntries> eldest = texts.values().iterator();
+                    evictions.increment(eldest.next().results.size());
+                    eldest.remove();
+                }
+                entries = new TextEntries(key);
+                texts.put(key, entries);
+            }
+        }
+        Slice<ItemOutDto> cached = entries.results.get(pageKey);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        //если за время поиска вещь изменилась, записи образца уже убраны из кэша,
+        //и прочитанный (возможно, устаревший) результат попадет в отброшенный набор
+        Slice<ItemOutDto> result = loader.get();
+        if (entries.results.size() >= maxPagesPerText) { //лишние страницы образца вытесняются
+            evictions.increment(entries.results.size());
+            entries.results.clear();
+        }
+        entries.results.put(pageKey, result);
+        return result;
+    }
+
+    //сброс образцов, выдачу которых может изменить вещь в заданном состоянии
+    public void invalidateMatching(Item item) {
+        invalidateMatching(item.getAvailable(), item.getName(), item.getDescription());
+    }
+
+    //Состояние вещи передается по полям, чтобы его можно было запомнить до изменения.
+    //Недоступная вещь не попадает ни в одну выдачу и ничего не сбрасывает.
+    public void invalidateMatching(Boolean available, String name, String description) {
+        if (!Boolean.TRUE.equals(available)) {
+            return;
+        }
+        String lowerName = (name == null) ? "" : name.toLowerCase(Locale.ROOT);
+        String lowerDescription = (description == null) ? "" : description.toLowerCase(Locale.ROOT);
+        Set<String> words = new HashSet<>();
+        if (ranked) {
+            words.addAll(ItemSearchIndex.tokenize(lowerName));
+            words.addAll(ItemSearchIndex.tokenize(lowerDescription));
+        }
+        synchronized (this) {
+            Iterator<TextEntries> iterator = texts.values().iterator();
+            while (iterator.hasNext()) {
+                TextEntries entries = iterator.next();
+                boolean affected = ranked
+                        ? entries.words.stream().anyMatch(words::contains)
+                        : lowerName.contains(entries.text) || lowerDescription.contains(entries.text);
+                if (affected) {
+                    entries.results.clear();
+                    iterator.remove();
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        texts.values().forEach(entries -> entries.results.clear());
+        texts.clear();
+        invalidations.increment();
+    }
+
+    //тексты удаленных вещей уже недоступны, поэтому сбрасываются все выдачи
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        if (event.isAllUsers() || !event.getItemIds().isEmpty()) {
+            clear();
+        }
+    }
+
+    public synchronized int size() {
+        return texts.values().stream().mapToInt(entries -> entries.results.size()).sum();
+    }
+
+    //сведения о кэше для служебной точки
+    public Map<String, Object> stats() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        synchronized (this) {
+            report.put("texts", texts.size());
+        }
+        report.put("entries", size());
+        report.put("hits", (long) hits.count());
+        report.put("misses", (long) misses.count());
+        report.put("evictions", (long) evictions.count());
+        report.put("invalidations", (long) invalidations.count());
+        return report;
+    }
+
+    /////////////////////////// Вспомогательные методы ///////////////////////
+
+    //Образцы с одинаковой выдачей сводятся к одному ключу: поиск по подстроке не зависит
+    //от регистра, поиск по словам - еще и от порядка и повторов слов.
+    private String normalize(String text) {
+        if (ranked) {
+            return String.join(" ", new TreeSet<>(ItemSearchIndex.tokenize(text)));
+        }
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    //////////////////////////// Записи образца /////////////////////////////
+
+    private final class TextEntries {
+        private final String text;
+        private final Set<String> words;
+        private final Map<String, Slice<ItemOutDto>> results = new ConcurrentHashMap<>();
+
+        TextEntries(String text) {
+            this.text = text;
+            this.words = ranked ? new HashSet<>(ItemSearchIndex.tokenize(text)) : Set.of();
+        }
+    }
+}
@@ -1,16 +1,18 @@
 package ru.practicum.shareit.item.service;
 
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import ru.practicum.shareit.common.pagination.PageCursor;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
 import ru.practicum.shareit.item.dto.ItemOutBookedDto;
 import ru.practicum.shareit.item.dto.ItemInDto;
 import ru.practicum.shareit.item.dto.ItemOutDto;
 
-import java.util.List;
+import java.time.LocalDateTime;
 
 public interface ItemService {
     ItemOutBookedDto getItem(long itemId, long userId);
 
-    List<ItemOutBookedDto> getAllItems(Long ownerId, Pageable pageable);
+    Slice<ItemOutBookedDto> getAllItems(Long ownerId, PageCursor page);
 
     ItemOutDto createItem(Long ownerId, ItemInDto itemInDto);
 
@@ -20,5 +22,10 @@ public interface ItemService {
 
     void deleteAllItems();
 
-    List<ItemOutDto> searchItems(String sample, Pageable pageable);
+    Slice<ItemOutDto> searchItems(String sample, PageCursor page);
+
+    //упорядочен ли поиск по релевантности (тогда страницы задаются смещением, а не идентификатором)
+    boolean isSearchRanked();
+
+    ItemAvailabilityDto getAvailability(long itemId, LocalDateTime from, LocalDateTime to, String granularity);
 }
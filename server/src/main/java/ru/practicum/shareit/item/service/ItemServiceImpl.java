@@ -4,18 +4,28 @@ import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
 import ru.practicum.shareit.booking.dto.BookingDtoMapper;
-import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.service.BookingQueryCache;
+import ru.practicum.shareit.booking.storage.BookingCounters;
+import ru.practicum.shareit.booking.storage.BookingHolds;
+import ru.practicum.shareit.booking.storage.BookingIntervalIndex;
+import ru.practicum.shareit.booking.storage.CommentEligibilityIndex;
 import ru.practicum.shareit.common.convert.ListConverter;
 import ru.practicum.shareit.common.exception.BadRequestException;
 import ru.practicum.shareit.common.exception.ForbiddenException;
 import ru.practicum.shareit.common.exception.NotFoundException;
+import ru.practicum.shareit.common.pagination.PageCursor;
 import ru.practicum.shareit.item.dto.*;
 import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.storage.CommentRepository;
+import ru.practicum.shareit.item.storage.ItemBookingPointers;
+import ru.practicum.shareit.item.storage.ItemNgramIndex;
 import ru.practicum.shareit.item.storage.ItemRepository;
+import ru.practicum.shareit.item.storage.ItemSearchIndex;
 import ru.practicum.shareit.request.model.ItemRequest;
 import ru.practicum.shareit.request.storage.ItemRequestRepository;
 import ru.practicum.shareit.user.model.User;
@@ -23,19 +33,36 @@ import ru.practicum.shareit.user.storage.UserRepository;
 
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @AllArgsConstructor(onConstructor_ = @Autowired)
 public class ItemServiceImpl implements ItemService {
+    //наибольшее число промежутков в одном ответе календаря
+    private static final int MAX_AVAILABILITY_SLOTS = 1000;
     private final ItemRepository itemRepository;
     private final UserRepository userRepository;
     private final CommentRepository commentRepository;
     private final ItemRequestRepository requestRepository;
+    private final BookingIntervalIndex intervalIndex;
+    private final BookingCounters bookingCounters;
+    private final BookingQueryCache queryCache;
+    private final CommentEligibilityIndex eligibilityIndex;
+    private final BookingHolds holds;
+    private final ItemSearchIndex searchIndex;
+    private final ItemNgramIndex ngramIndex;
+    private final ItemSearchCache searchCache;
+    private final ItemBookingPointers bookingPointers;
 
     ////////////////////////////////// CRUD //////////////////////////////////
 
@@ -49,13 +76,9 @@ public class ItemServiceImpl implements ItemService {
         itemDto.setLastBooking(null);
         itemDto.setNextBooking(null);
         if (userId == item.getOwner().getId()) { //ищем их только для владельца
-            List<Booking> lastBookings = itemRepository.getLastBookingOfItem(itemId, now);
-            if (!lastBookings.isEmpty()) {
-                itemDto.setLastBooking(BookingDtoMapper.toBookingDto(lastBookings.get(0)));
-            }
-            List<Booking> nextBookings = itemRepository.getNextBookingOfItem(itemId, now);
-            if (!nextBookings.isEmpty()) {
-                itemDto.setNextBooking(BookingDtoMapper.toBookingDto(nextBookings.get(0)));
+            ItemBookingPointers.LastAndNext bookings = bookingPointers.find(List.of(itemId), now).get(itemId);
+            if (bookings != null) {
+                setBookings(itemDto, bookings);
             }
         }
         itemDto.setComments(CommentDtoMapper.listToCommentDto(commentRepository.findByItem_Id(itemId)));
@@ -63,33 +86,29 @@ public class ItemServiceImpl implements ItemService {
     }
 
     @Override
-    public List<ItemOutBookedDto> getAllItems(Long ownerId, Pageable pageable) {
+    public Slice<ItemOutBookedDto> getAllItems(Long ownerId, PageCursor page) {
         if (!userRepository.existsById(ownerId)) { //владелец некорректный
             throw new NotFoundException("Недопустимый владелец с идентификатором " + ownerId);
         }
         Timestamp now = Timestamp.from(Instant.now());
         //создаем выходной массив вещей
         List<ItemOutBookedDto> itemsDto = new ArrayList<>();
-        //создаем отображение вещей в список комментариев
-        Map<Item, List<Comment>> allComments = ListConverter.keyToValues(
-                itemRepository.getAllCommentsByOwner(ownerId));
-        //создаем отображения вещей в бронирования
-        Map<Item, Booking> lastMap = ListConverter.keyToValue(
-                itemRepository.getAllLastBookingsByOwner(ownerId, now));
-        Map<Item, Booking> nextMap = ListConverter.keyToValue(
-                itemRepository.getAllNextBookingsByOwner(ownerId, now));
-        //получаем порцию списка всех вещей владельца
-        List<Item> items = new ArrayList<>(itemRepository.findByOwner_Id(ownerId, pageable).getContent());
-        items.sort(Comparator.comparingInt(i -> i.getId().intValue()));
+        //сначала получаем порцию списка всех вещей владельца (упорядочена по идентификатору),
+        //а отзывы и бронирования читаем только для вещей этой порции
+        Slice<Item> items = itemRepository.findByOwnerAfter(ownerId, page.getIdAfter(), page.getPageable());
+        List<Long> itemIds = items.stream().map(Item::getId).collect(Collectors.toList());
+        Map<Item, List<Comment>> allComments = new HashMap<>();
+        if (!itemIds.isEmpty()) {
+            //создаем отображение вещей в список комментариев
+            allComments = ListConverter.keyToValues(itemRepository.getAllCommentsOfItems(itemIds));
+        }
+        //последние и ближайшие бронирования вещей порции (по идентификаторам вещей)
+        Map<Long, ItemBookingPointers.LastAndNext> bookings = bookingPointers.find(itemIds, now);
         //заполняем выходной массив
         for (Item item : items) {
             ItemOutBookedDto itemDto = ItemDtoMapper.toItemOutBookedDto(item);
-            //в отображениях вещи сравниваются с ключами по идентификаторам
-            if (lastMap.containsKey(item)) {
-                itemDto.setLastBooking(BookingDtoMapper.toBookingDto(lastMap.get(item)));
-            }
-            if (nextMap.containsKey(item)) {
-                itemDto.setNextBooking(BookingDtoMapper.toBookingDto(nextMap.get(item)));
+            if (bookings.containsKey(item.getId())) {
+                setBookings(itemDto, bookings.get(item.getId()));
             }
             if (allComments.containsKey(item)) {
                 itemDto.setComments(CommentDtoMapper.listToCommentDto(allComments.get(item)));
@@ -99,7 +118,17 @@ public class ItemServiceImpl implements ItemService {
             itemsDto.add(itemDto);
         }
         log.info("Получен список всех вещей пользователя " + ownerId);
-        return itemsDto;
+        return new SliceImpl<>(itemsDto, items.getPageable(), items.hasNext());
+    }
+
+    //последнее и ближайшее бронирования вещи (любое может отсутствовать)
+    private static void setBookings(ItemOutBookedDto itemDto, ItemBookingPointers.LastAndNext bookings) {
+        if (bookings.getLast() != null) {
+            itemDto.setLastBooking(BookingDtoMapper.toBookingDto(bookings.getLast()));
+        }
+        if (bookings.getNext() != null) {
+            itemDto.setNextBooking(BookingDtoMapper.toBookingDto(bookings.getNext()));
+        }
     }
 
     @Override
@@ -119,6 +148,9 @@ public class ItemServiceImpl implements ItemService {
         }
         //создаем новую вещь (запрос может быть пустым)
         Item item = itemRepository.save(ItemDtoMapper.toItem(owner, request, itemInDto));
+        searchIndex.put(item);
+        ngramIndex.put(item);
+        searchCache.invalidateMatching(item);
         log.info("Создана новая вещь с идентификатором " + item.getId());
         return ItemDtoMapper.toItemOutDto(item);
     }
@@ -136,6 +168,10 @@ public class ItemServiceImpl implements ItemService {
         if (!oldItem.getOwner().equals(owner)) { //вещь пытается редактировать не владелец
             throw new ForbiddenException("Пользователь " + ownerId + " не может редактировать эту вещь.");
         }
+        //запоминаем прежнее состояние: выдачи, где вещь была, тоже меняются
+        Boolean oldAvailable = oldItem.getAvailable();
+        String oldName = oldItem.getName();
+        String oldDescription = oldItem.getDescription();
         //если все корректно - переустанавливаем поля
         String name = itemInDto.getName();
         if ((name != null) && !name.isBlank()) {
@@ -149,14 +185,27 @@ public class ItemServiceImpl implements ItemService {
         if (available != null) {
             oldItem.setAvailable(available);
         }
-        log.info("Обновлена вещь с идентификатором " + oldItem.getId());
-        return ItemDtoMapper.toItemOutDto(itemRepository.save(oldItem));
+        Item item = itemRepository.save(oldItem);
+        searchIndex.put(item);
+        ngramIndex.put(item);
+        searchCache.invalidateMatching(oldAvailable, oldName, oldDescription);
+        searchCache.invalidateMatching(item);
+        log.info("Обновлена вещь с идентификатором " + item.getId());
+        return ItemDtoMapper.toItemOutDto(item);
     }
 
     @Override
     public void deleteItem(long id) {
-        if (itemRepository.existsById(id)) {
+        Optional<Item> item = itemRepository.findById(id);
+        if (item.isPresent()) {
             itemRepository.deleteById(id);
+            intervalIndex.removeItem(id); //бронирования вещи удаляются каскадно
+            holds.removeItem(id);
+            searchIndex.remove(id);
+            ngramIndex.remove(id);
+            searchCache.invalidateMatching(item.get());
+            bookingCounters.clear();
+            queryCache.clear();
             log.info("Удалена вещь с идентификатором " + id);
         } else {
             log.warn("Вещь с идентификатором " + id + "не найдена.");
@@ -167,17 +216,126 @@ public class ItemServiceImpl implements ItemService {
     public void deleteAllItems() {
         long count = itemRepository.count();
         itemRepository.deleteAll();
+        intervalIndex.clear();
+        bookingCounters.clear();
+        queryCache.clear();
+        eligibilityIndex.clear();
+        holds.clear();
+        searchIndex.clear();
+        ngramIndex.clear();
+        searchCache.clear();
         log.info("Удалено " + count + " вещей.");
     }
 
     @Override
-    public List<ItemOutDto> searchItems(String text, Pageable pageable) {
+    public Slice<ItemOutDto> searchItems(String text, PageCursor page) {
         if (text.isBlank()) { //образец поиска не задан
-            return new ArrayList<>(); //так требует Postman, хотя это странно
+            return new SliceImpl<>(new ArrayList<>()); //так требует Postman, хотя это странно
+        }
+        return searchCache.get(text, page, () -> loadSearch(text, page));
+    }
+
+    private Slice<ItemOutDto> loadSearch(String text, PageCursor page) {
+        if (searchIndex.isEnabled()) { //ранжированный поиск по словам (страницы - по смещению)
+            return searchRanked(text, page.getPageable());
+        } else if (ngramIndex.isEnabled() && ItemNgramIndex.supports(text)) { //та же выдача, что и у запроса
+            Pageable pageable = page.getPageable();
+            return toPage(ngramIndex.search(text, page.getIdAfter(), pageable.getOffset(),
+                    pageable.getPageSize() + 1), pageable);
         } else { //получаем порцию данных
-            return itemRepository.searchItems(text, pageable)
-                    .map(ItemDtoMapper::toItemOutDto)
-                    .getContent();
+            return itemRepository.searchItems(text, page.getIdAfter(), page.getPageable())
+                    .map(ItemDtoMapper::toItemOutDto);
+        }
+    }
+
+    @Override
+    public boolean isSearchRanked() {
+        return searchIndex.isEnabled();
+    }
+
+    //страница найденных индексом вещей в порядке убывания оценки
+    private Slice<ItemOutDto> searchRanked(String text, Pageable pageable) {
+        return toPage(searchIndex.search(text, pageable.getOffset(), pageable.getPageSize() + 1), pageable);
+    }
+
+    //страница вещей в порядке найденных индексом идентификаторов (лишний идентификатор - признак продолжения)
+    private Slice<ItemOutDto> toPage(List<Long> ids, Pageable pageable) {
+        boolean hasNext = ids.size() > pageable.getPageSize();
+        if (hasNext) {
+            ids = ids.subList(0, pageable.getPageSize());
+        }
+        Map<Long, Item> items = itemRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+        List<ItemOutDto> content = ids.stream()
+                .map(items::get)
+                .filter(Objects::nonNull) //вещь могли удалить после поиска
+                .map(ItemDtoMapper::toItemOutDto)
+                .collect(Collectors.toList());
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    ///////////////////////////// Календарь занятости ////////////////////////
+
+    @Override
+    public ItemAvailabilityDto getAvailability(long itemId, LocalDateTime from, LocalDateTime to,
+                                               String granularityParam) {
+        AvailabilityGranularity granularity = AvailabilityGranularity.from(granularityParam)
+                .orElseThrow(() -> new BadRequestException("Unknown granularity: " + granularityParam));
+        if (!to.isAfter(from)) {
+            throw new BadRequestException("Неверные границы календаря");
+        }
+        //вещь с подтвержденными бронированиями есть в индексе, и в базу обращаться не нужно
+        if (!intervalIndex.containsItem(itemId) && !itemRepository.existsById(itemId)) {
+            throw new NotFoundException("Вещь с идентификатором " + itemId + " не найдена.");
+        }
+        //границы промежутков (в микросекундах, как ключи индекса)
+        List<LocalDateTime> bounds = new ArrayList<>();
+        for (LocalDateTime moment = granularity.floor(from); ; moment = granularity.next(moment)) {
+            bounds.add(moment);
+            if (!moment.isBefore(to)) {
+                break;
+            }
+            if (bounds.size() > MAX_AVAILABILITY_SLOTS) {
+                throw new BadRequestException("Календарь не может содержать более "
+                        + MAX_AVAILABILITY_SLOTS + " промежутков");
+            }
+        }
+        long[] keys = new long[bounds.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = BookingIntervalIndex.toKey(Timestamp.valueOf(bounds.get(i)));
+        }
+        int slotCount = keys.length - 1;
+        //отмечаем занятые промежутки
+        BitSet busy = new BitSet(slotCount);
+        List<long[]> intervals = intervalIndex.findOverlapping(itemId,
+                Timestamp.valueOf(bounds.get(0)), Timestamp.valueOf(bounds.get(slotCount)));
+        for (long[] interval : intervals) {
+            int first = Math.max(0, countBoundsBefore(keys, interval[0] + 1) - 1); //промежуток, где начало
+            int last = Math.min(slotCount, countBoundsBefore(keys, interval[1])); //первый после конца
+            if (first < last) {
+                busy.set(first, last);
+            }
+        }
+        List<AvailabilitySlotDto> slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(new AvailabilitySlotDto(bounds.get(i), bounds.get(i + 1), !busy.get(i)));
+        }
+        log.info("Построен календарь вещи " + itemId + " из " + slotCount + " промежутков");
+        return new ItemAvailabilityDto(itemId, granularity, bounds.get(0), bounds.get(slotCount), slots);
+    }
+
+    //число границ, строго меньших заданного момента
+    private static int countBoundsBefore(long[] keys, long moment) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < moment) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
         }
+        return low;
     }
 }
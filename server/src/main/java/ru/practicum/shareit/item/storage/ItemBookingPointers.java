@@ -0,0 +1,350 @@
+package ru.practicum.shareit.item.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.event.BookingEvent;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.storage.BookingRepository;
+import ru.practicum.shareit.common.convert.PairToReturn;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.event.UserDeletedEvent;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+//Заранее вычисленные последнее и ближайшее бронирования вещей (таблица item_booking_pointers).
+//Указатели вычисляются теми же запросами, что и раньше при каждом чтении, и остаются верными
+//до ближайшего начала брони вещи (refresh_at): только начало брони переводит ее из будущих в прошлые.
+//Таблицу пишет только фоновый проход: событие брони лишь отмечает вещь, а проход порциями
+//пересчитывает отмеченные вещи и строки с наступившим refresh_at. Чтение ничего не пишет:
+//для отмеченных вещей, просроченных и отсутствующих строк ответ дают прежние запросы
+//(отсутствующая или просроченная строка при этом отмечается для пересчета).
+//При запуске и после изменения броней в обход событий таблица перестраивается целиком;
+//до окончания перестройки чтение обходится прежними запросами.
+//Режимы: subquery - указатели не используются (прежние запросы при каждом чтении),
+//pointers - чтение указателей, verify - чтение указателей со сверкой по запросам (ответ - по запросам).
+@Slf4j
+@Component
+public class ItemBookingPointers {
+    public static final String MODE_SUBQUERY = "subquery";
+    public static final String MODE_VERIFY = "verify";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ItemRepository itemRepository;
+    private final BookingRepository bookingRepository;
+    private final boolean enabled;
+    private final boolean verifying;
+    private final int batchSize;
+    private final Counter refreshed;
+    private final Counter mismatches;
+    //вещи, указатели которых надо пересчитать
+    private final Set<Long> dirtyItems = ConcurrentHashMap.newKeySet();
+    //вещи, пересчитываемые текущим проходом (для чтения они тоже неверны до записи)
+    private final Set<Long> refreshingItems = ConcurrentHashMap.newKeySet();
+    //номер запрошенной перестройки таблицы и номер последней выполненной
+    private final AtomicLong rebuildRequested = new AtomicLong(1);
+    private volatile long rebuilt;
+
+    @Autowired
+    public ItemBookingPointers(JdbcTemplate jdbcTemplate,
+                               ItemRepository itemRepository,
+                               BookingRepository bookingRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${shareit.item.booking-pointers.mode:pointers}") String mode,
+                               @Value("${shareit.item.booking-pointers.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.itemRepository = itemRepository;
+        this.bookingRepository = bookingRepository;
+        this.enabled = !MODE_SUBQUERY.equalsIgnoreCase(mode);
+        this.verifying = MODE_VERIFY.equalsIgnoreCase(mode);
+        this.batchSize = Math.max(1, batchSize);
+        this.refreshed = meterRegistry.counter("shareit.item.booking-pointers.refreshed");
+        this.mismatches = meterRegistry.counter("shareit.item.booking-pointers.mismatches");
+        meterRegistry.gauge("shareit.item.booking-pointers.pending-items", dirtyItems, Set::size);
+    }
+
+    ////////////////////////////////// Чтение ////////////////////////////////
+
+    //последнее и ближайшее бронирования вещей на момент now (вещи без бронирований не попадают)
+    public Map<Long, LastAndNext> find(Collection<Long> itemIds, Timestamp now) {
+        if (itemIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        if (!enabled || (rebuilt != rebuildRequested.get())) { //таблица еще не перестроена
+            return query(itemIds, now);
+        }
+        Map<Long, LastAndNext> result = read(itemIds, now);
+        if (verifying) {
+            Map<Long, LastAndNext> expected = query(itemIds, now);
+            verify(itemIds, result, expected);
+            return expected;
+        }
+        return result;
+    }
+
+    ////////////////////////////// Обновление указателей /////////////////////
+
+    //Прежние запросы учитывают даты броней любых статусов, поэтому указатели меняет любое
+    //событие. В потоке запроса вещь только отмечается - пересчет выполнит фоновый проход.
+    @EventListener
+    public void onBookingEvent(BookingEvent event) {
+        if (enabled) {
+            dirtyItems.add(event.getItemId());
+        }
+    }
+
+    //Строки вещей удаленного пользователя удалены каскадно, а у вещей, которые он бронировал,
+    //указатели могли ссылаться на его брони. После удаления всех пользователей таблица пуста.
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (event.isAllUsers()) {
+            requestRebuild();
+        } else {
+            dirtyItems.addAll(event.getBookedItems().values());
+        }
+    }
+
+    //брони изменены в обход событий - таблица будет перестроена следующим проходом
+    public void requestRebuild() {
+        rebuildRequested.incrementAndGet();
+    }
+
+    //Пересчет отмеченных вещей порциями (при необходимости сначала - перестройка таблицы).
+    //Проходы выполняются по одному, поэтому более ранний пересчет не перезапишет более поздний.
+    @Scheduled(fixedDelayString = "${shareit.item.booking-pointers.refresh-ms:1000}")
+    public synchronized void refreshDirty() {
+        if (!enabled) {
+            return;
+        }
+        long requested = rebuildRequested.get();
+        if (rebuilt != requested) {
+            rebuild();
+            rebuilt = requested; //перестройку, запрошенную во время прохода, выполнит следующий проход
+        }
+        //вещи, отмеченные во время прохода, ждут следующего прохода
+        int batches = (dirtyItems.size() + batchSize - 1) / batchSize;
+        for (int i = 0; i < batches; i++) {
+            List<Long> itemIds = new ArrayList<>();
+            Iterator<Long> iterator = dirtyItems.iterator();
+            while (iterator.hasNext() && (itemIds.size() < batchSize)) {
+                Long itemId = iterator.next();
+                refreshingItems.add(itemId);
+                iterator.remove();
+                itemIds.add(itemId);
+            }
+            if (itemIds.isEmpty()) {
+                break;
+            }
+            try {
+                refresh(itemIds, Timestamp.from(Instant.now()));
+            } catch (RuntimeException e) {
+                dirtyItems.addAll(itemIds); //порция повторится в следующем проходе
+                throw e;
+            } finally {
+                refreshingItems.removeAll(itemIds);
+            }
+        }
+    }
+
+    //пересчет указателей, у которых наступило ближайшее начало брони
+    @Scheduled(fixedDelayString = "${shareit.item.booking-pointers.roll-ms:60000}")
+    public synchronized void rollForward() {
+        if (!enabled || (rebuilt != rebuildRequested.get())) { //перестройка пересчитает все строки
+            return;
+        }
+        Timestamp now = Timestamp.from(Instant.now());
+        int total = 0;
+        List<Long> itemIds;
+        do {
+            itemIds = jdbcTemplate.queryForList("select item_id from item_booking_pointers " +
+                    "where refresh_at <= ? order by refresh_at limit ?", Long.class, now, batchSize);
+            if (!itemIds.isEmpty()) {
+                refresh(itemIds, now);
+                total += itemIds.size();
+            }
+        } while (itemIds.size() == batchSize);
+        if (total > 0) {
+            log.info("Пересчитаны указатели бронирований вещей: " + total);
+        }
+    }
+
+    /////////////////////////// Вспомогательные методы ///////////////////////
+
+    //Пересчет указателей всех вещей порциями по возрастанию идентификатора. Строки удаленных
+    //вещей удаляются каскадно, поэтому достаточно перезаписать строки существующих вещей.
+    private void rebuild() {
+        long started = System.nanoTime();
+        long lastId = 0;
+        int total = 0;
+        List<Long> itemIds;
+        do {
+            itemIds = jdbcTemplate.queryForList("select id from items where id > ? order by id limit ?",
+                    Long.class, lastId, batchSize);
+            if (!itemIds.isEmpty()) {
+                refresh(itemIds, Timestamp.from(Instant.now()));
+                lastId = itemIds.get(itemIds.size() - 1);
+                total += itemIds.size();
+            }
+        } while (itemIds.size() == batchSize);
+        log.info("Перестроены указатели бронирований вещей: " + total + " вещей за "
+                + (System.nanoTime() - started) / 1_000_000 + " мс.");
+    }
+
+    //чтение указателей; для отмеченных вещей, просроченных и неполных строк - прежние запросы
+    private Map<Long, LastAndNext> read(Collection<Long> itemIds, Timestamp now) {
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(itemIds));
+        //Отметки считываются до чтения строк: строка, записанная проходом после этого момента,
+        //уже не старше отметки, а событие после него упорядочено после самого чтения.
+        Set<Long> pending = ids.stream()
+                .filter(id -> dirtyItems.contains(id) || refreshingItems.contains(id))
+                .collect(Collectors.toSet());
+        Map<Long, long[]> rows = new HashMap<>();
+        jdbcTemplate.query("select item_id, last_booking_id, next_booking_id, refresh_at " +
+                        "from item_booking_pointers where item_id in (" + placeholders(ids.size()) + ")",
+                rs -> {
+                    Timestamp refreshAt = rs.getTimestamp("refresh_at");
+                    if ((refreshAt == null) || refreshAt.after(now)) { //строка еще верна
+                        rows.put(rs.getLong("item_id"),
+                                new long[]{rs.getLong("last_booking_id"), rs.getLong("next_booking_id")});
+                    }
+                }, ids.toArray());
+        //бронирования, на которые указывают строки, читаются одним запросом
+        Set<Long> bookingIds = new HashSet<>();
+        for (long[] row : rows.values()) {
+            Arrays.stream(row).filter(id -> id != 0).forEach(bookingIds::add);
+        }
+        Map<Long, Booking> bookings = bookingIds.isEmpty() ? Map.of()
+                : bookingRepository.findAllWithItemsByIdIn(bookingIds).stream()
+                .collect(Collectors.toMap(Booking::getId, Function.identity()));
+        Map<Long, LastAndNext> result = new HashMap<>();
+        List<Long> stale = new ArrayList<>();
+        for (Long itemId : ids) {
+            long[] row = rows.get(itemId);
+            if (pending.contains(itemId)) { //пересчет еще не записан
+                stale.add(itemId);
+            } else if ((row == null) || ((row[0] != 0) && !bookings.containsKey(row[0]))
+                    || ((row[1] != 0) && !bookings.containsKey(row[1]))) { //нет строки или бронь удалена
+                stale.add(itemId);
+                dirtyItems.add(itemId);
+            } else if ((row[0] != 0) || (row[1] != 0)) {
+                result.put(itemId, new LastAndNext(bookings.get(row[0]), bookings.get(row[1])));
+            }
+        }
+        if (!stale.isEmpty()) {
+            result.putAll(query(stale, now));
+        }
+        return result;
+    }
+
+    //Пересчет и запись указателей порции вещей. Вызывается только из фоновых проходов, которые
+    //выполняются по одному, поэтому запись не обгоняет более поздний пересчет той же вещи.
+    private void refresh(List<Long> itemIds, Timestamp now) {
+        Map<Long, LastAndNext> computed = query(itemIds, now);
+        Map<Long, Timestamp> refreshAt = itemRepository.getNextStartsOfItems(itemIds, now).stream()
+                .collect(Collectors.toMap(ItemBookingStart::getItemId, ItemBookingStart::getNextStart));
+        List<Object[]> args = new ArrayList<>();
+        for (Long itemId : itemIds) {
+            LastAndNext bookings = computed.get(itemId);
+            Booking last = (bookings == null) ? null : bookings.getLast();
+            Booking next = (bookings == null) ? null : bookings.getNext();
+            args.add(new Object[]{itemId, (last == null) ? null : last.getId(), (next == null) ? null : next.getId(),
+                    refreshAt.get(itemId), itemId});
+        }
+        //вещь могли удалить параллельно - строку для нее не создаем
+        jdbcTemplate.batchUpdate("insert into item_booking_pointers " +
+                "(item_id, last_booking_id, next_booking_id, refresh_at) " +
+                "select cast(? as bigint), cast(? as bigint), cast(? as bigint), cast(? as timestamp) " +
+                "where exists (select 1 from items where id = ?) " +
+                "on conflict (item_id) do update set last_booking_id = excluded.last_booking_id, " +
+                "next_booking_id = excluded.next_booking_id, refresh_at = excluded.refresh_at", args);
+        refreshed.increment(itemIds.size());
+    }
+
+    //последнее и ближайшее бронирования по прежним запросам
+    private Map<Long, LastAndNext> query(Collection<Long> itemIds, Timestamp now) {
+        Map<Long, LastAndNext> result = new HashMap<>();
+        for (PairToReturn<Item, Booking> pair : itemRepository.getLastBookingsOfItems(itemIds, now)) {
+            result.computeIfAbsent(pair.getKey().getId(), id -> new LastAndNext()).last = pair.getValue();
+        }
+        for (PairToReturn<Item, Booking> pair : itemRepository.getNextBookingsOfItems(itemIds, now)) {
+            result.computeIfAbsent(pair.getKey().getId(), id -> new LastAndNext()).next = pair.getValue();
+        }
+        return result;
+    }
+
+    //Сверка указателей с прежними запросами. Равные по дате брони взаимозаменяемы,
+    //поэтому последние брони сравниваются по концу, ближайшие - по началу.
+    private void verify(Collection<Long> itemIds, Map<Long, LastAndNext> actual, Map<Long, LastAndNext> expected) {
+        for (Long itemId : new LinkedHashSet<>(itemIds)) {
+            LastAndNext pointed = actual.getOrDefault(itemId, new LastAndNext());
+            LastAndNext queried = expected.getOrDefault(itemId, new LastAndNext());
+            if (!sameTime(pointed.last, queried.last, Booking::getEnd)
+                    || !sameTime(pointed.next, queried.next, Booking::getStart)) {
+                mismatches.increment();
+                dirtyItems.add(itemId);
+                log.warn("Указатели бронирований вещи " + itemId + " расходятся с запросом: "
+                        + pointed + " вместо " + queried);
+            }
+        }
+    }
+
+    private static boolean sameTime(Booking first, Booking second, Function<Booking, Timestamp> time) {
+        if ((first == null) || (second == null)) {
+            return first == second;
+        }
+        return time.apply(first).equals(time.apply(second));
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    ///////////////////////////// Вложенные классы ///////////////////////////
+
+    //последнее и ближайшее бронирования вещи (любое может отсутствовать)
+    @Getter
+    public static final class LastAndNext {
+        private Booking last;
+        private Booking next;
+
+        LastAndNext() {
+        }
+
+        LastAndNext(Booking last, Booking next) {
+            this.last = last;
+            this.next = next;
+        }
+
+        @Override
+        public String toString() {
+            return "{last=" + ((last == null) ? null : last.getId())
+                    + ", next=" + ((next == null) ? null : next.getId()) + "}";
+        }
+    }
+}
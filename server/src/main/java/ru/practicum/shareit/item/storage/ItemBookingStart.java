@@ -0,0 +1,10 @@
+package ru.practicum.shareit.item.storage;
+
+import java.sql.Timestamp;
+
+//Проекция: ближайшее начало бронирования вещи
+public interface ItemBookingStart {
+    Long getItemId();
+
+    Timestamp getNextStart();
+}
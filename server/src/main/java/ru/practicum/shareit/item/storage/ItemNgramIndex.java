@@ -0,0 +1,373 @@
+package ru.practicum.shareit.item.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.event.UserDeletedEvent;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+//Индекс триграмм доступных вещей для поиска по подстроке с той же семантикой, что и
+//запрос ItemRepository.searchItems: подстрока ищется в названии или описании без учета регистра,
+//результаты идут по возрастанию id. Для каждой триграммы названия и описания (в нижнем регистре)
+//хранится список номеров документов по возрастанию; пересечение списков триграмм образца
+//дает кандидатов, и каждый кандидат проверяется прямым поиском подстроки.
+@Slf4j
+@Component
+public class ItemNgramIndex {
+    public static final String MODE = "ngram";
+    private static final int N = 3;
+    //оценки размера объектов в байтах (64-битная JVM со сжатыми ссылками)
+    private static final long OBJECT_BYTES = 16;
+    private static final long MAP_ENTRY_BYTES = 48;
+
+    private final ItemRepository itemRepository;
+    private final boolean enabled;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    //списки документов по триграммам (три символа, упакованные в long)
+    private Map<Long, Postings> grams = new HashMap<>();
+    //номер документа по идентификатору вещи
+    private Map<Long, Integer> docsById = new HashMap<>();
+    //данные документов по номерам: вещь и ее тексты в нижнем регистре
+    private long[] docIds = new long[0];
+    private String[] docNames = new String[0];
+    private String[] docDescriptions = new String[0];
+    private int docSlots;
+    private int[] freeSlots = new int[0];
+    private int freeCount;
+
+    @Autowired
+    public ItemNgramIndex(ItemRepository itemRepository,
+                          @Value("${shareit.item.search.mode:like}") String mode) {
+        this.itemRepository = itemRepository;
+        this.enabled = MODE.equalsIgnoreCase(mode);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //Образцы со знаками '%', '_' и '\' в запросе LIKE работают как шаблоны, а не как подстроки;
+    //такие образцы индекс не обслуживает, и поиск идет через базу.
+    public static boolean supports(String text) {
+        return (text.indexOf('%') < 0) && (text.indexOf('_') < 0) && (text.indexOf('\\') < 0);
+    }
+
+    ////////////////////////////////// Поиск /////////////////////////////////
+
+    //Идентификаторы вещей с id больше idAfter, в названии или описании которых есть образец,
+    //по возрастанию id: не больше limit штук, начиная с позиции offset.
+    public List<Long> search(String text, long idAfter, long offset, int limit) {
+        String sample = text.toLowerCase(Locale.ROOT);
+        long wanted = offset + limit;
+        List<Long> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            long[] candidates = candidates(sample, idAfter);
+            Arrays.sort(candidates);
+            long found = 0;
+            for (int i = 0; (i < candidates.length) && (found < wanted); i++) {
+                int doc = docsById.get(candidates[i]);
+                if (docNames[doc].contains(sample)
+                        || ((docDescriptions[doc] != null) && docDescriptions[doc].contains(sample))) {
+                    if (found++ >= offset) {
+                        result.add(candidates[i]);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    //идентификаторы вещей (больше idAfter), содержащих все триграммы образца; вызывается под блокировкой
+    private long[] candidates(String sample, long idAfter) {
+        long[] keys = gramsOf(sample);
+        int[] docs;
+        int size;
+        if (keys.length == 0) { //образец короче триграммы - проверяются все документы
+            docs = new int[docsById.size()];
+            size = 0;
+            for (int doc : docsById.values()) {
+                docs[size++] = doc;
+            }
+        } else {
+            //пересечение начинается с самого короткого списка
+            Postings[] lists = new Postings[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                lists[i] = grams.get(keys[i]);
+                if (lists[i] == null) {
+                    return new long[0];
+                }
+            }
+            Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+            docs = Arrays.copyOf(lists[0].docs, lists[0].size);
+            size = docs.length;
+            for (int i = 1; (i < lists.length) && (size > 0); i++) {
+                size = lists[i].retain(docs, size);
+            }
+        }
+        long[] result = new long[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            long id = docIds[docs[i]];
+            if (id > idAfter) {
+                result[count++] = id;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    ////////////////////////////// Обновление индекса ////////////////////////
+
+    //вещь создана или изменена: доступная вещь (пере)индексируется, недоступная удаляется
+    public void put(Item item) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeDoc(item.getId());
+            if (Boolean.TRUE.equals(item.getAvailable())) {
+                addDoc(item.getId(), item.getName(), item.getDescription());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //вещь удалена
+    public void remove(Long itemId) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeDoc(itemId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            reset(0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //вещи удаленного пользователя
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        if (event.isAllUsers()) {
+            clear();
+        } else {
+            event.getItemIds().forEach(this::remove);
+        }
+    }
+
+    //полное построение индекса по таблице вещей
+    @PostConstruct
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        List<ItemText> texts = itemRepository.findAvailableTexts();
+        lock.writeLock().lock();
+        try {
+            reset(texts.size());
+            for (ItemText text : texts) {
+                addDoc(text.getId(), text.getName(), text.getDescription());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Построен индекс триграмм вещей: " + texts.size() + " вещей, " + grams.size() + " триграмм.");
+    }
+
+    //Сведения об индексе с оценкой занимаемой памяти: тексты документов, списки документов
+    //(по емкости массивов) и записи словаря триграмм.
+    public Map<String, Object> stats() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("enabled", enabled);
+        lock.readLock().lock();
+        try {
+            long textBytes = 0;
+            for (int doc : docsById.values()) {
+                textBytes += stringBytes(docNames[doc]) + stringBytes(docDescriptions[doc]);
+            }
+            long postingBytes = 0;
+            long postings = 0;
+            for (Postings list : grams.values()) {
+                postings += list.size;
+                postingBytes += MAP_ENTRY_BYTES + 2 * OBJECT_BYTES + 4L * list.docs.length;
+            }
+            long slotBytes = (long) docIds.length * (8 + 4 + 4) + MAP_ENTRY_BYTES * docsById.size();
+            long totalBytes = textBytes + postingBytes + slotBytes;
+            int items = docsById.size();
+            report.put("items", items);
+            report.put("trigrams", grams.size());
+            report.put("postings", postings);
+            report.put("textBytes", textBytes);
+            report.put("postingBytes", postingBytes);
+            report.put("totalBytes", totalBytes);
+            report.put("bytesPerItem", (items == 0) ? 0 : totalBytes / items);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return report;
+    }
+
+    /////////////////////////// Вспомогательные методы ///////////////////////
+
+    //различные триграммы строки, упакованные в long (по 16 бит на символ)
+    private static long[] gramsOf(String text) {
+        if (text.length() < N) {
+            return new long[0];
+        }
+        long[] keys = new long[text.length() - N + 1];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        return Arrays.stream(keys).distinct().toArray();
+    }
+
+    private static long stringBytes(String text) {
+        return (text == null) ? 0 : OBJECT_BYTES * 2 + 2L * text.length();
+    }
+
+    //вызывается под блокировкой записи
+    private void reset(int capacity) {
+        grams = new HashMap<>();
+        docsById = new HashMap<>();
+        docIds = new long[capacity];
+        docNames = new String[capacity];
+        docDescriptions = new String[capacity];
+        docSlots = 0;
+        freeSlots = new int[0];
+        freeCount = 0;
+    }
+
+    //вызывается под блокировкой записи
+    private void addDoc(long itemId, String name, String description) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (docSlots == docIds.length) {
+                int capacity = Math.max(16, docSlots * 2);
+                docIds = Arrays.copyOf(docIds, capacity);
+                docNames = Arrays.copyOf(docNames, capacity);
+                docDescriptions = Arrays.copyOf(docDescriptions, capacity);
+            }
+            slot = docSlots++;
+        }
+        docIds[slot] = itemId;
+        docNames[slot] = name.toLowerCase(Locale.ROOT);
+        docDescriptions[slot] = (description == null) ? null : description.toLowerCase(Locale.ROOT);
+        for (long key : docGrams(slot)) {
+            grams.computeIfAbsent(key, k -> new Postings()).add(slot);
+        }
+        docsById.put(itemId, slot);
+    }
+
+    //вызывается под блокировкой записи
+    private void removeDoc(Long itemId) {
+        Integer slot = docsById.remove(itemId);
+        if (slot == null) {
+            return;
+        }
+        for (long key : docGrams(slot)) {
+            Postings list = grams.get(key);
+            list.remove(slot);
+            if (list.size == 0) {
+                grams.remove(key);
+            }
+        }
+        docNames[slot] = null;
+        docDescriptions[slot] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, Math.max(16, freeCount * 2));
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    //различные триграммы названия и описания документа
+    private Set<Long> docGrams(int slot) {
+        Set<Long> keys = Arrays.stream(gramsOf(docNames[slot])).boxed().collect(Collectors.toSet());
+        if (docDescriptions[slot] != null) {
+            Arrays.stream(gramsOf(docDescriptions[slot])).forEach(keys::add);
+        }
+        return keys;
+    }
+
+    ///////////////////////////// Вложенные классы ///////////////////////////
+
+    //список номеров документов по возрастанию
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private int size;
+
+        void add(int doc) {
+            int pos = find(doc);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -pos - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            System.arraycopy(docs, pos, docs, pos + 1, size - pos);
+            docs[pos] = doc;
+            size++;
+        }
+
+        void remove(int doc) {
+            int pos = find(doc);
+            if (pos >= 0) {
+                System.arraycopy(docs, pos + 1, docs, pos, size - pos - 1);
+                size--;
+            }
+        }
+
+        //оставляет в упорядоченном массиве candidates только номера из списка; возвращает их число
+        int retain(int[] candidates, int count) {
+            int kept = 0;
+            int pos = 0;
+            for (int i = 0; i < count; i++) {
+                int doc = candidates[i];
+                while ((pos < size) && (docs[pos] < doc)) {
+                    pos++;
+                }
+                if ((pos < size) && (docs[pos] == doc)) {
+                    candidates[kept++] = doc;
+                }
+            }
+            return kept;
+        }
+
+        private int find(int doc) {
+            if ((size > 0) && (docs[size - 1] < doc)) { //частый случай - дописывание в конец
+                return -size - 1;
+            }
+            return Arrays.binarySearch(docs, 0, size, doc);
+        }
+    }
+}
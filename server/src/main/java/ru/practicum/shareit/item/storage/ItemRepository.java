@@ -1,7 +1,7 @@
 package ru.practicum.shareit.item.storage;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import ru.practicum.shareit.booking.model.Booking;
@@ -10,63 +10,71 @@ import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
 
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 
 public interface ItemRepository extends JpaRepository<Item, Long> {
 
     ////////////////////////////////// Поиск /////////////////////////////////
 
-    //поиск всех вещей заданного владельца
-    Page<Item> findByOwner_Id(long ownerId, Pageable pageable);
+    //поиск вещей заданного владельца с идентификаторами после курсора
+    @Query("select i from Item i where i.owner.id = ?1 and i.id > ?2 order by i.id asc ")
+    Slice<Item> findByOwnerAfter(long ownerId, long idAfter, Pageable pageable);
+
+    //идентификаторы вещей владельца (перед его удалением)
+    @Query("select i.id from Item i where i.owner.id = ?1 ")
+    List<Long> findIdsByOwnerId(long ownerId);
+
+    //вещи вместе с владельцами (одним запросом)
+    @Query("select i from Item i join fetch i.owner where i.id in ?1 ")
+    List<Item> findAllWithOwnersByIdIn(Collection<Long> ids);
 
     //поиск всех вещей по заданному запросу
     List<Item> findByRequest_Id(Long requestId);
 
     //поиск вещей по имени/описанию
     @Query("select i from Item i " +
-            "where i.available = true and " +
+            "where i.available = true and i.id > ?2 and " +
             "(lower(i.name) like lower(concat('%', ?1, '%')) " +
             "or lower(i.description) like lower(concat('%', ?1, '%'))) " +
             "order by i.id asc "
     )
-    Page<Item> searchItems(String sample, Pageable pageable);
-
-    ////////////////////////////// Бронирования //////////////////////////////
+    Slice<Item> searchItems(String sample, long idAfter, Pageable pageable);
 
-    //последнее бронирование заданной вещи
-    @Query("select b from Booking b join b.item i " +
-            "where i.id = ?1 and b.status = 'APPROVED' and " +
-            "b.end = (select max(bb.end) from Booking bb where bb.item = i and bb.start < ?2) "
-    )
-    List<Booking> getLastBookingOfItem(Long itemId, Timestamp now);
+    //тексты всех доступных вещей (для построения поискового индекса)
+    @Query("select i.id as id, i.name as name, i.description as description from Item i " +
+            "where i.available = true ")
+    List<ItemText> findAvailableTexts();
 
-    //ближайшее бронирование заданной вещи
-    @Query("select b from Booking b join b.item i " +
-            "where i.id = ?1 and b.status = 'APPROVED' and " +
-            "b.start = (select min(bb.start) from Booking bb where bb.item = i and bb.start > ?2) "
-    )
-    List<Booking> getNextBookingOfItem(Long itemId, Timestamp now);
+    ////////////////////////////// Бронирования //////////////////////////////
 
-    //все старые бронирования вещей одного владельца
+    //старые бронирования вещей из заданного набора (страницы)
     @Query("select i as key, b as value from Booking b join b.item i " +
-            "where i.owner.id = ?1 and b.status = 'APPROVED' and " +
+            "where i.id in ?1 and b.status = 'APPROVED' and " +
             "b.end = (select max(bb.end) from Booking bb where bb.item = i and bb.start < ?2) "
     )
-    List<PairToReturn<Item, Booking>> getAllLastBookingsByOwner(Long ownerId, Timestamp now);
+    List<PairToReturn<Item, Booking>> getLastBookingsOfItems(Collection<Long> itemIds, Timestamp now);
 
-    //все будущие бронирования вещей одного владельца
+    //будущие бронирования вещей из заданного набора (страницы)
     @Query("select i as key, b as value from Booking b join b.item i " +
-            "where i.owner.id = ?1 and b.status = 'APPROVED' and " +
+            "where i.id in ?1 and b.status = 'APPROVED' and " +
             "b.start = (select min(bb.start) from Booking bb where bb.item = i and bb.start > ?2) "
     )
-    List<PairToReturn<Item, Booking>> getAllNextBookingsByOwner(Long ownerId, Timestamp now);
+    List<PairToReturn<Item, Booking>> getNextBookingsOfItems(Collection<Long> itemIds, Timestamp now);
+
+    //ближайшие начала бронирований (любых статусов) вещей из заданного набора не раньше момента now:
+    //до этого момента последнее и ближайшее бронирования вещей не меняются
+    @Query("select i.id as itemId, min(b.start) as nextStart from Booking b join b.item i " +
+            "where i.id in ?1 and b.start >= ?2 group by i.id "
+    )
+    List<ItemBookingStart> getNextStartsOfItems(Collection<Long> itemIds, Timestamp now);
 
     /////////////////////////////// Комментарии //////////////////////////////
 
-    //все отзывы на все вещи одного владельца
+    //все отзывы на вещи из заданного набора (страницы)
     @Query("select i as key, c as value from Comment c " +
             "join c.item i " +
-            "where i.owner.id = ?1 "
+            "where i.id in ?1 "
     )
-    List<PairToReturn<Item, Comment>> getAllCommentsByOwner(Long ownerId);
+    List<PairToReturn<Item, Comment>> getAllCommentsOfItems(Collection<Long> itemIds);
 }
@@ -0,0 +1,380 @@
+package ru.practicum.shareit.item.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.event.UserDeletedEvent;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+//Инвертированный индекс доступных вещей по словам названия и описания с ранжированием BM25.
+//Вещь в индексе - документ с плотным номером; для каждого слова хранится список вхождений
+//в примитивных массивах (номера документов по возрастанию и частоты слова в них).
+//Номера удаленных документов переиспользуются, так что массивы не разрастаются.
+@Slf4j
+@Component
+public class ItemSearchIndex {
+    public static final String MODE = "bm25";
+    //параметры BM25: насыщение частоты слова и нормировка по длине документа
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final ItemRepository itemRepository;
+    private final boolean enabled;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    //списки вхождений по словам
+    private Map<String, Postings> terms = new HashMap<>();
+    //номер документа по идентификатору вещи
+    private Map<Long, Integer> docsById = new HashMap<>();
+    //данные документов по номерам: вещь, длина в словах, списки вхождений ее слов
+    private long[] docIds = new long[0];
+    private int[] docLengths = new int[0];
+    private Postings[][] docPostings = new Postings[0][];
+    private int docSlots; //число занятых номеров (включая освобожденные)
+    private int[] freeSlots = new int[0];
+    private int freeCount;
+    private long totalLength; //суммарная длина документов (для средней длины)
+
+    @Autowired
+    public ItemSearchIndex(ItemRepository itemRepository,
+                           @Value("${shareit.item.search.mode:like}") String mode) {
+        this.itemRepository = itemRepository;
+        this.enabled = MODE.equalsIgnoreCase(mode);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    ////////////////////////////////// Поиск /////////////////////////////////
+
+    //Идентификаторы вещей, содержащих хотя бы одно слово запроса, по убыванию оценки BM25
+    //(при равных оценках - по возрастанию идентификатора). Возвращается не больше limit вещей,
+    //начиная с позиции offset.
+    public List<Long> search(String text, long offset, int limit) {
+        Set<String> queryTerms = new LinkedHashSet<>(tokenize(text));
+        int wanted = (int) Math.min(Integer.MAX_VALUE, offset + limit);
+        if (queryTerms.isEmpty() || (wanted == 0)) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            int docs = docsById.size();
+            if (docs == 0) {
+                return List.of();
+            }
+            double avgLength = (double) totalLength / docs;
+            //оценки накапливаются по номерам документов, затронутые номера запоминаются
+            double[] scores = new double[docSlots];
+            int[] touched = new int[docSlots];
+            int touchedCount = 0;
+            for (String term : queryTerms) {
+                Postings postings = terms.get(term);
+                if (postings == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (docs - postings.size + 0.5) / (postings.size + 0.5));
+                for (int i = 0; i < postings.size; i++) {
+                    int doc = postings.docs[i];
+                    int tf = postings.freqs[i];
+                    double norm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+                    if (scores[doc] == 0) {
+                        touched[touchedCount++] = doc;
+                    }
+                    scores[doc] += idf * tf * (K1 + 1) / (tf + norm);
+                }
+            }
+            //отбор лучших документов кучей ограниченного размера (в вершине - худший из отобранных)
+            Comparator<Integer> order = (a, b) -> (scores[a] != scores[b])
+                    ? Double.compare(scores[b], scores[a]) : Long.compare(docIds[a], docIds[b]);
+            PriorityQueue<Integer> top = new PriorityQueue<>(order.reversed());
+            for (int i = 0; i < touchedCount; i++) {
+                top.add(touched[i]);
+                if (top.size() > wanted) {
+                    top.poll();
+                }
+            }
+            List<Integer> ranked = new ArrayList<>(top);
+            ranked.sort(order);
+            return ranked.stream().skip(offset).map(doc -> docIds[doc]).collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    ////////////////////////////// Обновление индекса ////////////////////////
+
+    //вещь создана или изменена: доступная вещь (пере)индексируется, недоступная удаляется
+    public void put(Item item) {
+        if (!enabled) {
+            return;
+        }
+        if (!Boolean.TRUE.equals(item.getAvailable())) {
+            remove(item.getId());
+            return;
+        }
+        DocTerms doc = DocTerms.of(item.getId(), item.getName(), item.getDescription());
+        lock.writeLock().lock();
+        try {
+            removeDoc(item.getId());
+            addDoc(doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //вещь удалена
+    public void remove(Long itemId) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeDoc(itemId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            reset(0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //вещи удаленного пользователя
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        if (event.isAllUsers()) {
+            clear();
+        } else {
+            event.getItemIds().forEach(this::remove);
+        }
+    }
+
+    //Полное построение индекса по таблице вещей. Тексты разбираются на слова параллельно,
+    //списки вхождений собираются одним проходом: номера документов идут по возрастанию,
+    //поэтому вхождения только дописываются в конец.
+    @PostConstruct
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        List<DocTerms> docs = itemRepository.findAvailableTexts().parallelStream()
+                .map(text -> DocTerms.of(text.getId(), text.getName(), text.getDescription()))
+                .collect(Collectors.toList());
+        lock.writeLock().lock();
+        try {
+            reset(docs.size());
+            for (DocTerms doc : docs) {
+                addDoc(doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Построен поисковый индекс вещей: " + docs.size() + " вещей, " + terms.size() + " слов.");
+    }
+
+    //сведения об индексе (для журнала и служебных точек)
+    public Map<String, Object> stats() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("enabled", enabled);
+        lock.readLock().lock();
+        try {
+            long postings = 0;
+            for (Postings list : terms.values()) {
+                postings += list.size;
+            }
+            report.put("items", docsById.size());
+            report.put("terms", terms.size());
+            report.put("postings", postings);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return report;
+    }
+
+    ////////////////////////// Разбор текста на слова ////////////////////////
+
+    //слова текста в нижнем регистре (слово - непрерывная последовательность букв и цифр)
+    public static List<String> tokenize(String text) {
+        List<String> result = new ArrayList<>();
+        if (text == null) {
+            return result;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean letter = (i < lower.length()) && Character.isLetterOrDigit(lower.charAt(i));
+            if (letter && (start < 0)) {
+                start = i;
+            } else if (!letter && (start >= 0)) {
+                result.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return result;
+    }
+
+    /////////////////////////// Вспомогательные методы ///////////////////////
+
+    //вызывается под блокировкой записи
+    private void reset(int capacity) {
+        terms = new HashMap<>();
+        docsById = new HashMap<>();
+        docIds = new long[capacity];
+        docLengths = new int[capacity];
+        docPostings = new Postings[capacity][];
+        docSlots = 0;
+        freeSlots = new int[0];
+        freeCount = 0;
+        totalLength = 0;
+    }
+
+    //вызывается под блокировкой записи
+    private void addDoc(DocTerms doc) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (docSlots == docIds.length) {
+                int capacity = Math.max(16, docSlots * 2);
+                docIds = Arrays.copyOf(docIds, capacity);
+                docLengths = Arrays.copyOf(docLengths, capacity);
+                docPostings = Arrays.copyOf(docPostings, capacity);
+            }
+            slot = docSlots++;
+        }
+        Postings[] lists = new Postings[doc.terms.length];
+        for (int i = 0; i < doc.terms.length; i++) {
+            lists[i] = terms.computeIfAbsent(doc.terms[i], Postings::new);
+            lists[i].add(slot, doc.freqs[i]);
+        }
+        docIds[slot] = doc.itemId;
+        docLengths[slot] = doc.length;
+        docPostings[slot] = lists;
+        docsById.put(doc.itemId, slot);
+        totalLength += doc.length;
+    }
+
+    //вызывается под блокировкой записи
+    private void removeDoc(Long itemId) {
+        Integer slot = docsById.remove(itemId);
+        if (slot == null) {
+            return;
+        }
+        for (Postings postings : docPostings[slot]) {
+            postings.remove(slot);
+            if (postings.size == 0) {
+                terms.remove(postings.term);
+            }
+        }
+        totalLength -= docLengths[slot];
+        docPostings[slot] = null;
+        docLengths[slot] = 0;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, Math.max(16, freeCount * 2));
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    ///////////////////////////// Вложенные классы ///////////////////////////
+
+    //список вхождений слова: номера документов по возрастанию и частоты слова в них
+    private static final class Postings {
+        private final String term;
+        private int[] docs = new int[4];
+        private int[] freqs = new int[4];
+        private int size;
+
+        Postings(String term) {
+            this.term = term;
+        }
+
+        void add(int doc, int freq) {
+            int pos = find(doc);
+            if (pos >= 0) {
+                freqs[pos] = freq;
+                return;
+            }
+            pos = -pos - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            System.arraycopy(docs, pos, docs, pos + 1, size - pos);
+            System.arraycopy(freqs, pos, freqs, pos + 1, size - pos);
+            docs[pos] = doc;
+            freqs[pos] = freq;
+            size++;
+        }
+
+        void remove(int doc) {
+            int pos = find(doc);
+            if (pos < 0) {
+                return;
+            }
+            System.arraycopy(docs, pos + 1, docs, pos, size - pos - 1);
+            System.arraycopy(freqs, pos + 1, freqs, pos, size - pos - 1);
+            size--;
+        }
+
+        private int find(int doc) {
+            if ((size > 0) && (docs[size - 1] < doc)) { //частый случай - дописывание в конец
+                return -size - 1;
+            }
+            return Arrays.binarySearch(docs, 0, size, doc);
+        }
+    }
+
+    //слова одного документа с частотами
+    private static final class DocTerms {
+        private final long itemId;
+        private final int length;
+        private final String[] terms;
+        private final int[] freqs;
+
+        private DocTerms(long itemId, int length, String[] terms, int[] freqs) {
+            this.itemId = itemId;
+            this.length = length;
+            this.terms = terms;
+            this.freqs = freqs;
+        }
+
+        static DocTerms of(long itemId, String name, String description) {
+            List<String> words = tokenize(name);
+            words.addAll(tokenize(description));
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            for (String word : words) {
+                counts.merge(word, 1, Integer::sum);
+            }
+            String[] terms = new String[counts.size()];
+            int[] freqs = new int[counts.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                terms[i] = entry.getKey();
+                freqs[i++] = entry.getValue();
+            }
+            return new DocTerms(itemId, words.size(), terms, freqs);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package ru.practicum.shareit.item.storage;
+
+//Проекция вещи, достаточная для поискового индекса
+public interface ItemText {
+    Long getId();
+
+    String getName();
+
+    String getDescription();
+}
@@ -77,7 +77,7 @@ public class ItemRequestServiceImpl implements ItemRequestService {
         //выполняем запрос с пагинацией, но без результатов
         PageRequest pageable = PageRequest.of(from / size, size,
                 Sort.by(Sort.Direction.DESC, "created"));
-        List<ItemRequest> requestsPage = requestRepository.findAll(pageable).getContent();
+        List<ItemRequest> requestsPage = requestRepository.findAllBy(pageable).getContent();
         //делаем выборку пар (запрос, вещь) для запросов из полученной страницы
         List<PairToReturn<ItemRequest, Item>> pairs = requestRepository.getAllRequestPairs(userId, requestsPage);
         //обрабатываем пары и возвращаем результат
@@ -1,5 +1,7 @@
 package ru.practicum.shareit.request.storage;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import ru.practicum.shareit.common.convert.PairToReturn;
@@ -10,6 +12,9 @@ import java.util.List;
 
 public interface ItemRequestRepository extends JpaRepository<ItemRequest, Long> {
 
+    //постраничная выборка запросов без подсчета их общего числа
+    Slice<ItemRequest> findAllBy(Pageable pageable);
+
     //поиск всех пар (запрос, результат) одного автора
     @Query("select r as key, i as value from Item i " +
             "right join i.request r " +
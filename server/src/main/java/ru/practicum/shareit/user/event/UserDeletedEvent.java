@@ -0,0 +1,36 @@
+package ru.practicum.shareit.user.event;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Map;
+import java.util.Set;
+
+//Событие удаления пользователя (или всех пользователей сразу). Вместе с пользователем каскадно
+//удалены его вещи со всеми их бронированиями и его брони чужих вещей; каждый кэш и индекс
+//по событию сам удаляет свои записи. Публикуется после удаления.
+@Getter
+@ToString
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class UserDeletedEvent {
+    //null - удалены все пользователи
+    private final Long userId;
+    //вещи пользователя
+    private final Set<Long> itemIds;
+    //брони пользователя на чужие вещи: идентификатор брони -> вещь
+    private final Map<Long, Long> bookedItems;
+
+    public static UserDeletedEvent of(Long userId, Set<Long> itemIds, Map<Long, Long> bookedItems) {
+        return new UserDeletedEvent(userId, itemIds, bookedItems);
+    }
+
+    public static UserDeletedEvent ofAll() {
+        return new UserDeletedEvent(null, Set.of(), Map.of());
+    }
+
+    public boolean isAllUsers() {
+        return userId == null;
+    }
+}
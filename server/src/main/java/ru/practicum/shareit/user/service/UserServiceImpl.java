@@ -3,23 +3,35 @@ package ru.practicum.shareit.user.service;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import ru.practicum.shareit.booking.storage.BookingInterval;
+import ru.practicum.shareit.booking.storage.BookingRepository;
 import ru.practicum.shareit.common.exception.BadRequestException;
 import ru.practicum.shareit.common.exception.ConflictException;
 import ru.practicum.shareit.common.exception.NotFoundException;
+import ru.practicum.shareit.item.storage.ItemRepository;
 import ru.practicum.shareit.user.dto.UserDtoMapper;
 import ru.practicum.shareit.user.dto.UserInDto;
 import ru.practicum.shareit.user.dto.UserOutDto;
+import ru.practicum.shareit.user.event.UserDeletedEvent;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.storage.UserRepository;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @Service
 @AllArgsConstructor(onConstructor_ = @Autowired)
 public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
+    private final ItemRepository itemRepository;
+    private final BookingRepository bookingRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     ////////////////////////////////// CRUD //////////////////////////////////
 
@@ -72,7 +84,17 @@ public class UserServiceImpl implements UserService {
     @Override
     public void deleteUser(long id) {
         if (userRepository.existsById(id)) {
+            //вещи пользователя и его брони чужих вещей будут удалены каскадно -
+            //запоминаем их, чтобы кэши и индексы убрали только эти записи
+            Set<Long> itemIds = new HashSet<>(itemRepository.findIdsByOwnerId(id));
+            Map<Long, Long> bookedItems = new HashMap<>();
+            for (BookingInterval booking : bookingRepository.findIntervalsByBooker(id)) {
+                if (!itemIds.contains(booking.getItemId())) {
+                    bookedItems.put(booking.getId(), booking.getItemId());
+                }
+            }
             userRepository.deleteById(id);
+            eventPublisher.publishEvent(UserDeletedEvent.of(id, itemIds, bookedItems));
             log.info("Удален пользователь с идентификатором " + id);
         } else {
             log.warn("Пользователь с идентификатором " + id + "не найден.");
@@ -83,6 +105,7 @@ public class UserServiceImpl implements UserService {
     public void deleteAllUsers() {
         long count = userRepository.count(); //число пользователей
         userRepository.deleteAll(); //удаляем всех
+        eventPublisher.publishEvent(UserDeletedEvent.ofAll());
         log.info("Удалено " + count + " пользователей.");
     }
 }
@@ -23,12 +23,93 @@ CREATE TABLE IF NOT EXISTS bookings(
     end_date TIMESTAMP WITHOUT TIME ZONE,
     item_id BIGINT NOT NULL,
     booker_id BIGINT NOT NULL,
+    owner_id BIGINT NOT NULL,
     status VARCHAR(16) NOT NULL,
     CONSTRAINT pk_booking PRIMARY KEY (id),
     FOREIGN KEY (item_id) REFERENCES items (id) ON DELETE CASCADE ON UPDATE CASCADE,
-    FOREIGN KEY (booker_id) REFERENCES users (id) ON DELETE CASCADE ON UPDATE CASCADE
+    FOREIGN KEY (booker_id) REFERENCES users (id) ON DELETE CASCADE ON UPDATE CASCADE,
+    CONSTRAINT fk_bookings_owner FOREIGN KEY (owner_id) REFERENCES users (id) ON DELETE CASCADE ON UPDATE CASCADE
 );
 
+-- Владелец вещи продублирован в бронировании, чтобы выборки владельца обходились без соединения с items.
+-- Перенос для таблиц, созданных до появления столбца: значения заполняются один раз (по индексу
+-- владельца находятся только пустые строки), затем столбец становится обязательным и ссылается на users.
+ALTER TABLE bookings ADD COLUMN IF NOT EXISTS owner_id BIGINT;
+
+UPDATE bookings SET owner_id = (SELECT i.owner_id FROM items i WHERE i.id = bookings.item_id)
+WHERE owner_id IS NULL;
+
+ALTER TABLE bookings ALTER COLUMN owner_id SET NOT NULL;
+
+DO 'BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = ''fk_bookings_owner'') THEN
+        ALTER TABLE bookings ADD CONSTRAINT fk_bookings_owner FOREIGN KEY (owner_id)
+            REFERENCES users (id) ON DELETE CASCADE ON UPDATE CASCADE;
+    END IF;
+END';
+
+-- Копию владельца поддерживает сама база: смена владельца вещи переписывает его во всех ее бронированиях
+-- (приложение владельца вещи не меняет, но и правка мимо приложения не оставит расхождения).
+-- Расхождения, накопленные до появления триггера, исправляются один раз при его создании.
+CREATE OR REPLACE FUNCTION sync_bookings_owner() RETURNS trigger LANGUAGE plpgsql AS 'BEGIN
+    UPDATE bookings SET owner_id = NEW.owner_id WHERE item_id = NEW.id;
+    RETURN NEW;
+END';
+
+DO 'BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_trigger WHERE tgname = ''trg_items_owner_sync'') THEN
+        UPDATE bookings b SET owner_id = i.owner_id FROM items i
+        WHERE i.id = b.item_id AND b.owner_id <> i.owner_id;
+        CREATE TRIGGER trg_items_owner_sync AFTER UPDATE OF owner_id ON items
+            FOR EACH ROW WHEN (OLD.owner_id IS DISTINCT FROM NEW.owner_id) EXECUTE FUNCTION sync_bookings_owner();
+    END IF;
+END';
+
+CREATE INDEX IF NOT EXISTS ix_bookings_owner_start ON bookings (owner_id, start_date DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS ix_bookings_owner_status_start ON bookings (owner_id, status, start_date DESC, id DESC);
+
+-- выборки автора и составные выборки по вещам в порядке (start_date desc, id desc)
+CREATE INDEX IF NOT EXISTS ix_bookings_booker_start ON bookings (booker_id, start_date DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS ix_bookings_item_start ON bookings (item_id, start_date DESC, id DESC);
+
+-- проверка права на отзыв: завершенные бронирования автора для одной вещи
+CREATE INDEX IF NOT EXISTS ix_bookings_booker_item_end ON bookings (booker_id, item_id, end_date);
+
+-- фоновая просрочка: новые брони, начало которых прошло
+CREATE INDEX IF NOT EXISTS ix_bookings_status_start ON bookings (status, start_date);
+
+-- правила автоматического согласования броней (одно на владельца)
+CREATE TABLE IF NOT EXISTS approval_rules(
+    owner_id BIGINT NOT NULL,
+    enabled BOOLEAN NOT NULL,
+    max_duration_minutes BIGINT,
+    repeat_renters_only BOOLEAN NOT NULL,
+    CONSTRAINT pk_approval_rule PRIMARY KEY (owner_id),
+    FOREIGN KEY (owner_id) REFERENCES users (id) ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+-- лист ожидания занятых периодов вещей; очередь вещи упорядочена по id
+CREATE TABLE IF NOT EXISTS waitlist(
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    item_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    start_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    end_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    created TIMESTAMP WITHOUT TIME ZONE,
+    CONSTRAINT pk_waitlist PRIMARY KEY (id),
+    FOREIGN KEY (item_id) REFERENCES items (id) ON DELETE CASCADE ON UPDATE CASCADE,
+    FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS ix_waitlist_item ON waitlist (item_id, id);
+
+CREATE INDEX IF NOT EXISTS ix_waitlist_user ON waitlist (user_id, id);
+
+-- удаление записей с прошедшим началом
+CREATE INDEX IF NOT EXISTS ix_waitlist_start ON waitlist (start_date);
+
 CREATE TABLE IF NOT EXISTS comments(
     id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
     text VARCHAR(2048) NOT NULL,
@@ -47,4 +128,17 @@ CREATE TABLE IF NOT EXISTS requests(
     created TIMESTAMP WITHOUT TIME ZONE,
     CONSTRAINT pk_request PRIMARY KEY (id),
     FOREIGN KEY (requester_id) REFERENCES users (id) ON DELETE CASCADE ON UPDATE CASCADE
-);
\ No newline at end of file
+);
+
+-- последнее и ближайшее бронирования вещей, вычисленные заранее; refresh_at - ближайшее
+-- начало брони вещи, после которого указатели нужно пересчитать (NULL - будущих броней нет)
+CREATE TABLE IF NOT EXISTS item_booking_pointers(
+    item_id BIGINT NOT NULL,
+    last_booking_id BIGINT,
+    next_booking_id BIGINT,
+    refresh_at TIMESTAMP WITHOUT TIME ZONE,
+    CONSTRAINT pk_item_booking_pointers PRIMARY KEY (item_id),
+    FOREIGN KEY (item_id) REFERENCES items (id) ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS ix_item_booking_pointers_refresh ON item_booking_pointers (refresh_at);
@@ -0,0 +1,41 @@
+package ru.practicum.shareit;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//Сервер для замеров JMH: контекст приложения поверх общего контейнера PostgreSQL
+//и заполнение базы данными замера запросами generate_series (без прохода через сервисы).
+public final class BenchmarkServer {
+    private BenchmarkServer() {
+    }
+
+    //запуск контекста; свойства замера дополняют и переопределяют подключение к контейнеру
+    public static ConfigurableApplicationContext start(Map<String, Object> properties) {
+        Map<String, Object> all = new HashMap<>(PostgresContainer.properties());
+        all.put("server.port", "0");
+        all.put("logging.level.root", "WARN");
+        all.putAll(properties);
+        return new SpringApplicationBuilder(ShareItServer.class)
+                .properties(all)
+                .run();
+    }
+
+    //count пользователей с адресами prefix<n>@bench.ru; возвращает их идентификаторы
+    public static List<Long> insertUsers(JdbcTemplate jdbc, String prefix, int count) {
+        return jdbc.queryForList("insert into users (name, email) "
+                + "select ? || g, ? || g || '@bench.ru' from generate_series(1, ?) g "
+                + "returning id", Long.class, prefix, prefix, count);
+    }
+
+    //count доступных вещей владельца; возвращает их идентификаторы
+    public static List<Long> insertItems(JdbcTemplate jdbc, long ownerId, int count) {
+        return jdbc.queryForList("insert into items (name, description, available, owner_id) "
+                + "select 'item ' || g, 'description of item ' || g, true, ? from generate_series(1, ?) g "
+                + "returning id", Long.class, ownerId, count);
+    }
+}
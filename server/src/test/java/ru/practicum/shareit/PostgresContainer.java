@@ -0,0 +1,31 @@
+package ru.practicum.shareit;
+
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.Map;
+
+//Общий контейнер PostgreSQL (той же версии, что и в docker-compose) для интеграционных тестов и замеров.
+//Запускается один раз на процесс; после завершения процесса контейнер удаляет Testcontainers.
+public final class PostgresContainer {
+    private static final String IMAGE = "postgres:13.7-alpine";
+    private static PostgreSQLContainer<?> container;
+
+    private PostgresContainer() {
+    }
+
+    public static synchronized PostgreSQLContainer<?> get() {
+        if (container == null) {
+            container = new PostgreSQLContainer<>(IMAGE);
+            container.start();
+        }
+        return container;
+    }
+
+    //свойства подключения сервера к контейнеру
+    public static Map<String, Object> properties() {
+        PostgreSQLContainer<?> db = get();
+        return Map.of("spring.datasource.url", db.getJdbcUrl(),
+                "spring.datasource.username", db.getUsername(),
+                "spring.datasource.password", db.getPassword());
+    }
+}
@@ -0,0 +1,182 @@
+package ru.practicum.shareit.booking;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.practicum.shareit.PostgresContainer;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.booking.storage.BookingIntervalIndex;
+import ru.practicum.shareit.booking.storage.BookingRepository;
+import ru.practicum.shareit.common.exception.BadRequestException;
+import ru.practicum.shareit.common.exception.ConflictException;
+import ru.practicum.shareit.common.exception.NotFoundException;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.storage.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.service.UserService;
+import ru.practicum.shareit.user.storage.UserRepository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//Нагрузочная проверка согласования броней: параллельные подтверждения налегающих броней
+//одной вещи не должны давать двойных бронирований. Выполняется на PostgreSQL в контейнере
+//(пропускается, если Docker недоступен) и печатает число согласований в секунду.
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest
+public class BookingApprovalStressTest {
+    private static final int ITEMS = 20;
+    private static final int BOOKINGS_PER_ITEM = 50;
+    private static final int THREADS = 16;
+    private static final int REPEATED_APPROVALS = 32;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private BookingIntervalIndex intervalIndex;
+
+    private User owner;
+    private List<User> bookers;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        PostgresContainer.properties().forEach((name, value) -> registry.add(name, () -> value));
+    }
+
+    @BeforeEach
+    public void setUp() {
+        userService.deleteAllUsers(); //каскадно удаляются вещи и брони, индексы очищаются
+        owner = userRepository.save(new User(null, "owner", "owner@mail.ru"));
+        bookers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            bookers.add(userRepository.save(new User(null, "booker" + i, "booker" + i + "@mail.ru")));
+        }
+    }
+
+    //Брони одной вещи идут с шагом в час и длятся по три часа, поэтому каждая налегает на
+    //соседние. Все брони всех вещей подтверждаются параллельно в случайном порядке.
+    @Test
+    public void concurrentApprovalsOfOverlappingBookingsNeverDoubleBook() throws Exception {
+        LocalDateTime base = LocalDateTime.now().plusDays(1).truncatedTo(ChronoUnit.HOURS);
+        List<Long> bookingIds = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            Item item = itemRepository.save(new Item(null, "item" + i, "stress", true, owner, null));
+            for (int j = 0; j < BOOKINGS_PER_ITEM; j++) {
+                Booking booking = new Booking(null, Timestamp.valueOf(base.plusHours(j)),
+                        Timestamp.valueOf(base.plusHours(j + 3)), item, bookers.get(j % bookers.size()),
+                        owner.getId(), Status.WAITING);
+                bookingIds.add(bookingRepository.save(booking).getId());
+            }
+        }
+        Collections.shuffle(bookingIds, new Random(42));
+
+        long started = System.nanoTime();
+        List<Boolean> outcomes = runConcurrently(bookingIds);
+        double seconds = (System.nanoTime() - started) / 1e9;
+        long approvedCalls = outcomes.stream().filter(approved -> approved).count();
+
+        //в базе нет налегающих подтвержденных броней одной вещи
+        List<Booking> approved = bookingRepository.findAll().stream()
+                .filter(booking -> booking.getStatus() == Status.APPROVED)
+                .collect(Collectors.toList());
+        Map<Long, List<Booking>> byItem = approved.stream()
+                .collect(Collectors.groupingBy(booking -> booking.getItem().getId()));
+        int doubleBookings = 0;
+        for (List<Booking> bookings : byItem.values()) {
+            bookings.sort(Comparator.comparing(Booking::getStart));
+            for (int i = 1; i < bookings.size(); i++) {
+                if (bookings.get(i).getStart().before(bookings.get(i - 1).getEnd())) {
+                    doubleBookings++;
+                }
+            }
+        }
+        System.out.printf("Согласований: %d вызовов за %.2f с (%.0f в секунду), подтверждено %d, "
+                        + "двойных бронирований %d%n", bookingIds.size(), seconds, bookingIds.size() / seconds,
+                approved.size(), doubleBookings);
+        assertEquals(0, doubleBookings);
+        //каждое успешное подтверждение записано в базу, и у каждой вещи подтверждена хотя бы одна бронь
+        assertEquals(approvedCalls, approved.size());
+        assertEquals(ITEMS, byItem.size());
+        //индекс в памяти совпадает с базой
+        assertEquals(Boolean.TRUE, intervalIndex.verify().get("consistent"));
+    }
+
+    //параллельные подтверждения одной и той же брони: успешно ровно одно
+    @Test
+    public void concurrentApprovalsOfSameBookingSucceedOnce() throws Exception {
+        LocalDateTime base = LocalDateTime.now().plusDays(1);
+        Item item = itemRepository.save(new Item(null, "item", "stress", true, owner, null));
+        Booking booking = bookingRepository.save(new Booking(null, Timestamp.valueOf(base),
+                Timestamp.valueOf(base.plusHours(1)), item, bookers.get(0), owner.getId(), Status.WAITING));
+        List<Long> bookingIds = Collections.nCopies(REPEATED_APPROVALS, booking.getId());
+
+        List<Boolean> outcomes = runConcurrently(bookingIds);
+
+        assertEquals(1, outcomes.stream().filter(approved -> approved).count());
+        assertEquals(Status.APPROVED, bookingRepository.findById(booking.getId()).orElseThrow().getStatus());
+    }
+
+    //подтверждение броней пулом потоков с общим стартом; результат - удалось ли подтверждение
+    private List<Boolean> runConcurrently(List<Long> bookingIds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (Long bookingId : bookingIds) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        bookingService.confirmBooking(bookingId, owner.getId(), true, false);
+                        return true;
+                    } catch (NotFoundException | ConflictException | BadRequestException e) {
+                        return false; //период занят или бронь уже согласована
+                    }
+                }));
+            }
+            start.countDown();
+            List<Boolean> outcomes = new ArrayList<>();
+            for (Future<Boolean> future : futures) {
+                outcomes.add(future.get(1, TimeUnit.MINUTES));
+            }
+            return outcomes;
+        } finally {
+            executor.shutdownNow();
+            assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        }
+    }
+}
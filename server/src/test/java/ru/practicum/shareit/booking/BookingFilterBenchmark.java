@@ -0,0 +1,131 @@
+package ru.practicum.shareit.booking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.BenchmarkServer;
+import ru.practicum.shareit.booking.dto.BookingFilter;
+import ru.practicum.shareit.booking.dto.BookingOutDto;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.service.BookingQueryCache;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.common.pagination.PageCursor;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+//Составная выборка бронирований (GET /bookings/filter) против нынешнего способа клиентов:
+//постраничное чтение /bookings/owner?state=FUTURE и отбор по вещам, статусу и окну дат на своей стороне.
+//Владелец с 50 вещами и 87 000 бронирований; обе стороны читают страницы по 100 записей
+//и должны вернуть одни и те же брони.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BookingFilterBenchmark {
+    private static final int ITEMS = 50;
+    private static final int BOOKERS = 20;
+    //брони вещи идут через 12 часов, половина в прошлом и половина в будущем
+    private static final int BOOKINGS_PER_ITEM = 1740;
+    private static final int PAGE_SIZE = 100;
+
+    private ConfigurableApplicationContext context;
+    private BookingService bookingService;
+    private BookingQueryCache queryCache;
+    private long ownerId;
+    private Set<Long> itemIds;
+    private LocalDateTime after;
+    private LocalDateTime before;
+    private BookingFilter filter;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkServer.start(Map.of());
+        bookingService = context.getBean(BookingService.class);
+        queryCache = context.getBean(BookingQueryCache.class);
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+
+        ownerId = BenchmarkServer.insertUsers(jdbc, "owner", 1).get(0);
+        BenchmarkServer.insertUsers(jdbc, "booker", BOOKERS);
+        List<Long> items = BenchmarkServer.insertItems(jdbc, ownerId, ITEMS);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now().truncatedTo(ChronoUnit.HOURS));
+        jdbc.update("insert into bookings (start_date, end_date, item_id, booker_id, owner_id, status) "
+                        + "select s.start, s.start + interval '6 hours', i.id, b.id, i.owner_id, "
+                        + "case g % 4 when 1 then 'WAITING' when 2 then 'REJECTED' else 'APPROVED' end "
+                        + "from items i cross join generate_series(1, ?) g "
+                        + "cross join lateral (select cast(? as timestamp) + (g - ?) * interval '12 hours' "
+                        + "+ (i.id % 12) * interval '1 hour' as start) s "
+                        + "join (select id, row_number() over (order by id) - 1 as n from users "
+                        + "where email like 'booker%') b on b.n = g % ? "
+                        + "where i.owner_id = ?",
+                BOOKINGS_PER_ITEM, now, BOOKINGS_PER_ITEM / 2, BOOKERS, ownerId);
+        jdbc.execute("analyze");
+
+        itemIds = Set.of(items.get(3), items.get(7));
+        after = now.toLocalDateTime().plusDays(10);
+        before = after.plusMonths(1);
+        filter = BookingFilter.of(true, List.of("FUTURE"), itemIds, List.of("APPROVED"), after, before);
+        int viaFilter = filterEndpoint();
+        int viaClient = clientSideFiltering();
+        if (viaFilter != viaClient) {
+            throw new IllegalStateException("Выборки расходятся: " + viaFilter + " и " + viaClient);
+        }
+        System.out.println("Найдено бронирований: " + viaFilter);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int filterEndpoint() {
+        return readAll(page -> bookingService.filterBookings(ownerId, filter, page)).size();
+    }
+
+    @Benchmark
+    public int clientSideFiltering() {
+        //запросы клиента разнесены во времени и кэш выборок им не помогает
+        queryCache.clear();
+        return (int) readAll(page -> bookingService.getAllBookingsForOwner(ownerId, "FUTURE", page)).stream()
+                .filter(booking -> itemIds.contains(booking.getItemId()))
+                .filter(booking -> booking.getStatus() == Status.APPROVED)
+                .filter(booking -> booking.getStart().isBefore(before) && booking.getEnd().isAfter(after))
+                .count();
+    }
+
+    //чтение всех страниц по курсору
+    private List<BookingOutDto> readAll(Function<PageCursor, Slice<BookingOutDto>> query) {
+        List<BookingOutDto> result = new ArrayList<>();
+        PageCursor page = PageCursor.of(0, PAGE_SIZE, null);
+        while (true) {
+            Slice<BookingOutDto> slice = query.apply(page);
+            result.addAll(slice.getContent());
+            if (!slice.hasNext() || !slice.hasContent()) {
+                return result;
+            }
+            BookingOutDto last = slice.getContent().get(slice.getNumberOfElements() - 1);
+            page = PageCursor.of(0, PAGE_SIZE, PageCursor.ofStart(last.getStart(), last.getId()));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ru.practicum.shareit.item;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.BenchmarkServer;
+import ru.practicum.shareit.common.pagination.PageCursor;
+import ru.practicum.shareit.item.dto.ItemOutBookedDto;
+import ru.practicum.shareit.item.service.ItemService;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//Страница GET /items (вещи владельца с последним и ближайшим бронированием и отзывами)
+//для владельцев с 10, 1 000 и 10 000 вещей. Отзывы и бронирования читаются только для вещей
+//страницы, поэтому время страницы не должно расти с числом вещей владельца.
+//У каждой вещи четыре бронирования (два прошедших и два будущих) и два отзыва; последнее и
+//ближайшее бронирования вычисляются запросами (режим subquery), без заранее вычисленных указателей.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ItemListBenchmark {
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"10", "1000", "10000"})
+    private int items;
+
+    private ConfigurableApplicationContext context;
+    private ItemService itemService;
+    private long ownerId;
+    //курсор последней страницы (null - все вещи на первой странице)
+    private String lastPageCursor;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkServer.start(Map.of("shareit.item.booking-pointers.mode", "subquery"));
+        itemService = context.getBean(ItemService.class);
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+
+        ownerId = BenchmarkServer.insertUsers(jdbc, "owner", 1).get(0);
+        long bookerId = BenchmarkServer.insertUsers(jdbc, "booker", 1).get(0);
+        List<Long> itemIds = BenchmarkServer.insertItems(jdbc, ownerId, items);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbc.update("insert into bookings (start_date, end_date, item_id, booker_id, owner_id, status) "
+                + "select cast(? as timestamp) + d * interval '3 days', "
+                + "cast(? as timestamp) + d * interval '3 days' + interval '1 day', i.id, ?, i.owner_id, 'APPROVED' "
+                + "from items i cross join (values (-2), (-1), (1), (2)) v(d) "
+                + "where i.owner_id = ?", now, now, bookerId, ownerId);
+        jdbc.update("insert into comments (text, created, item_id, author_id) "
+                + "select 'comment ' || n, cast(? as timestamp) - n * interval '1 day', i.id, ? "
+                + "from items i cross join generate_series(1, 2) n "
+                + "where i.owner_id = ?", now, bookerId, ownerId);
+        jdbc.execute("analyze");
+
+        Collections.sort(itemIds);
+        lastPageCursor = (items <= PAGE_SIZE) ? null : PageCursor.ofId(itemIds.get(items - PAGE_SIZE - 1));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Slice<ItemOutBookedDto> firstPage() {
+        return itemService.getAllItems(ownerId, PageCursor.of(0, PAGE_SIZE, null));
+    }
+
+    @Benchmark
+    public Slice<ItemOutBookedDto> lastPage() {
+        return itemService.getAllItems(ownerId, PageCursor.of(0, PAGE_SIZE, lastPageCursor));
+    }
+}
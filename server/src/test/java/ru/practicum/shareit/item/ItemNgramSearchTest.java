@@ -0,0 +1,128 @@
+package ru.practicum.shareit.item;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.practicum.shareit.PostgresContainer;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.storage.ItemNgramIndex;
+import ru.practicum.shareit.item.storage.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.service.UserService;
+import ru.practicum.shareit.user.storage.UserRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+//Поиск через индекс триграмм должен возвращать те же вещи в том же порядке, что и запрос like
+//к базе (ItemRepository.searchItems): подстрока в названии или описании без учета регистра,
+//только доступные вещи, по возрастанию id. Выдачи сравниваются на PostgreSQL в контейнере
+//(пропускается, если Docker недоступен) для всех страниц, с курсором и без.
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(properties = "shareit.item.search.mode=ngram")
+public class ItemNgramSearchTest {
+    //образцы: кириллица в разном регистре, подстрока внутри слова, образцы короче триграммы,
+    //латиница и образец, которого нет ни в одной вещи
+    private static final List<String> SAMPLES = List.of("рель", "дрель", "ДРЕЛЬ", "Рел", "ре", "ь",
+            "аккумуляторная", "drill", "DRILL", "ill", "x", "пила", "нет такого");
+    private static final List<Integer> PAGE_SIZES = List.of(1, 2, 3, 5, 100);
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private ItemNgramIndex ngramIndex;
+
+    private List<Long> itemIds;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        PostgresContainer.properties().forEach((name, value) -> registry.add(name, () -> value));
+    }
+
+    @BeforeEach
+    public void setUp() {
+        userService.deleteAllUsers(); //каскадно удаляются вещи, индекс очищается
+        User owner = userRepository.save(new User(null, "owner", "owner@mail.ru"));
+        itemIds = new ArrayList<>();
+        save(owner, "Дрель", "Дрель ударная, аккумуляторная", true);
+        save(owner, "Рельс", "Игрушечная железная дорога", true);
+        save(owner, "Акварель", null, true);
+        save(owner, "ДРЕЛЬ-ШУРУПОВЕРТ", "Две батареи", true);
+        save(owner, "Дрель старая", "Сломана", false); //недоступная вещь не находится
+        save(owner, "Cordless drill", "18V, два аккумулятора", true);
+        save(owner, "Пила", "Не дрель, но тоже режет", true);
+        save(owner, "Корзина", "ре-ре-ре", true);
+        ngramIndex.rebuild();
+        //вещь, добавленная после построения индекса, индексируется по одной
+        Item added = save(owner, "Мини-дрель", "Гравер DRILL", true);
+        ngramIndex.put(added);
+    }
+
+    //все страницы выдачи по смещению (без курсора) совпадают с запросом к базе
+    @Test
+    public void pagesByOffsetMatchLikeQuery() {
+        for (String sample : SAMPLES) {
+            for (int size : PAGE_SIZES) {
+                comparePages(sample, 0, size);
+            }
+        }
+    }
+
+    //курсор по id вместе со смещением: выдача после каждой вещи совпадает с запросом к базе
+    @Test
+    public void pagesAfterCursorMatchLikeQuery() {
+        for (String sample : SAMPLES) {
+            for (Long idAfter : itemIds) {
+                for (int size : PAGE_SIZES) {
+                    comparePages(sample, idAfter, size);
+                }
+            }
+        }
+    }
+
+    //образцы на кириллице действительно находят вещи (сравнение не сводится к пустым выдачам)
+    @Test
+    public void cyrillicSamplesFindItems() {
+        assertEquals(List.of(itemIds.get(0), itemIds.get(1), itemIds.get(2), itemIds.get(3), itemIds.get(6),
+                itemIds.get(8)), ngramIndex.search("рель", 0, 0, 100));
+        assertEquals(List.of(itemIds.get(0), itemIds.get(3), itemIds.get(6), itemIds.get(8)),
+                ngramIndex.search("дрель", 0, 0, 100));
+        assertFalse(ngramIndex.search("ре", itemIds.get(6), 0, 100).isEmpty());
+    }
+
+    /////////////////////////// Вспомогательные методы ///////////////////////
+
+    private Item save(User owner, String name, String description, boolean available) {
+        Item item = itemRepository.save(new Item(null, name, description, available, owner, null));
+        itemIds.add(item.getId());
+        return item;
+    }
+
+    private void comparePages(String sample, long idAfter, int size) {
+        for (int page = 0; ; page++) {
+            List<Long> expected = itemRepository.searchItems(sample, idAfter, PageRequest.of(page, size))
+                    .map(Item::getId).getContent();
+            List<Long> actual = ngramIndex.search(sample, idAfter, (long) page * size, size);
+            assertEquals(expected, actual, "Образец '" + sample + "', после " + idAfter
+                    + ", страница " + page + " по " + size);
+            if (expected.size() < size) {
+                return;
+            }
+        }
+    }
+}
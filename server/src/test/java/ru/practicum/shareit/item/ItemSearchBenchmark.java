@@ -0,0 +1,87 @@
+package ru.practicum.shareit.item;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.BenchmarkServer;
+import ru.practicum.shareit.common.pagination.PageCursor;
+import ru.practicum.shareit.item.dto.ItemOutDto;
+import ru.practicum.shareit.item.service.ItemSearchCache;
+import ru.practicum.shareit.item.service.ItemService;
+import ru.practicum.shareit.item.storage.ItemNgramIndex;
+import ru.practicum.shareit.item.storage.ItemSearchIndex;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//Первая страница /items/search: запрос like к таблице вещей против индекса BM25 и индекса триграмм
+//в памяти (у индекса триграмм та же выдача, что и у like, см. ItemNgramSearchTest).
+//Описание вещи - два слова: частое (одно из 20, около 5% вещей) и редкое (одно из 1000, около 0,1%),
+//поэтому для обоих образцов подстрока и слово находят одни и те же вещи. Кэш поиска
+//сбрасывается перед каждым вызовом, чтобы замерялся сам поиск.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ItemSearchBenchmark {
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"like", "bm25", "ngram"})
+    private String mode;
+
+    @Param({"10000", "100000"})
+    private int items;
+
+    @Param({"drill", "m0007"})
+    private String text;
+
+    private ConfigurableApplicationContext context;
+    private ItemService itemService;
+    private ItemSearchCache searchCache;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkServer.start(Map.of("shareit.item.search.mode", mode));
+        itemService = context.getBean(ItemService.class);
+        searchCache = context.getBean(ItemSearchCache.class);
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+
+        long ownerId = BenchmarkServer.insertUsers(jdbc, "owner", 1).get(0);
+        jdbc.update("insert into items (name, description, available, owner_id) "
+                + "select 'item ' || g, (array['drill', 'saw', 'hammer', 'ladder', 'tent', 'bike', 'kayak', "
+                + "'camera', 'tripod', 'projector', 'mixer', 'blender', 'iron', 'vacuum', 'grill', 'heater', "
+                + "'speaker', 'guitar', 'scooter', 'stroller'])[1 + g % 20] "
+                + "|| ' m' || lpad(cast(g % 1000 as text), 4, '0'), true, ? "
+                + "from generate_series(1, ?) g", ownerId, items);
+        jdbc.execute("analyze");
+        //вещи добавлены мимо сервиса - индексы строятся заново, как при запуске
+        //(индекс, выключенный режимом, перестроение пропускает)
+        context.getBean(ItemSearchIndex.class).rebuild();
+        context.getBean(ItemNgramIndex.class).rebuild();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Slice<ItemOutDto> searchFirstPage() {
+        searchCache.clear();
+        return itemService.searchItems(text, PageCursor.of(0, PAGE_SIZE, null));
+    }
+}